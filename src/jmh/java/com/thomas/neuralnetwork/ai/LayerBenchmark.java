@@ -0,0 +1,63 @@
+package com.thomas.neuralnetwork.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the weighted sums of a single layer, for one sample and for a whole batch
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LayerBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"128", "784"})
+    private int numInputs;
+
+    @Param({"10", "128", "512"})
+    private int numNeurons;
+
+    private Layer layer;
+    private double[] inputs;
+    private double[] result;
+
+    @Setup
+    public void setup() {
+        layer = new Layer(numNeurons, numInputs);
+
+        Random random = new Random(1);
+        inputs = new double[BATCH_SIZE * numInputs];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble();
+        }
+        result = new double[BATCH_SIZE * numNeurons];
+    }
+
+    @Benchmark
+    public double[] calculateInputs() {
+        layer.calculateInputs(inputs, result);
+        return result;
+    }
+
+    @Benchmark
+    public double[] calculateInputsBatch() {
+        layer.calculateInputs(inputs, result, BATCH_SIZE);
+        return result;
+    }
+}
@@ -0,0 +1,66 @@
+package com.thomas.neuralnetwork.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times saving and loading .nnet files
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkFileBenchmark {
+    @Param({"784,100,10", "784,512,512,10"})
+    private String topology;
+
+    @Param({"double", "single"})
+    private String precision;
+
+    private NeuralNetwork neuralNetwork;
+    private int precisionBytes;
+    private File readFile;
+    private File writeFile;
+
+    @Setup
+    public void setup() throws IOException {
+        neuralNetwork = new NeuralNetwork(NeuralNetworkBenchmark.parseTopology(topology));
+        precisionBytes = precision.equals("single") ? NetworkFile.SINGLE_PRECISION : NetworkFile.DOUBLE_PRECISION;
+
+        readFile = File.createTempFile("benchmark", ".nnet");
+        writeFile = File.createTempFile("benchmark", ".nnet");
+        NetworkFile.write(neuralNetwork, readFile, precisionBytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        readFile.delete();
+        writeFile.delete();
+    }
+
+    @Benchmark
+    public void write() throws IOException {
+        NetworkFile.write(neuralNetwork, writeFile, precisionBytes);
+    }
+
+    @Benchmark
+    public NeuralNetwork read() throws IOException {
+        return NetworkFile.read(readFile);
+    }
+}
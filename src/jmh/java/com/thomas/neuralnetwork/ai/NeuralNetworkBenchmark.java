@@ -0,0 +1,82 @@
+package com.thomas.neuralnetwork.ai;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the forward and backward passes of a whole network, one sample at a time and a batch at a time
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NeuralNetworkBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"784,100,10", "784,256,128,10", "784,512,512,10"})
+    private String topology;
+
+    private NeuralNetwork neuralNetwork;
+    private BatchTape tape;
+    private Gradients gradients;
+    private double[] inputs;
+    private double[] outputs;
+
+    @Setup
+    public void setup() {
+        int[] layerSizes = parseTopology(topology);
+        neuralNetwork = new NeuralNetwork(layerSizes);
+        tape = new BatchTape(neuralNetwork, BATCH_SIZE);
+        gradients = new Gradients(neuralNetwork);
+
+        Random random = new Random(1);
+        int numOutputs = layerSizes[layerSizes.length - 1];
+        inputs = new double[BATCH_SIZE * layerSizes[0]];
+        outputs = new double[BATCH_SIZE * numOutputs];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble();
+        }
+        for (int r = 0; r < BATCH_SIZE; r++) {
+            outputs[r * numOutputs + random.nextInt(numOutputs)] = 1;
+        }
+    }
+
+    /**
+     * Parses a comma separated list of layer sizes, such as "784,100,10"
+     */
+    static int[] parseTopology(String topology) {
+        return Arrays.stream(topology.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    @Benchmark
+    public double[] forwardPropagate() {
+        return neuralNetwork.forwardPropagate(inputs);
+    }
+
+    @Benchmark
+    public double[] forwardPropagateBatch() {
+        return neuralNetwork.forwardPropagate(inputs, BATCH_SIZE, tape);
+    }
+
+    @Benchmark
+    public double backPropagateBatch() {
+        // The gradients accumulate, clearing them keeps each pass the same as a training step's
+        gradients.clear();
+        return neuralNetwork.backPropagate(inputs, outputs, BATCH_SIZE, tape, gradients);
+    }
+}
@@ -0,0 +1,80 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.data.BatchLoader;
+import com.thomas.neuralnetwork.data.ByteDataset;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times one synchronous training step: a batch split across the worker threads, and the reduction that applies their gradients
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrainerBenchmark {
+    private static final int BATCH_SIZE = 32;
+
+    @Param({"784,100,10", "784,256,128,10", "784,512,512,10"})
+    private String topology;
+
+    @Param({"1", "2", "4", "8"})
+    private int threads;
+
+    private Trainer trainer;
+    private BatchLoader loader;
+    private BatchLoader.Batch batch;
+
+    @Setup
+    public void setup() throws InterruptedException {
+        int[] layerSizes = NeuralNetworkBenchmark.parseTopology(topology);
+        int numClasses = layerSizes[layerSizes.length - 1];
+
+        Random random = new Random(1);
+        byte[] inputs = new byte[BATCH_SIZE * layerSizes[0]];
+        byte[] labels = new byte[BATCH_SIZE];
+        random.nextBytes(inputs);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            labels[i] = (byte) random.nextInt(numClasses);
+        }
+
+        trainer = new Trainer(new NeuralNetwork(layerSizes), threads);
+
+        // The same batch is trained on every step, so loading never shows up in the timings
+        int[] order = new int[BATCH_SIZE];
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            order[i] = i;
+        }
+        loader = new BatchLoader(new ByteDataset(inputs, labels, layerSizes[0], numClasses), BATCH_SIZE, 1);
+        loader.start(order);
+        batch = loader.next();
+    }
+
+    @TearDown
+    public void tearDown() {
+        loader.close();
+        trainer.close();
+    }
+
+    @Benchmark
+    public void batchStep() {
+        trainer.batchBackPropagate(batch);
+        // A small learning rate keeps the weights from drifting far over millions of steps on the same batch
+        trainer.applyChanges(0.001, 0, 0);
+    }
+}
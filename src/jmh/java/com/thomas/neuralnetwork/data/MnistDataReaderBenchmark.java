@@ -0,0 +1,99 @@
+package com.thomas.neuralnetwork.data;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times reading MNIST-shaped IDX data, expanded into data points, into a byte dataset, and mapped from files
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MnistDataReaderBenchmark {
+    private static final int ROWS = 28;
+    private static final int COLUMNS = 28;
+
+    @Param({"1000", "10000"})
+    private int samples;
+
+    private byte[] images;
+    private byte[] labels;
+    private File imageFile;
+    private File labelFile;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(1);
+
+        ByteArrayOutputStream imageBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(imageBytes)) {
+            out.writeInt(0x00000803);
+            out.writeInt(samples);
+            out.writeInt(ROWS);
+            out.writeInt(COLUMNS);
+            byte[] pixels = new byte[samples * ROWS * COLUMNS];
+            random.nextBytes(pixels);
+            out.write(pixels);
+        }
+        images = imageBytes.toByteArray();
+
+        ByteArrayOutputStream labelBytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(labelBytes)) {
+            out.writeInt(0x00000801);
+            out.writeInt(samples);
+            for (int i = 0; i < samples; i++) {
+                out.writeByte(random.nextInt(10));
+            }
+        }
+        labels = labelBytes.toByteArray();
+
+        imageFile = File.createTempFile("benchmark-images", ".idx3-ubyte");
+        labelFile = File.createTempFile("benchmark-labels", ".idx1-ubyte");
+        Files.write(imageFile.toPath(), images);
+        Files.write(labelFile.toPath(), labels);
+    }
+
+    @TearDown
+    public void tearDown() {
+        imageFile.delete();
+        labelFile.delete();
+    }
+
+    @Benchmark
+    public List<DataPoint> readData() throws IOException {
+        return MnistDataReader.readData(new ByteArrayInputStream(images), new ByteArrayInputStream(labels));
+    }
+
+    @Benchmark
+    public Dataset readDataset() throws IOException {
+        return MnistDataReader.readDataset(new ByteArrayInputStream(images), new ByteArrayInputStream(labels));
+    }
+
+    @Benchmark
+    public Dataset readMappedDataset() throws IOException {
+        return MnistDataReader.readDataset(imageFile, labelFile);
+    }
+}
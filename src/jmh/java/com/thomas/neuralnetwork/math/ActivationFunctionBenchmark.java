@@ -0,0 +1,76 @@
+package com.thomas.neuralnetwork.math;
+
+import com.thomas.neuralnetwork.math.activation.ActivationFunction;
+import com.thomas.neuralnetwork.math.activation.LeakyReLUActivation;
+import com.thomas.neuralnetwork.math.activation.LinearActivation;
+import com.thomas.neuralnetwork.math.activation.ReLUActivation;
+import com.thomas.neuralnetwork.math.activation.SigmoidActivation;
+import com.thomas.neuralnetwork.math.activation.TanhActivation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times applying and deriving every element-wise activation function over a layer's worth of values,
+ * softmax has no element-wise derivative so it is timed by {@link SoftmaxBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActivationFunctionBenchmark {
+    @Param({"linear", "relu", "leaky_relu", "sigmoid", "tanh"})
+    private String function;
+
+    @Param({"10", "128", "4096"})
+    private int size;
+
+    private ActivationFunction activationFunction;
+    private double[] values;
+    private double[] result;
+
+    @Setup
+    public void setup() {
+        activationFunction = switch (function) {
+            case "linear" -> new LinearActivation();
+            case "relu" -> new ReLUActivation();
+            case "leaky_relu" -> new LeakyReLUActivation();
+            case "sigmoid" -> new SigmoidActivation();
+            case "tanh" -> new TanhActivation();
+            default -> throw new IllegalArgumentException("Unknown activation function " + function + ".");
+        };
+
+        // Centred on zero, so the branches of the rectifiers are taken about equally often
+        Random random = new Random(1);
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextGaussian() * 4;
+        }
+        result = new double[size];
+    }
+
+    @Benchmark
+    public double[] apply() {
+        activationFunction.apply(values, result, 0, size);
+        return result;
+    }
+
+    @Benchmark
+    public double[] derive() {
+        activationFunction.derive(values, result, 0, size);
+        return result;
+    }
+}
@@ -0,0 +1,51 @@
+package com.thomas.neuralnetwork.math;
+
+import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times the softmax of an output layer, whose gradient is worked out together with the loss rather than derived on its own
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoftmaxBenchmark {
+    @Param({"10", "128", "4096"})
+    private int size;
+
+    private final SoftmaxActivation activationFunction = new SoftmaxActivation();
+    private double[] values;
+    private double[] result;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(1);
+        values = new double[size];
+        for (int i = 0; i < size; i++) {
+            values[i] = random.nextGaussian() * 4;
+        }
+        result = new double[size];
+    }
+
+    @Benchmark
+    public double[] apply() {
+        activationFunction.apply(values, result, 0, size);
+        return result;
+    }
+}
@@ -0,0 +1,301 @@
+package com.thomas.neuralnetwork;
+
+import com.thomas.neuralnetwork.ai.Evaluation;
+import com.thomas.neuralnetwork.ai.Evaluator;
+import com.thomas.neuralnetwork.ai.NetworkFile;
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+import com.thomas.neuralnetwork.ai.Trainer;
+import com.thomas.neuralnetwork.checkpoint.Checkpoint;
+import com.thomas.neuralnetwork.checkpoint.Checkpointer;
+import com.thomas.neuralnetwork.data.Dataset;
+import com.thomas.neuralnetwork.data.MnistDataReader;
+import com.thomas.neuralnetwork.metrics.CsvMetricsSink;
+import com.thomas.neuralnetwork.metrics.LoggingMetricsSink;
+import com.thomas.neuralnetwork.server.InferenceServer;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Trains, evaluates and serves networks without a user interface, so it can run on machines without a display.
+ * Nothing here touches JavaFX, so it also runs from the headless jar, which leaves JavaFX out entirely.
+ * <p>
+ * Options are given as {@code --key=value}, and can also be read from a properties file with {@code --config=file},
+ * in which case options given on the command line take precedence.
+ */
+public class CommandLine {
+    private static final String USAGE = """
+            Usage: <command> [--key=value]...
+
+            train       Trains a new or existing network and saves it
+              --images, --labels                    the IDX files to train on (default: the bundled MNIST training set)
+              --network                             a network to keep training, instead of creating a new one
+              --hidden                              the sizes of the hidden layers of a new network (default: 100)
+              --epochs                              the number of epochs to train for (default: 10)
+              --mode                                synchronous, hogwild or local_sgd (default: synchronous)
+              --local-steps                         the number of local steps between averages in local_sgd mode (default: 8)
+              --seed                                seeds the order the samples are visited in
+              --prefetch                            the number of batches loaded ahead of training (default: 2)
+              --validation-images, --validation-labels
+                                                    IDX files to fully evaluate the network on after epochs
+              --validation-interval                 the number of epochs between validations (default: 1)
+              --output                              where to save the network (default: trained.nnet)
+              --precision                           double or single, the precision the network is trained and saved in (default: double),
+                                                    single precision training needs synchronous mode
+              --log-interval                        the number of batches between logged batches, 0 for none (default: 100)
+              --metrics                             a CSV file to write the metrics of every batch and epoch to
+              --checkpoint-dir                      a directory to save checkpoints to in the background while training
+              --checkpoint-interval                 the number of epochs between checkpoints (default: 1)
+              --checkpoint-format                   binary or text (default: binary)
+              --keep-last                           the number of most recent checkpoints to keep (default: 3)
+              --keep-best                           the number of lowest cost checkpoints to keep (default: 1)
+              --resume                              a checkpoint directory to resume training from its latest checkpoint,
+                                                    instead of --network, --epochs then counts the epochs already trained
+
+            evaluate    Scores a network on a dataset
+              --network                             the network to score
+              --images, --labels                    the IDX files to score it on (default: the bundled MNIST test set)
+              --top-k                               the number of largest outputs checked for the top-k accuracy (default: 3)
+
+            serve       Serves predictions over HTTP, see InferenceServer
+              <network file> [port] [max batch size] [max delay in µs]
+
+            Every option of train and evaluate can also be read from a properties file with --config=<file>.
+            """;
+
+    /**
+     * Checks whether a word is one of the commands, so {@link Main} can tell them apart from JavaFX arguments
+     *
+     * @param command the first argument
+     * @return whether it is a command this class runs
+     */
+    public static boolean isCommand(String command) {
+        return command.equals("train") || command.equals("evaluate") || command.equals("serve");
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0 || !isCommand(args[0])) {
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+
+        String[] rest = Arrays.copyOfRange(args, 1, args.length);
+        if (args[0].equals("serve")) {
+            InferenceServer.main(rest);
+            return;
+        }
+
+        try {
+            Properties options = parseOptions(rest);
+            if (args[0].equals("train")) {
+                train(options);
+            } else {
+                evaluate(options);
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(USAGE);
+            System.exit(2);
+        }
+    }
+
+    /**
+     * Reads {@code --key=value} arguments, on top of the properties file named by {@code --config} if there is one
+     *
+     * @param args the arguments after the command
+     * @return the options
+     * @throws IllegalArgumentException if an argument isn't of the form {@code --key=value}
+     */
+    static Properties parseOptions(String[] args) throws IOException {
+        Properties options = new Properties();
+
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected an option of the form --key=value but got \"" + arg + "\".");
+            }
+            options.setProperty(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+
+        String config = options.getProperty("config");
+        if (config != null) {
+            Properties file = new Properties();
+            try (Reader reader = new FileReader(config)) {
+                file.load(reader);
+            }
+
+            // Options given on the command line take precedence over the file
+            file.putAll(options);
+            options = file;
+        }
+
+        return options;
+    }
+
+    private static void train(Properties options) throws IOException {
+        Dataset dataset = readDataset(options, "images", "labels", "/data/train-images.idx3-ubyte", "/data/train-labels.idx1-ubyte");
+
+        Checkpoint resumeFrom = null;
+        if (options.containsKey("resume")) {
+            resumeFrom = Checkpointer.latest(new File(options.getProperty("resume")));
+            if (resumeFrom == null) {
+                throw new IllegalArgumentException("There are no checkpoints in " + options.getProperty("resume") + " to resume from.");
+            }
+        }
+
+        NeuralNetwork neuralNetwork;
+        if (resumeFrom != null) {
+            neuralNetwork = resumeFrom.loadNetwork();
+        } else if (options.containsKey("network")) {
+            neuralNetwork = loadNetwork(options.getProperty("network"));
+        } else {
+            int[] hidden = Arrays.stream(options.getProperty("hidden", "100").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+            int[] layerSizes = new int[hidden.length + 2];
+            layerSizes[0] = dataset.getInputSize();
+            System.arraycopy(hidden, 0, layerSizes, 1, hidden.length);
+            layerSizes[layerSizes.length - 1] = dataset.getNumClasses();
+            neuralNetwork = new NeuralNetwork(layerSizes);
+        }
+
+        Trainer.UpdateMode updateMode = Trainer.UpdateMode.valueOf(options.getProperty("mode", "synchronous").toUpperCase(Locale.ROOT));
+        int precision = switch (options.getProperty("precision", "double")) {
+            case "double" -> NetworkFile.DOUBLE_PRECISION;
+            case "single" -> NetworkFile.SINGLE_PRECISION;
+            default -> throw new IllegalArgumentException("The precision must be double or single.");
+        };
+        if (precision == NetworkFile.SINGLE_PRECISION && updateMode != Trainer.UpdateMode.SYNCHRONOUS) {
+            throw new IllegalArgumentException("Single precision training needs --mode=synchronous.");
+        }
+
+        Trainer trainer = new Trainer(neuralNetwork);
+        trainer.setUpdateMode(updateMode);
+        trainer.setPrecision(precision == NetworkFile.SINGLE_PRECISION ? Trainer.Precision.SINGLE : Trainer.Precision.DOUBLE);
+        trainer.setLocalSteps(Integer.parseInt(options.getProperty("local-steps", "8")));
+        trainer.setPrefetchDepth(Integer.parseInt(options.getProperty("prefetch", "2")));
+        if (options.containsKey("seed")) {
+            trainer.setSeed(Long.parseLong(options.getProperty("seed")));
+        }
+        if (options.containsKey("validation-images")) {
+            trainer.setValidationDataset(readDataset(options, "validation-images", "validation-labels", null, null),
+                    Integer.parseInt(options.getProperty("validation-interval", "1")));
+        }
+
+        if (resumeFrom != null) {
+            trainer.resumeFrom(resumeFrom);
+        }
+
+        trainer.addListener(new LoggingMetricsSink(Integer.parseInt(options.getProperty("log-interval", "100"))));
+        CsvMetricsSink csv = options.containsKey("metrics") ? new CsvMetricsSink(new File(options.getProperty("metrics"))) : null;
+        if (csv != null) {
+            trainer.addListener(csv);
+        }
+
+        Checkpointer checkpointer = null;
+        if (options.containsKey("checkpoint-dir")) {
+            checkpointer = new Checkpointer(new File(options.getProperty("checkpoint-dir")));
+            checkpointer.setFormat(switch (options.getProperty("checkpoint-format", "binary")) {
+                case "binary" -> Checkpointer.Format.BINARY;
+                case "text" -> Checkpointer.Format.TEXT;
+                default -> throw new IllegalArgumentException("The checkpoint format must be binary or text.");
+            });
+            checkpointer.setRetention(Integer.parseInt(options.getProperty("keep-last", "3")), Integer.parseInt(options.getProperty("keep-best", "1")));
+            trainer.setCheckpointer(checkpointer, Integer.parseInt(options.getProperty("checkpoint-interval", "1")));
+        }
+
+        File output = new File(options.getProperty("output", "trained.nnet"));
+
+        // Stopping the process finishes the current epoch and saves, so a scheduler can end a run early without losing it
+        CountDownLatch saved = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            // Once training has ended, successfully or not, there is nothing left to stop or wait for
+            if (saved.getCount() == 0) return;
+
+            trainer.stop();
+            try {
+                saved.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }));
+
+        try {
+            NeuralNetwork best = trainer.start(dataset, Integer.parseInt(options.getProperty("epochs", "10")), 0, 0);
+            NetworkFile.write(best, output, precision);
+            System.out.println("Saved the network to " + output + ".");
+        } finally {
+            trainer.close();
+            if (csv != null) {
+                csv.close();
+            }
+            if (checkpointer != null) {
+                checkpointer.close();
+            }
+            saved.countDown();
+        }
+    }
+
+    private static void evaluate(Properties options) throws IOException {
+        if (!options.containsKey("network")) {
+            throw new IllegalArgumentException("--network is required.");
+        }
+
+        NeuralNetwork neuralNetwork = loadNetwork(options.getProperty("network"));
+        Dataset dataset = readDataset(options, "images", "labels", "/data/t10k-images.idx3-ubyte", "/data/t10k-labels.idx1-ubyte");
+        Evaluation evaluation = new Evaluator(Integer.parseInt(options.getProperty("top-k", String.valueOf(Evaluator.DEFAULT_TOP_K))))
+                .evaluate(neuralNetwork, dataset);
+
+        DecimalFormat percent = new DecimalFormat("#.##");
+        System.out.println("Samples: " + evaluation.getSize());
+        System.out.println("Cost: " + evaluation.getLoss());
+        System.out.println("Accuracy: " + percent.format(evaluation.getAccuracy() * 100) + "%");
+        System.out.println("Top " + evaluation.getTopK() + " accuracy: " + percent.format(evaluation.getTopKAccuracy() * 100) + "%");
+        System.out.println("Certainty: " + percent.format(evaluation.getCertainty() * 100) + "%");
+        System.out.println("Confusion matrix (rows are labels, columns are predictions):");
+        for (int[] row : evaluation.getConfusionMatrix()) {
+            StringBuilder line = new StringBuilder();
+            for (int count : row) {
+                line.append(String.format("%6d", count));
+            }
+            System.out.println(line);
+        }
+    }
+
+    private static NeuralNetwork loadNetwork(String path) {
+        NeuralNetwork neuralNetwork = NeuralNetwork.fromFile(new File(path));
+        if (neuralNetwork == null) {
+            throw new IllegalArgumentException("Could not load a network from " + path + ".");
+        }
+        return neuralNetwork;
+    }
+
+    /**
+     * Reads a dataset from the IDX files named by two options, falling back to resources bundled in the jar
+     */
+    private static Dataset readDataset(Properties options, String imagesKey, String labelsKey, String defaultImages, String defaultLabels) throws IOException {
+        String images = options.getProperty(imagesKey);
+        String labels = options.getProperty(labelsKey);
+
+        if (images != null && labels != null) {
+            return MnistDataReader.readDataset(new File(images), new File(labels));
+        }
+        if (images != null || labels != null || defaultImages == null) {
+            throw new IllegalArgumentException("--" + imagesKey + " and --" + labelsKey + " must be given together.");
+        }
+
+        try (InputStream imageData = CommandLine.class.getResourceAsStream(defaultImages);
+             InputStream labelData = CommandLine.class.getResourceAsStream(defaultLabels)) {
+            if (imageData == null || labelData == null) {
+                throw new IllegalArgumentException("No --" + imagesKey + " and --" + labelsKey + " were given, and " + defaultImages + " isn't bundled.");
+            }
+            return MnistDataReader.readDataset(imageData, labelData);
+        }
+    }
+}
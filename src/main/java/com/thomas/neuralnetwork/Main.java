@@ -3,8 +3,16 @@ package com.thomas.neuralnetwork;
 import com.thomas.neuralnetwork.controllers.MainController;
 import javafx.application.Application;
 
+import java.io.IOException;
+
 public class Main {
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+        // Commands such as "train" run headless instead of starting the user interface
+        if (args.length > 0 && CommandLine.isCommand(args[0])) {
+            CommandLine.main(args);
+            return;
+        }
+
         // This is a necessary workaround when bundling as a jar
         // See https://stackoverflow.com/questions/59974282/how-to-bundle-the-javafx-sdk-directly-in-the-output-jar
         Application.launch(MainController.class, args);
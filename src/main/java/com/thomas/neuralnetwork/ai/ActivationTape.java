@@ -0,0 +1,110 @@
+package com.thomas.neuralnetwork.ai;
+
+/**
+ * Records the pre-activation (z) and activation (a) of every layer during a forward pass,
+ * so that back propagation can read them instead of recomputing the forward pass.
+ * A tape is sized for one network and can be reused for any number of passes, but must not be shared between threads.
+ */
+public class ActivationTape {
+	private final double[][] preActivations;
+	private final double[][] activations;
+	private final double[][] errorGradients;
+	private final double[] derivatives;
+	private double[] inputs;
+
+	/**
+	 * Creates a new tape with buffers sized for the given network
+	 *
+	 * @param neuralNetwork the network this tape will record
+	 */
+	public ActivationTape(NeuralNetwork neuralNetwork) {
+		Layer[] layers = neuralNetwork.getLayers();
+		preActivations = new double[layers.length][];
+		activations = new double[layers.length][];
+		errorGradients = new double[layers.length][];
+		int maxLayerSize = 0;
+		for (int l = 0; l < layers.length; l++) {
+			preActivations[l] = new double[layers[l].getNumNeurons()];
+			activations[l] = new double[layers[l].getNumNeurons()];
+			errorGradients[l] = new double[layers[l].getNumNeurons()];
+			maxLayerSize = Math.max(maxLayerSize, layers[l].getNumNeurons());
+		}
+		derivatives = new double[maxLayerSize];
+	}
+
+	/**
+	 * Sets the inputs of the pass being recorded
+	 *
+	 * @param inputs the inputs given to the network
+	 */
+	void setInputs(double[] inputs) {
+		this.inputs = inputs;
+	}
+
+	/**
+	 * Gets the inputs of the last recorded pass
+	 *
+	 * @return the inputs given to the network
+	 */
+	public double[] getInputs() {
+		return inputs;
+	}
+
+	/**
+	 * Gets the input to a layer, which is the network input for the first layer and the previous layer's activation otherwise
+	 *
+	 * @param layer the index of the layer
+	 * @return the input of the layer
+	 */
+	public double[] getLayerInputs(int layer) {
+		return layer == 0 ? inputs : activations[layer - 1];
+	}
+
+	/**
+	 * Gets the output of a layer before the activation function was applied (z)
+	 *
+	 * @param layer the index of the layer
+	 * @return the pre-activation of the layer
+	 */
+	public double[] getPreActivations(int layer) {
+		return preActivations[layer];
+	}
+
+	/**
+	 * Gets the output of a layer after the activation function was applied (a)
+	 *
+	 * @param layer the index of the layer
+	 * @return the activation of the layer
+	 */
+	public double[] getActivations(int layer) {
+		return activations[layer];
+	}
+
+	/**
+	 * Gets the buffer used to hold δL/δz of a layer during back propagation
+	 *
+	 * @param layer the index of the layer
+	 * @return the error gradient buffer of the layer
+	 */
+	double[] getErrorGradients(int layer) {
+		return errorGradients[layer];
+	}
+
+	/**
+	 * Gets a scratch buffer large enough to hold δa/δz of any layer
+	 *
+	 * @return the scratch buffer
+	 */
+	double[] getDerivatives() {
+		return derivatives;
+	}
+
+	/**
+	 * Gets the output of the network from the last recorded pass
+	 *
+	 * @return the activation of the output layer
+	 */
+	public double[] getOutputs() {
+		return activations[activations.length - 1];
+	}
+}
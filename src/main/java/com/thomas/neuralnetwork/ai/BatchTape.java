@@ -0,0 +1,143 @@
+package com.thomas.neuralnetwork.ai;
+
+/**
+ * The batched counterpart of {@link ActivationTape}.
+ * Every buffer is a row-major matrix with one row per sample, so the pre-activations of layer l
+ * for sample r are stored at [r * numNeurons, (r + 1) * numNeurons).
+ * A tape can hold batches of up to its capacity and must not be shared between threads.
+ */
+public class BatchTape {
+	private final int capacity;
+	private final int[] layerSizes;
+	private final double[][] preActivations;
+	private final double[][] activations;
+	private final double[][] errorGradients;
+	private final double[] derivatives;
+	private double[] inputs;
+	private int batchSize;
+
+	/**
+	 * Creates a new tape with buffers sized for the given network
+	 *
+	 * @param neuralNetwork the network this tape will record
+	 * @param capacity      the largest batch this tape can hold
+	 */
+	public BatchTape(NeuralNetwork neuralNetwork, int capacity) {
+		Layer[] layers = neuralNetwork.getLayers();
+		this.capacity = capacity;
+		layerSizes = new int[layers.length];
+		preActivations = new double[layers.length][];
+		activations = new double[layers.length][];
+		errorGradients = new double[layers.length][];
+		int maxLayerSize = 0;
+		for (int l = 0; l < layers.length; l++) {
+			layerSizes[l] = layers[l].getNumNeurons();
+			preActivations[l] = new double[capacity * layerSizes[l]];
+			activations[l] = new double[capacity * layerSizes[l]];
+			errorGradients[l] = new double[capacity * layerSizes[l]];
+			maxLayerSize = Math.max(maxLayerSize, layerSizes[l]);
+		}
+		derivatives = new double[capacity * maxLayerSize];
+	}
+
+	/**
+	 * Sets the inputs of the batch being recorded
+	 *
+	 * @param inputs    a row-major matrix of inputs, one row per sample
+	 * @param batchSize the number of samples in the batch
+	 */
+	void setInputs(double[] inputs, int batchSize) {
+		if (batchSize > capacity) {
+			throw new IllegalArgumentException("Batch of " + batchSize + " samples does not fit in a tape with a capacity of " + capacity + ".");
+		}
+
+		this.inputs = inputs;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Gets the input matrix of a layer, which is the network input for the first layer and the previous layer's activation otherwise
+	 *
+	 * @param layer the index of the layer
+	 * @return the input matrix of the layer
+	 */
+	public double[] getLayerInputs(int layer) {
+		return layer == 0 ? inputs : activations[layer - 1];
+	}
+
+	/**
+	 * Gets the pre-activation matrix (z) of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return the pre-activation matrix of the layer
+	 */
+	public double[] getPreActivations(int layer) {
+		return preActivations[layer];
+	}
+
+	/**
+	 * Gets the activation matrix (a) of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return the activation matrix of the layer
+	 */
+	public double[] getActivations(int layer) {
+		return activations[layer];
+	}
+
+	/**
+	 * Gets the matrix used to hold δL/δz of a layer during back propagation
+	 *
+	 * @param layer the index of the layer
+	 * @return the error gradient matrix of the layer
+	 */
+	double[] getErrorGradients(int layer) {
+		return errorGradients[layer];
+	}
+
+	/**
+	 * Gets a scratch matrix large enough to hold δa/δz of any layer for a full batch
+	 *
+	 * @return the scratch matrix
+	 */
+	double[] getDerivatives() {
+		return derivatives;
+	}
+
+	/**
+	 * Gets the output matrix of the network from the last recorded batch
+	 *
+	 * @return the activation matrix of the output layer
+	 */
+	public double[] getOutputs() {
+		return activations[activations.length - 1];
+	}
+
+	/**
+	 * Gets the number of neurons in a layer, which is the row length of that layer's matrices
+	 *
+	 * @param layer the index of the layer
+	 * @return the number of neurons in the layer
+	 */
+	public int getLayerSize(int layer) {
+		return layerSizes[layer];
+	}
+
+	/**
+	 * Gets the number of samples in the last recorded batch
+	 *
+	 * @return the batch size
+	 */
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	/**
+	 * Gets the largest batch this tape can hold
+	 *
+	 * @return the capacity
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,94 @@
+package com.thomas.neuralnetwork.ai;
+
+import java.util.Arrays;
+
+/**
+ * The scores of a network on a dataset, as measured by an {@link Evaluator}
+ */
+public class Evaluation {
+	private final int size;
+	private final double loss;
+	private final int correct;
+	private final int topKCorrect;
+	private final int topK;
+	private final double certainty;
+	private final int[][] confusionMatrix;
+
+	Evaluation(int size, double loss, int correct, int topKCorrect, int topK, double certainty, int[][] confusionMatrix) {
+		this.size = size;
+		this.loss = loss;
+		this.correct = correct;
+		this.topKCorrect = topKCorrect;
+		this.topK = topK;
+		this.certainty = certainty;
+		this.confusionMatrix = confusionMatrix;
+	}
+
+	/**
+	 * Gets the number of samples evaluated
+	 */
+	public int getSize() {
+		return size;
+	}
+
+	/**
+	 * Gets the loss averaged over every sample
+	 */
+	public double getLoss() {
+		return loss;
+	}
+
+	/**
+	 * Gets the fraction of samples whose largest output is their label
+	 */
+	public double getAccuracy() {
+		return size == 0 ? 0 : (double) correct / size;
+	}
+
+	/**
+	 * Gets the fraction of samples whose label is among their {@link #getTopK()} largest outputs
+	 */
+	public double getTopKAccuracy() {
+		return size == 0 ? 0 : (double) topKCorrect / size;
+	}
+
+	/**
+	 * Gets the number of largest outputs that {@link #getTopKAccuracy()} looks at
+	 */
+	public int getTopK() {
+		return topK;
+	}
+
+	/**
+	 * Gets the output for the label averaged over every sample, which is how sure the network is of the right answer
+	 */
+	public double getCertainty() {
+		return certainty;
+	}
+
+	/**
+	 * Gets the number of samples of each label predicted as each class
+	 *
+	 * @return a copy of the matrix, indexed by the label and then by the predicted class
+	 */
+	public int[][] getConfusionMatrix() {
+		return Arrays.stream(confusionMatrix).map(int[]::clone).toArray(int[][]::new);
+	}
+
+	/**
+	 * Gets the number of samples of each label that were predicted as another class
+	 *
+	 * @return the number of misclassified samples, indexed by the label
+	 */
+	public int[] getMisclassified() {
+		int[] misclassified = new int[confusionMatrix.length];
+		for (int label = 0; label < confusionMatrix.length; label++) {
+			for (int predicted = 0; predicted < confusionMatrix[label].length; predicted++) {
+				if (predicted != label) {
+					misclassified[label] += confusionMatrix[label][predicted];
+				}
+			}
+		}
+		return misclassified;
+	}
+}
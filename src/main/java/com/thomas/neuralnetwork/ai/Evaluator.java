@@ -0,0 +1,135 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.data.Dataset;
+
+import java.util.stream.IntStream;
+
+import static com.thomas.neuralnetwork.ai.NeuralNetwork.LOSS_FUNCTION;
+
+/**
+ * Scores a network on a dataset in a single parallel pass.
+ * The dataset is split into shards that are pushed through the network as batches on every core,
+ * and each thread adds its shards' loss, accuracy, top-k accuracy and confusion matrix to its own accumulator,
+ * so the threads never contend until the accumulators are merged at the end.
+ */
+public class Evaluator {
+	public static final int DEFAULT_TOP_K = 3;
+
+	// Matches the chunks NeuralNetwork.predictBatch splits batches into, so each shard is predicted on the thread that evaluates it
+	private static final int SHARD_SIZE = 64;
+
+	private final int topK;
+
+	/**
+	 * Creates a new evaluator that measures the top 3 accuracy
+	 */
+	public Evaluator() {
+		this(DEFAULT_TOP_K);
+	}
+
+	/**
+	 * Creates a new evaluator
+	 *
+	 * @param topK the number of largest outputs a label must be among for the top-k accuracy
+	 */
+	public Evaluator(int topK) {
+		if (topK < 1) {
+			throw new IllegalArgumentException("Top-k accuracy needs k to be at least 1 but it was " + topK + ".");
+		}
+
+		this.topK = topK;
+	}
+
+	/**
+	 * Scores a network on every sample of a dataset
+	 *
+	 * @param neuralNetwork the network to score, which must not be changed until the evaluation is done
+	 * @param dataset       the samples to score it on
+	 * @return the scores
+	 */
+	public Evaluation evaluate(NeuralNetwork neuralNetwork, Dataset dataset) {
+		int numShards = Math.ceilDiv(dataset.size(), SHARD_SIZE);
+
+		Accumulator total = IntStream.range(0, numShards).parallel().collect(
+				() -> new Accumulator(dataset),
+				(accumulator, shard) -> accumulator.add(neuralNetwork, shard * SHARD_SIZE, Math.min((shard + 1) * SHARD_SIZE, dataset.size())),
+				Accumulator::merge);
+
+		return new Evaluation(dataset.size(), dataset.size() == 0 ? 0 : total.loss / dataset.size(), total.correct, total.topKCorrect, topK,
+				dataset.size() == 0 ? 0 : total.certainty / dataset.size(), total.confusionMatrix);
+	}
+
+	/**
+	 * The running totals of one thread, along with the buffers it predicts its shards with
+	 */
+	private class Accumulator {
+		private final Dataset dataset;
+		private final double[] inputs;
+		private final double[] actual;
+		private final double[] predicted;
+
+		private double loss;
+		private int correct;
+		private int topKCorrect;
+		private double certainty;
+		private final int[][] confusionMatrix;
+
+		private Accumulator(Dataset dataset) {
+			this.dataset = dataset;
+			inputs = new double[SHARD_SIZE * dataset.getInputSize()];
+			actual = new double[SHARD_SIZE * dataset.getNumClasses()];
+			predicted = new double[SHARD_SIZE * dataset.getNumClasses()];
+			confusionMatrix = new int[dataset.getNumClasses()][dataset.getNumClasses()];
+		}
+
+		private void add(NeuralNetwork neuralNetwork, int start, int end) {
+			int inputSize = dataset.getInputSize();
+			int numClasses = dataset.getNumClasses();
+
+			for (int i = start; i < end; i++) {
+				dataset.copyInputs(i, inputs, (i - start) * inputSize);
+			}
+
+			neuralNetwork.predictBatch(inputs, end - start, predicted);
+
+			for (int i = start; i < end; i++) {
+				int offset = (i - start) * numClasses;
+				int label = dataset.getLabel(i);
+
+				dataset.copyOutputs(i, actual, offset);
+				loss += LOSS_FUNCTION.calculate(actual, predicted, offset, numClasses);
+
+				int best = 0;
+				int ranked = 0;
+				double labelOutput = predicted[offset + label];
+				for (int j = 0; j < numClasses; j++) {
+					double output = predicted[offset + j];
+					if (output > predicted[offset + best]) {
+						best = j;
+					}
+					// The label's rank is the number of outputs larger than its own
+					if (output > labelOutput) {
+						ranked++;
+					}
+				}
+
+				if (best == label) correct++;
+				if (ranked < topK) topKCorrect++;
+				confusionMatrix[label][best]++;
+				certainty += labelOutput;
+			}
+		}
+
+		private void merge(Accumulator other) {
+			loss += other.loss;
+			correct += other.correct;
+			topKCorrect += other.topKCorrect;
+			certainty += other.certainty;
+			for (int i = 0; i < confusionMatrix.length; i++) {
+				for (int j = 0; j < confusionMatrix[i].length; j++) {
+					confusionMatrix[i][j] += other.confusionMatrix[i][j];
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.thomas.neuralnetwork.ai;
+
+/**
+ * The single precision counterpart of {@link BatchTape}
+ */
+public class FloatBatchTape {
+	private final int capacity;
+	private final int[] layerSizes;
+	private final float[][] preActivations;
+	private final float[][] activations;
+	private final float[][] errorGradients;
+	private final float[] derivatives;
+	private float[] inputs;
+	private int batchSize;
+
+	/**
+	 * Creates a new tape with buffers sized for the given network
+	 *
+	 * @param neuralNetwork the network this tape will record
+	 * @param capacity      the largest batch this tape can hold
+	 */
+	public FloatBatchTape(FloatNeuralNetwork neuralNetwork, int capacity) {
+		FloatLayer[] layers = neuralNetwork.getLayers();
+		this.capacity = capacity;
+		layerSizes = new int[layers.length];
+		preActivations = new float[layers.length][];
+		activations = new float[layers.length][];
+		errorGradients = new float[layers.length][];
+		int maxLayerSize = 0;
+		for (int l = 0; l < layers.length; l++) {
+			layerSizes[l] = layers[l].getNumNeurons();
+			preActivations[l] = new float[capacity * layerSizes[l]];
+			activations[l] = new float[capacity * layerSizes[l]];
+			errorGradients[l] = new float[capacity * layerSizes[l]];
+			maxLayerSize = Math.max(maxLayerSize, layerSizes[l]);
+		}
+		derivatives = new float[capacity * maxLayerSize];
+	}
+
+	void setInputs(float[] inputs, int batchSize) {
+		if (batchSize > capacity) {
+			throw new IllegalArgumentException("Batch of " + batchSize + " samples does not fit in a tape with a capacity of " + capacity + ".");
+		}
+
+		this.inputs = inputs;
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Gets the input matrix of a layer, which is the network input for the first layer and the previous layer's activation otherwise
+	 *
+	 * @param layer the index of the layer
+	 * @return the input matrix of the layer
+	 */
+	public float[] getLayerInputs(int layer) {
+		return layer == 0 ? inputs : activations[layer - 1];
+	}
+
+	public float[] getPreActivations(int layer) {
+		return preActivations[layer];
+	}
+
+	public float[] getActivations(int layer) {
+		return activations[layer];
+	}
+
+	float[] getErrorGradients(int layer) {
+		return errorGradients[layer];
+	}
+
+	float[] getDerivatives() {
+		return derivatives;
+	}
+
+	public float[] getOutputs() {
+		return activations[activations.length - 1];
+	}
+
+	public int getLayerSize(int layer) {
+		return layerSizes[layer];
+	}
+
+	public int getBatchSize() {
+		return batchSize;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+}
@@ -0,0 +1,65 @@
+package com.thomas.neuralnetwork.ai;
+
+import java.util.Arrays;
+
+/**
+ * The single precision counterpart of {@link Gradients}
+ */
+public class FloatGradients {
+	private final float[][] weights;
+	private final float[][] biases;
+
+	/**
+	 * Creates a new set of zeroed gradients sized for the given network
+	 *
+	 * @param neuralNetwork the network the gradients are for
+	 */
+	public FloatGradients(FloatNeuralNetwork neuralNetwork) {
+		FloatLayer[] layers = neuralNetwork.getLayers();
+		weights = new float[layers.length][];
+		biases = new float[layers.length][];
+		for (int l = 0; l < layers.length; l++) {
+			weights[l] = new float[layers[l].getWeights().length];
+			biases[l] = new float[layers[l].getBiases().length];
+		}
+	}
+
+	/**
+	 * Sets every gradient to zero
+	 */
+	public void clear() {
+		for (int l = 0; l < weights.length; l++) {
+			Arrays.fill(weights[l], 0);
+			Arrays.fill(biases[l], 0);
+		}
+	}
+
+	/**
+	 * Gets the weight gradients of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return a row-major array with the same layout as {@link FloatLayer#getWeights()}
+	 */
+	public float[] getWeights(int layer) {
+		return weights[layer];
+	}
+
+	/**
+	 * Gets the bias gradients of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return an array with the same layout as {@link FloatLayer#getBiases()}
+	 */
+	public float[] getBiases(int layer) {
+		return biases[layer];
+	}
+
+	/**
+	 * Gets the number of layers these gradients cover
+	 *
+	 * @return the number of layers
+	 */
+	public int getNumLayers() {
+		return weights.length;
+	}
+}
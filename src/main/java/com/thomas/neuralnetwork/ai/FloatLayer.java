@@ -0,0 +1,267 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+
+import java.util.Arrays;
+
+/**
+ * The single precision counterpart of {@link Layer}, storing its weights as a flat row-major float matrix
+ */
+public class FloatLayer {
+	private final int numNeurons;
+	private final int numInputs;
+	private final float[] weights;
+	private final float[] biases;
+
+	/**
+	 * Creates a new FloatLayer backed by the given weight matrix and bias vector (the arrays are not copied)
+	 *
+	 * @param numNeurons the number of neurons in this layer
+	 * @param numInputs  the number of inputs to each neuron
+	 * @param weights    a row-major array of length numNeurons * numInputs
+	 * @param biases     an array of length numNeurons
+	 */
+	public FloatLayer(int numNeurons, int numInputs, float[] weights, float[] biases) {
+		if (weights.length != numNeurons * numInputs || biases.length != numNeurons) {
+			throw new IllegalArgumentException("Expected " + numNeurons * numInputs + " weights and " + numNeurons
+					+ " biases but got " + weights.length + " and " + biases.length + ".");
+		}
+
+		this.numNeurons = numNeurons;
+		this.numInputs = numInputs;
+		this.weights = weights;
+		this.biases = biases;
+	}
+
+	/**
+	 * Creates a single precision copy of a layer, rounding every weight and bias to the nearest float
+	 *
+	 * @param layer the layer to convert
+	 * @return a new float layer
+	 */
+	public static FloatLayer fromLayer(Layer layer) {
+		return new FloatLayer(layer.getNumNeurons(), layer.getNumInputs(), toFloats(layer.getWeights()), toFloats(layer.getBiases()));
+	}
+
+	/**
+	 * Creates a double precision copy of this layer
+	 *
+	 * @return a new layer
+	 */
+	public Layer toLayer() {
+		return new Layer(numNeurons, numInputs, toDoubles(weights), toDoubles(biases));
+	}
+
+	/**
+	 * Rounds every weight and bias of a layer of the same shape into this one
+	 *
+	 * @param layer the layer to copy from
+	 * @throws IllegalArgumentException if the layer has a different shape
+	 */
+	public void copyFrom(Layer layer) {
+		checkShape(layer);
+
+		double[] sourceWeights = layer.getWeights();
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] = (float) sourceWeights[i];
+		}
+		double[] sourceBiases = layer.getBiases();
+		for (int i = 0; i < biases.length; i++) {
+			biases[i] = (float) sourceBiases[i];
+		}
+	}
+
+	/**
+	 * Widens every weight and bias into a double precision layer of the same shape
+	 *
+	 * @param layer the layer to overwrite
+	 * @throws IllegalArgumentException if the layer has a different shape
+	 */
+	public void copyInto(Layer layer) {
+		checkShape(layer);
+
+		double[] targetWeights = layer.getWeights();
+		for (int i = 0; i < weights.length; i++) {
+			targetWeights[i] = weights[i];
+		}
+		double[] targetBiases = layer.getBiases();
+		for (int i = 0; i < biases.length; i++) {
+			targetBiases[i] = biases[i];
+		}
+	}
+
+	private void checkShape(Layer layer) {
+		if (layer.getNumNeurons() != numNeurons || layer.getNumInputs() != numInputs) {
+			throw new IllegalArgumentException("Expected a layer of " + numNeurons + " neurons with " + numInputs + " inputs but got "
+					+ layer.getNumNeurons() + " with " + layer.getNumInputs() + ".");
+		}
+	}
+
+	/**
+	 * Creates a deep copy of this layer
+	 *
+	 * @return a new layer which is identical to this one
+	 */
+	public FloatLayer copy() {
+		return new FloatLayer(numNeurons, numInputs, Arrays.copyOf(weights, weights.length), Arrays.copyOf(biases, biases.length));
+	}
+
+	/**
+	 * Preforms a feed forward pass and writes the unactivated output into the given array
+	 *
+	 * @param inputs an array of inputs used to calculate the pass
+	 * @param result an array of length numNeurons to write the result of the feed forward pass into
+	 */
+	public void calculateInputs(float[] inputs, float[] result) {
+		calculateInputs(inputs, result, 1);
+	}
+
+	/**
+	 * Preforms a feed forward pass for a whole batch at once, Z = X·Wᵀ + b.
+	 * Four samples are processed together so every weight that is loaded is used four times.
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param result    a row-major batchSize × numNeurons matrix to write the unactivated outputs into
+	 * @param batchSize the number of samples in the batch
+	 */
+	public void calculateInputs(float[] inputs, float[] result, int batchSize) {
+		int r = 0;
+		for (; r + 4 <= batchSize; r += 4) {
+			int in0 = r * numInputs;
+			int in1 = in0 + numInputs;
+			int in2 = in1 + numInputs;
+			int in3 = in2 + numInputs;
+			int out0 = r * numNeurons;
+			int out1 = out0 + numNeurons;
+			int out2 = out1 + numNeurons;
+			int out3 = out2 + numNeurons;
+
+			for (int i = 0; i < numNeurons; i++) {
+				result[out0 + i] = biases[i];
+				result[out1 + i] = biases[i];
+				result[out2 + i] = biases[i];
+				result[out3 + i] = biases[i];
+				Kernels.dot4(weights, i * numInputs, inputs, in0, in1, in2, in3, numInputs,
+						result, out0 + i, out1 + i, out2 + i, out3 + i);
+			}
+		}
+
+		for (; r < batchSize; r++) {
+			int in = r * numInputs;
+			int out = r * numNeurons;
+			for (int i = 0; i < numNeurons; i++) {
+				result[out + i] = biases[i] + Kernels.dot(weights, i * numInputs, inputs, in, numInputs);
+			}
+		}
+	}
+
+	/**
+	 * Calculates δL/δa of the previous layer for a whole batch, δL/δZ·W
+	 *
+	 * @param errorGradients a row-major batchSize × numNeurons matrix holding δL/δz of this layer
+	 * @param result         a row-major batchSize × numInputs matrix to write δL/δa of the previous layer into
+	 * @param batchSize      the number of samples in the batch
+	 */
+	public void calculateInputErrors(float[] errorGradients, float[] result, int batchSize) {
+		for (int r = 0; r < batchSize; r++) {
+			int out = r * numInputs;
+			int in = r * numNeurons;
+			Arrays.fill(result, out, out + numInputs, 0);
+
+			for (int j = 0; j < numNeurons; j++) {
+				Kernels.axpy(errorGradients[in + j], weights, j * numInputs, result, out, numInputs);
+			}
+		}
+	}
+
+	/**
+	 * Adds δL/δw = δL/δZᵀ·X and δL/δb = ∑δL/δz, summed over the whole batch, to the given gradients
+	 *
+	 * @param inputs          a row-major batchSize × numInputs matrix of the inputs this layer received
+	 * @param errorGradients  a row-major batchSize × numNeurons matrix holding δL/δz of this layer
+	 * @param batchSize       the number of samples in the batch
+	 * @param weightGradients an array with the same layout as the weights to add the weight gradients to
+	 * @param biasGradients   an array with the same layout as the biases to add the bias gradients to
+	 */
+	public void accumulateGradients(float[] inputs, float[] errorGradients, int batchSize, float[] weightGradients, float[] biasGradients) {
+		for (int j = 0; j < numNeurons; j++) {
+			int row = j * numInputs;
+
+			int r = 0;
+			for (; r + 4 <= batchSize; r += 4) {
+				float gradient0 = errorGradients[r * numNeurons + j];
+				float gradient1 = errorGradients[(r + 1) * numNeurons + j];
+				float gradient2 = errorGradients[(r + 2) * numNeurons + j];
+				float gradient3 = errorGradients[(r + 3) * numNeurons + j];
+				int in0 = r * numInputs;
+				int in1 = in0 + numInputs;
+				int in2 = in1 + numInputs;
+				int in3 = in2 + numInputs;
+
+				biasGradients[j] += gradient0 + gradient1 + gradient2 + gradient3;
+				Kernels.axpy4(gradient0, gradient1, gradient2, gradient3, inputs, in0, in1, in2, in3,
+						weightGradients, row, numInputs);
+			}
+
+			for (; r < batchSize; r++) {
+				float gradient = errorGradients[r * numNeurons + j];
+				int in = r * numInputs;
+
+				biasGradients[j] += gradient;
+				Kernels.axpy(gradient, inputs, in, weightGradients, row, numInputs);
+			}
+		}
+	}
+
+	/**
+	 * Gets the row-major weight matrix of this layer, the weight connecting neuron i to input o is at [i * numInputs + o]
+	 *
+	 * @return the backing weight array (not a copy)
+	 */
+	public float[] getWeights() {
+		return weights;
+	}
+
+	/**
+	 * Gets the bias vector of this layer
+	 *
+	 * @return the backing bias array (not a copy)
+	 */
+	public float[] getBiases() {
+		return biases;
+	}
+
+	/**
+	 * Gets the number of neurons in this layer
+	 *
+	 * @return the number of neurons
+	 */
+	public int getNumNeurons() {
+		return numNeurons;
+	}
+
+	/**
+	 * Gets the number of inputs each neuron in this layer has
+	 *
+	 * @return the number of inputs
+	 */
+	public int getNumInputs() {
+		return numInputs;
+	}
+
+	private static float[] toFloats(double[] array) {
+		float[] result = new float[array.length];
+		for (int i = 0; i < array.length; i++) {
+			result[i] = (float) array[i];
+		}
+		return result;
+	}
+
+	private static double[] toDoubles(float[] array) {
+		double[] result = new double[array.length];
+		for (int i = 0; i < array.length; i++) {
+			result[i] = array[i];
+		}
+		return result;
+	}
+}
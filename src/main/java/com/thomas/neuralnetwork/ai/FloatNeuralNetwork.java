@@ -0,0 +1,264 @@
+package com.thomas.neuralnetwork.ai;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.thomas.neuralnetwork.math.activation.ActivationFunction;
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+
+import static com.thomas.neuralnetwork.ai.NeuralNetwork.ACTIVATION_FUNCTION;
+import static com.thomas.neuralnetwork.ai.NeuralNetwork.LOSS_FUNCTION;
+import static com.thomas.neuralnetwork.ai.NeuralNetwork.OUTPUT_ACTIVATION_FUNCTION;
+
+/**
+ * A single precision version of {@link NeuralNetwork}.
+ * Weights, activations and gradients are all stored as floats, which halves the memory traffic of every pass.
+ * It uses the same activation and loss functions as the double precision network, and converts to and from it,
+ * so existing .nnet files can be loaded with {@link #fromFile(File)}.
+ */
+public class FloatNeuralNetwork {
+	private final FloatLayer[] layers;
+
+	/**
+	 * Creates a new neural network using the given layers
+	 *
+	 * @param layers the layers to use in the network
+	 */
+	public FloatNeuralNetwork(FloatLayer[] layers) {
+		this.layers = layers;
+	}
+
+	/**
+	 * Creates a single precision copy of a network, rounding every weight and bias to the nearest float
+	 *
+	 * @param neuralNetwork the network to convert
+	 * @return a new single precision network
+	 */
+	public static FloatNeuralNetwork fromNetwork(NeuralNetwork neuralNetwork) {
+		Layer[] source = neuralNetwork.getLayers();
+		FloatLayer[] layers = new FloatLayer[source.length];
+		for (int i = 0; i < source.length; i++) {
+			layers[i] = FloatLayer.fromLayer(source[i]);
+		}
+		return new FloatNeuralNetwork(layers);
+	}
+
+	/**
+	 * Loads a network from a file, reading binary files straight into single precision
+	 * and converting legacy text files after loading them as a double precision network
+	 *
+	 * @param file a file containing a neural network
+	 * @return a new single precision network, or null if the file could not be read
+	 */
+	public static FloatNeuralNetwork fromFile(File file) {
+		try {
+			if (NetworkFile.isBinary(file)) {
+				return NetworkFile.readFloat(file);
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+			return null;
+		}
+
+		NeuralNetwork neuralNetwork = NeuralNetwork.fromFile(file);
+		return neuralNetwork == null ? null : fromNetwork(neuralNetwork);
+	}
+
+	/**
+	 * Creates a double precision copy of this network
+	 *
+	 * @return a new double precision network
+	 */
+	public NeuralNetwork toNeuralNetwork() {
+		Layer[] result = new Layer[layers.length];
+		for (int i = 0; i < layers.length; i++) {
+			result[i] = layers[i].toLayer();
+		}
+		return new NeuralNetwork(result);
+	}
+
+	/**
+	 * Rounds every weight and bias of a double precision network of the same shape into this one, so a working copy can be refreshed without allocating
+	 *
+	 * @param neuralNetwork the network to copy from
+	 * @throws IllegalArgumentException if the network has a different shape
+	 */
+	public void copyFrom(NeuralNetwork neuralNetwork) {
+		Layer[] source = checkShape(neuralNetwork);
+		for (int l = 0; l < layers.length; l++) {
+			layers[l].copyFrom(source[l]);
+		}
+	}
+
+	/**
+	 * Widens every weight and bias into a double precision network of the same shape
+	 *
+	 * @param neuralNetwork the network to overwrite
+	 * @throws IllegalArgumentException if the network has a different shape
+	 */
+	public void copyInto(NeuralNetwork neuralNetwork) {
+		Layer[] target = checkShape(neuralNetwork);
+		for (int l = 0; l < layers.length; l++) {
+			layers[l].copyInto(target[l]);
+		}
+	}
+
+	private Layer[] checkShape(NeuralNetwork neuralNetwork) {
+		Layer[] other = neuralNetwork.getLayers();
+		if (other.length != layers.length) {
+			throw new IllegalArgumentException("Expected a network with " + layers.length + " layers but got one with " + other.length + ".");
+		}
+		return other;
+	}
+
+	/**
+	 * Performs forward propagation on the neural network
+	 *
+	 * @param inputs the inputs to use
+	 * @return an array of the neural networks output
+	 */
+	public float[] forwardPropagate(float[] inputs) {
+		for (int i = 0; i < layers.length; i++) {
+			float[] result = new float[layers[i].getNumNeurons()];
+			layers[i].calculateInputs(inputs, result);
+			activationFunction(i).apply(result, result, 0, result.length);
+			inputs = result;
+		}
+		return inputs;
+	}
+
+	/**
+	 * Performs forward propagation on a whole batch at once, recording every layer's pre-activation and activation into the tape
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize the number of samples in the batch
+	 * @param tape      the tape to record the pass into
+	 * @return a row-major batchSize × numOutputs matrix of the neural networks output (owned by the tape)
+	 */
+	public float[] forwardPropagate(float[] inputs, int batchSize, FloatBatchTape tape) {
+		forwardPropagate(inputs, batchSize, tape, true);
+		return tape.getOutputs();
+	}
+
+	private void forwardPropagate(float[] inputs, int batchSize, FloatBatchTape tape, boolean activateOutput) {
+		tape.setInputs(inputs, batchSize);
+		for (int l = 0; l < layers.length; l++) {
+			float[] preActivations = tape.getPreActivations(l);
+			layers[l].calculateInputs(tape.getLayerInputs(l), preActivations, batchSize);
+
+			if (!activateOutput && l == layers.length - 1) break;
+
+			ActivationFunction activationFunction = activationFunction(l);
+			int size = tape.getLayerSize(l);
+			for (int r = 0; r < batchSize; r++) {
+				activationFunction.apply(preActivations, tape.getActivations(l), r * size, size);
+			}
+		}
+	}
+
+	/**
+	 * Performs back propagation on a whole batch at once and adds the summed gradient of every sample to the given gradients
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param outputs   a row-major batchSize × numOutputs matrix of the desired outputs
+	 * @param batchSize the number of samples in the batch
+	 * @param tape      the tape to record the forward pass into, must have been created for this network
+	 * @param gradients the gradients to add δL/δw and δL/δb to
+	 * @return the loss summed over every sample in the batch
+	 */
+	public double backPropagate(float[] inputs, float[] outputs, int batchSize, FloatBatchTape tape, FloatGradients gradients) {
+		forwardPropagate(inputs, batchSize, tape, false);
+
+		// Activate the output layer and initialize its δL/δz in a single pass
+		int last = layers.length - 1;
+		int outputSize = tape.getLayerSize(last);
+		double loss = 0;
+		for (int r = 0; r < batchSize; r++) {
+			loss += LOSS_FUNCTION.forwardBackward(OUTPUT_ACTIVATION_FUNCTION, outputs, tape.getPreActivations(last), tape.getActivations(last),
+					tape.getErrorGradients(last), r * outputSize, outputSize);
+		}
+
+		for (int l = last; l >= 0; --l) {
+			layers[l].accumulateGradients(tape.getLayerInputs(l), tape.getErrorGradients(l), batchSize, gradients.getWeights(l), gradients.getBiases(l));
+
+			if (l == 0) break;
+
+			// δL/δz of the previous layer is δL/δa (calculated by the layer) multiplied by δa/δz
+			float[] previousErrorGradients = tape.getErrorGradients(l - 1);
+			layers[l].calculateInputErrors(tape.getErrorGradients(l), previousErrorGradients, batchSize);
+
+			int size = tape.getLayerSize(l - 1);
+			float[] layerDerivatives = tape.getDerivatives();
+			for (int r = 0; r < batchSize; r++) {
+				ACTIVATION_FUNCTION.derive(tape.getPreActivations(l - 1), layerDerivatives, r * size, size);
+			}
+			for (int i = 0; i < batchSize * size; i++) {
+				previousErrorGradients[i] *= layerDerivatives[i];
+			}
+		}
+
+		return loss;
+	}
+
+	/**
+	 * Performs one step of mini-batch gradient descent: back propagates the batch,
+	 * moves every weight and bias against the averaged gradient, and clears the gradients for the next step
+	 *
+	 * @param inputs       a row-major batchSize × numInputs matrix of inputs
+	 * @param outputs      a row-major batchSize × numOutputs matrix of the desired outputs
+	 * @param batchSize    the number of samples in the batch
+	 * @param tape         the tape to record the forward pass into
+	 * @param gradients    zeroed gradients to accumulate the batch into
+	 * @param learningRate the learning rate
+	 * @return the loss summed over every sample in the batch
+	 */
+	public double trainBatch(float[] inputs, float[] outputs, int batchSize, FloatBatchTape tape, FloatGradients gradients, double learningRate) {
+		double loss = backPropagate(inputs, outputs, batchSize, tape, gradients);
+
+		// Must be negative in order to traverse the loss in the "downhill" direction
+		float scale = (float) (-learningRate / batchSize);
+		for (int l = 0; l < layers.length; l++) {
+			applyChanges(layers[l].getWeights(), gradients.getWeights(l), scale);
+			applyChanges(layers[l].getBiases(), gradients.getBiases(l), scale);
+		}
+
+		gradients.clear();
+		return loss;
+	}
+
+	private static void applyChanges(float[] parameters, float[] gradients, float scale) {
+		Kernels.axpy(scale, gradients, 0, parameters, 0, parameters.length);
+	}
+
+	private ActivationFunction activationFunction(int layer) {
+		return layer < layers.length - 1 ? ACTIVATION_FUNCTION : OUTPUT_ACTIVATION_FUNCTION;
+	}
+
+	/**
+	 * Gets the layers.
+	 */
+	public FloatLayer[] getLayers() {
+		return layers;
+	}
+
+	/**
+	 * Creates a deep copy of the neural network.
+	 *
+	 * @return a copy of the neural network
+	 */
+	public FloatNeuralNetwork copy() {
+		FloatLayer[] copiedLayers = new FloatLayer[layers.length];
+		for (int i = 0; i < layers.length; i++) {
+			copiedLayers[i] = layers[i].copy();
+		}
+		return new FloatNeuralNetwork(copiedLayers);
+	}
+
+	/**
+	 * Saves in the same text format as {@link NeuralNetwork}, so a single precision network can be loaded by either class
+	 */
+	@Override
+	public String toString() {
+		return toNeuralNetwork().toString();
+	}
+}
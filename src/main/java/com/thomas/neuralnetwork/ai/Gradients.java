@@ -0,0 +1,81 @@
+package com.thomas.neuralnetwork.ai;
+
+import java.util.Arrays;
+
+/**
+ * Holds δL/δw and δL/δb for every layer of a network, laid out the same way as the layer's own weights and biases.
+ */
+public class Gradients {
+	private final double[][] weights;
+	private final double[][] biases;
+
+	/**
+	 * Creates a new set of zeroed gradients sized for the given network
+	 *
+	 * @param neuralNetwork the network the gradients are for
+	 */
+	public Gradients(NeuralNetwork neuralNetwork) {
+		Layer[] layers = neuralNetwork.getLayers();
+		weights = new double[layers.length][];
+		biases = new double[layers.length][];
+		for (int l = 0; l < layers.length; l++) {
+			weights[l] = new double[layers[l].getWeights().length];
+			biases[l] = new double[layers[l].getBiases().length];
+		}
+	}
+
+	/**
+	 * Sets every gradient to zero
+	 */
+	public void clear() {
+		for (int l = 0; l < weights.length; l++) {
+			Arrays.fill(weights[l], 0);
+			Arrays.fill(biases[l], 0);
+		}
+	}
+
+	/**
+	 * Adds another set of gradients to this one
+	 *
+	 * @param other gradients for the same network
+	 */
+	public void add(Gradients other) {
+		for (int l = 0; l < weights.length; l++) {
+			for (int i = 0; i < weights[l].length; i++) {
+				weights[l][i] += other.weights[l][i];
+			}
+			for (int i = 0; i < biases[l].length; i++) {
+				biases[l][i] += other.biases[l][i];
+			}
+		}
+	}
+
+	/**
+	 * Gets the weight gradients of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return a row-major array with the same layout as {@link Layer#getWeights()}
+	 */
+	public double[] getWeights(int layer) {
+		return weights[layer];
+	}
+
+	/**
+	 * Gets the bias gradients of a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return an array with the same layout as {@link Layer#getBiases()}
+	 */
+	public double[] getBiases(int layer) {
+		return biases[layer];
+	}
+
+	/**
+	 * Gets the number of layers these gradients cover
+	 *
+	 * @return the number of layers
+	 */
+	public int getNumLayers() {
+		return weights.length;
+	}
+}
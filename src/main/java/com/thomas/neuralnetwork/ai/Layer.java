@@ -1,100 +1,292 @@
 package com.thomas.neuralnetwork.ai;
 
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+
+import java.util.Arrays;
+
 public class Layer {
-	private final Neuron[] neurons;
+	private final int numNeurons;
+	private final int numInputs;
+
+	/*
+	 Row-major weight matrix, the weight connecting neuron i to input o is stored at [i * numInputs + o].
+	 Keeping every weight in a single contiguous array means the forward pass walks memory linearly
+	 instead of chasing a pointer to a separate array for each neuron.
+	 */
+	private final double[] weights;
+	private final double[] biases;
 
 	/**
 	 * Creates a new Layer with random weights and biases
-	 * 
+	 *
 	 * @param numNeurons the number of neurons in this layer
 	 * @param numPreviousNeurons the number of neurons in the previous layer (used to calculate how many connections each neuron should have)
 	 */
 	public Layer(int numNeurons, int numPreviousNeurons) {
-		neurons = new Neuron[numNeurons];
+		this.numNeurons = numNeurons;
+		this.numInputs = numPreviousNeurons;
+		weights = new double[numNeurons * numPreviousNeurons];
+		biases = new double[numNeurons];
 		for (int i = 0; i < numNeurons; i++) {
-			double[] connections = new double[numPreviousNeurons];
 			for (int o = 0; o < numPreviousNeurons; o++) {
-				connections[o] = Math.random()*2 - 1;
+				weights[i * numPreviousNeurons + o] = Math.random()*2 - 1;
 			}
-			neurons[i] = new Neuron(connections, Math.random()*2 - 1);
+			biases[i] = Math.random()*2 - 1;
 		}
 	}
 
 	/**
-	 * Creates a new Layer using the given neurons
-	 * 
+	 * Creates a new Layer using the given neurons.
+	 * The weights and biases are copied into this layer's own storage,
+	 * so later changes to the given neurons are not reflected in this layer.
+	 *
 	 * @param neurons an array of neurons for this Layer to use
 	 */
 	public Layer(Neuron[] neurons) {
-		this.neurons = neurons;
+		this.numNeurons = neurons.length;
+		this.numInputs = neurons.length == 0 ? 0 : neurons[0].getNumConnections();
+		weights = new double[numNeurons * numInputs];
+		biases = new double[numNeurons];
+		for (int i = 0; i < numNeurons; i++) {
+			neurons[i].copyConnectionsTo(weights, i * numInputs);
+			biases[i] = neurons[i].getBias();
+		}
+	}
+
+	/**
+	 * Creates a new Layer backed by the given weight matrix and bias vector (the arrays are not copied)
+	 *
+	 * @param numNeurons the number of neurons in this layer
+	 * @param numInputs  the number of inputs to each neuron
+	 * @param weights    a row-major array of length numNeurons * numInputs
+	 * @param biases     an array of length numNeurons
+	 */
+	public Layer(int numNeurons, int numInputs, double[] weights, double[] biases) {
+		if (weights.length != numNeurons * numInputs || biases.length != numNeurons) {
+			throw new IllegalArgumentException("Expected " + numNeurons * numInputs + " weights and " + numNeurons
+					+ " biases but got " + weights.length + " and " + biases.length + ".");
+		}
+
+		this.numNeurons = numNeurons;
+		this.numInputs = numInputs;
+		this.weights = weights;
+		this.biases = biases;
 	}
 
 	/**
 	 * Creates a deep copy of this layer
-	 * 
+	 *
 	 * @return a new layer which is identical to this one
 	 */
 	public Layer copy() {
-		Neuron[] n = new Neuron[neurons.length];
-		for (int i = 0; i < n.length; i++) {
-			n[i] = neurons[i].copy();
-		}
-		return new Layer(n);
+		return new Layer(numNeurons, numInputs, Arrays.copyOf(weights, weights.length), Arrays.copyOf(biases, biases.length));
 	}
 
 	/**
 	 * Preforms a feed forward pass and returns the output
 	 * z = ∑(a*w) + b
 	 * unactivated output = sum of (previous layer output neuron activated * weight connected to said neuron) + bias
-	 * 
+	 *
 	 * @param inputs an array of inputs used to calculate the pass
 	 *
 	 * @return the result of the feed forward pass
 	 */
 	public double[] calculateInputs(double[] inputs) {
-		double[] result = new double[neurons.length];
-		for (int i = 0; i < neurons.length; i++) {
-			result[i] += neurons[i].getBias();
-			for (int o = 0; o < inputs.length; o++) {
-				result[i] += inputs[o] * neurons[i].getConnections()[o];
+		double[] result = new double[numNeurons];
+		calculateInputs(inputs, result);
+		return result;
+	}
+
+	/**
+	 * Preforms a feed forward pass and writes the unactivated output into the given array
+	 *
+	 * @param inputs an array of inputs used to calculate the pass
+	 * @param result an array of length numNeurons to write the result of the feed forward pass into
+	 */
+	public void calculateInputs(double[] inputs, double[] result) {
+		for (int i = 0; i < numNeurons; i++) {
+			result[i] = biases[i] + Kernels.dot(weights, i * numInputs, inputs, 0, numInputs);
+		}
+	}
+
+	/**
+	 * Preforms a feed forward pass for a whole batch at once, Z = X·Wᵀ + b.
+	 * Four samples are processed together so every weight that is loaded is used four times.
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param result    a row-major batchSize × numNeurons matrix to write the unactivated outputs into
+	 * @param batchSize the number of samples in the batch
+	 */
+	public void calculateInputs(double[] inputs, double[] result, int batchSize) {
+		int r = 0;
+		for (; r + 4 <= batchSize; r += 4) {
+			int in0 = r * numInputs;
+			int in1 = in0 + numInputs;
+			int in2 = in1 + numInputs;
+			int in3 = in2 + numInputs;
+			int out0 = r * numNeurons;
+			int out1 = out0 + numNeurons;
+			int out2 = out1 + numNeurons;
+			int out3 = out2 + numNeurons;
+
+			for (int i = 0; i < numNeurons; i++) {
+				result[out0 + i] = biases[i];
+				result[out1 + i] = biases[i];
+				result[out2 + i] = biases[i];
+				result[out3 + i] = biases[i];
+				Kernels.dot4(weights, i * numInputs, inputs, in0, in1, in2, in3, numInputs,
+						result, out0 + i, out1 + i, out2 + i, out3 + i);
+			}
+		}
+
+		for (; r < batchSize; r++) {
+			int in = r * numInputs;
+			int out = r * numNeurons;
+			for (int i = 0; i < numNeurons; i++) {
+				result[out + i] = biases[i] + Kernels.dot(weights, i * numInputs, inputs, in, numInputs);
+			}
+		}
+	}
+
+	/**
+	 * Calculates δL/δa of the previous layer for a whole batch, which is ∑((δL/δz)*w) over every neuron in this layer.
+	 * In matrix form this is δL/δZ·W.
+	 *
+	 * @param errorGradients a row-major batchSize × numNeurons matrix holding δL/δz of this layer
+	 * @param result         a row-major batchSize × numInputs matrix to write δL/δa of the previous layer into
+	 * @param batchSize      the number of samples in the batch
+	 */
+	public void calculateInputErrors(double[] errorGradients, double[] result, int batchSize) {
+		for (int r = 0; r < batchSize; r++) {
+			int out = r * numInputs;
+			int in = r * numNeurons;
+			Arrays.fill(result, out, out + numInputs, 0);
+
+			for (int j = 0; j < numNeurons; j++) {
+				Kernels.axpy(errorGradients[in + j], weights, j * numInputs, result, out, numInputs);
+			}
+		}
+	}
+
+	/**
+	 * Adds δL/δw = δL/δZᵀ·X and δL/δb = ∑δL/δz, summed over the whole batch, to the given gradients.
+	 * Four samples are processed together so every gradient that is loaded is updated four times.
+	 *
+	 * @param inputs          a row-major batchSize × numInputs matrix of the inputs this layer received
+	 * @param errorGradients  a row-major batchSize × numNeurons matrix holding δL/δz of this layer
+	 * @param batchSize       the number of samples in the batch
+	 * @param weightGradients an array with the same layout as the weights to add the weight gradients to
+	 * @param biasGradients   an array with the same layout as the biases to add the bias gradients to
+	 */
+	public void accumulateGradients(double[] inputs, double[] errorGradients, int batchSize, double[] weightGradients, double[] biasGradients) {
+		for (int j = 0; j < numNeurons; j++) {
+			int row = j * numInputs;
+
+			int r = 0;
+			for (; r + 4 <= batchSize; r += 4) {
+				double gradient0 = errorGradients[r * numNeurons + j];
+				double gradient1 = errorGradients[(r + 1) * numNeurons + j];
+				double gradient2 = errorGradients[(r + 2) * numNeurons + j];
+				double gradient3 = errorGradients[(r + 3) * numNeurons + j];
+				int in0 = r * numInputs;
+				int in1 = in0 + numInputs;
+				int in2 = in1 + numInputs;
+				int in3 = in2 + numInputs;
+
+				biasGradients[j] += gradient0 + gradient1 + gradient2 + gradient3;
+				Kernels.axpy4(gradient0, gradient1, gradient2, gradient3, inputs, in0, in1, in2, in3,
+						weightGradients, row, numInputs);
+			}
+
+			for (; r < batchSize; r++) {
+				double gradient = errorGradients[r * numNeurons + j];
+				int in = r * numInputs;
+
+				biasGradients[j] += gradient;
+				Kernels.axpy(gradient, inputs, in, weightGradients, row, numInputs);
 			}
 		}
-		return result;
 	}
 
 	/**
 	 * Creates a new Layer from an array
-	 * 
+	 *
 	 * @param array an array representing a layer
 	 * @return a new layer
 	 */
 	public static Layer fromArray(double[][] array) {
-		Neuron[] neurons = new Neuron[array.length];
-		for (int i = 0; i < array.length; i++) {
-			neurons[i] = Neuron.fromArray(array[i]);
+		int numNeurons = array.length;
+		int numInputs = numNeurons == 0 ? 0 : array[0].length - 1;
+		double[] weights = new double[numNeurons * numInputs];
+		double[] biases = new double[numNeurons];
+		for (int i = 0; i < numNeurons; i++) {
+			System.arraycopy(array[i], 0, weights, i * numInputs, numInputs);
+			biases[i] = array[i][numInputs];
 		}
-		return new Layer(neurons);
+		return new Layer(numNeurons, numInputs, weights, biases);
 	}
-	
+
 	/**
 	 * Creates an array from this layer
-	 * 
+	 *
 	 * @return an array representing this layer
 	 */
 	public double[][] toArray() {
-		double[][] result = new double[neurons.length][neurons[0].getConnections().length + 1];
-		for (int i = 0; i < neurons.length; i++) {
-			result[i] = neurons[i].toArray();
+		double[][] result = new double[numNeurons][numInputs + 1];
+		for (int i = 0; i < numNeurons; i++) {
+			System.arraycopy(weights, i * numInputs, result[i], 0, numInputs);
+			result[i][numInputs] = biases[i];
 		}
 		return result;
 	}
 
 	/**
-	 * Gets this layers neurons
-	 * 
+	 * Gets views of this layers neurons.
+	 * The returned neurons read from and write to this layer's weights and biases.
+	 *
 	 * @return an array of the neurons in this layer
 	 */
 	public Neuron[] getNeurons() {
+		Neuron[] neurons = new Neuron[numNeurons];
+		for (int i = 0; i < numNeurons; i++) {
+			neurons[i] = new Neuron(weights, biases, i, numInputs);
+		}
 		return neurons;
 	}
+
+	/**
+	 * Gets the row-major weight matrix of this layer, the weight connecting neuron i to input o is at [i * numInputs + o]
+	 *
+	 * @return the backing weight array (not a copy)
+	 */
+	public double[] getWeights() {
+		return weights;
+	}
+
+	/**
+	 * Gets the bias vector of this layer
+	 *
+	 * @return the backing bias array (not a copy)
+	 */
+	public double[] getBiases() {
+		return biases;
+	}
+
+	/**
+	 * Gets the number of neurons in this layer
+	 *
+	 * @return the number of neurons
+	 */
+	public int getNumNeurons() {
+		return numNeurons;
+	}
+
+	/**
+	 * Gets the number of inputs each neuron in this layer has
+	 *
+	 * @return the number of inputs
+	 */
+	public int getNumInputs() {
+		return numInputs;
+	}
 }
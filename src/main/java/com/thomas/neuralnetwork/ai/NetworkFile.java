@@ -0,0 +1,384 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.jfr.ModelLoadEvent;
+import com.thomas.neuralnetwork.jfr.ModelSaveEvent;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads and writes networks in the binary .nnet format.
+ * Every value is little-endian, and a file is laid out as follows:
+ * <pre>
+ * int    magic ("NNET")
+ * int    format version
+ * int    precision, the number of bytes per weight (4 or 8)
+ * int    header length, the offset of the first weight block (a multiple of 8)
+ * int    number of layers
+ * int    number of inputs
+ * int[]  number of neurons in each layer
+ * string name of each layer's activation function
+ * string name of the loss function
+ * </pre>
+ * Strings are an unsigned short length followed by that many UTF-8 bytes.
+ * The header is followed by one block per layer holding its row-major weight matrix and then its bias vector.
+ * The blocks are packed with no padding between them, so only the first is sure to start on an 8 byte boundary.
+ * A single precision layer with an odd number of weights and biases leaves the blocks after it 4 byte aligned.
+ * Blocks are memory mapped when loading and bulk copied straight into each layer's weight storage, so nothing is parsed and no intermediate heap buffer is needed.
+ */
+public final class NetworkFile {
+	public static final int VERSION = 1;
+	public static final int SINGLE_PRECISION = Float.BYTES;
+	public static final int DOUBLE_PRECISION = Double.BYTES;
+
+	private static final int MAGIC = 'N' | 'N' << 8 | 'E' << 16 | 'T' << 24;
+	private static final int PREFIX_LENGTH = 4 * Integer.BYTES;
+	private static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	private NetworkFile() { }
+
+	/**
+	 * Checks whether a file starts with the binary format's magic number
+	 *
+	 * @param file the file to check
+	 * @return true if the file is in the binary format, false if it is in the legacy text format
+	 */
+	public static boolean isBinary(File file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+			while (magic.hasRemaining() && channel.read(magic) >= 0) {
+				// Keep reading until the whole magic number has been read or the file ends
+			}
+			return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+		}
+	}
+
+	/**
+	 * Writes a network to a file with double precision weights
+	 *
+	 * @param neuralNetwork the network to write
+	 * @param file          the file to write to, it is replaced if it exists
+	 */
+	public static void write(NeuralNetwork neuralNetwork, File file) throws IOException {
+		write(neuralNetwork, file, DOUBLE_PRECISION);
+	}
+
+	/**
+	 * Writes a network to a file
+	 *
+	 * @param neuralNetwork the network to write
+	 * @param file          the file to write to, it is replaced if it exists
+	 * @param precision     {@link #DOUBLE_PRECISION} or {@link #SINGLE_PRECISION}, single precision halves the file size but rounds every weight
+	 */
+	public static void write(NeuralNetwork neuralNetwork, File file, int precision) throws IOException {
+		Layer[] layers = neuralNetwork.getLayers();
+		int[] layerSizes = new int[layers.length];
+		for (int l = 0; l < layers.length; l++) {
+			layerSizes[l] = layers[l].getNumNeurons();
+		}
+
+		ModelSaveEvent event = new ModelSaveEvent();
+		event.begin();
+
+		try (FileChannel channel = openForWriting(file)) {
+			writeHeader(channel, precision, layers.length == 0 ? 0 : layers[0].getNumInputs(), layerSizes);
+
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			for (Layer layer : layers) {
+				writeValues(channel, buffer, layer.getWeights(), precision);
+				writeValues(channel, buffer, layer.getBiases(), precision);
+			}
+
+			event.commit(file.getPath(), layers.length, precision, channel.position());
+		}
+	}
+
+	/**
+	 * Writes a single precision network to a file with single precision weights
+	 *
+	 * @param neuralNetwork the network to write
+	 * @param file          the file to write to, it is replaced if it exists
+	 */
+	public static void write(FloatNeuralNetwork neuralNetwork, File file) throws IOException {
+		FloatLayer[] layers = neuralNetwork.getLayers();
+		int[] layerSizes = new int[layers.length];
+		for (int l = 0; l < layers.length; l++) {
+			layerSizes[l] = layers[l].getNumNeurons();
+		}
+
+		ModelSaveEvent event = new ModelSaveEvent();
+		event.begin();
+
+		try (FileChannel channel = openForWriting(file)) {
+			writeHeader(channel, SINGLE_PRECISION, layers.length == 0 ? 0 : layers[0].getNumInputs(), layerSizes);
+
+			ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			for (FloatLayer layer : layers) {
+				writeValues(channel, buffer, layer.getWeights());
+				writeValues(channel, buffer, layer.getBiases());
+			}
+
+			event.commit(file.getPath(), layers.length, SINGLE_PRECISION, channel.position());
+		}
+	}
+
+	/**
+	 * Reads a network from a file in the binary format, widening single precision weights if necessary
+	 *
+	 * @param file the file to read
+	 * @return a new neural network
+	 */
+	public static NeuralNetwork read(File file) throws IOException {
+		ModelLoadEvent event = new ModelLoadEvent();
+		event.begin();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Header header = readHeader(channel);
+
+			Layer[] layers = new Layer[header.layerSizes.length];
+			long position = header.length;
+			int numInputs = header.numInputs;
+			for (int l = 0; l < layers.length; l++) {
+				int numNeurons = header.layerSizes[l];
+				double[] weights = new double[Math.multiplyExact(numNeurons, numInputs)];
+				double[] biases = new double[numNeurons];
+
+				ByteBuffer block = mapBlock(channel, position, weights.length + biases.length, header.precision);
+				if (header.precision == DOUBLE_PRECISION) {
+					DoubleBuffer values = block.asDoubleBuffer();
+					values.get(weights);
+					values.get(biases);
+				} else {
+					FloatBuffer values = block.asFloatBuffer();
+					for (int i = 0; i < weights.length; i++) {
+						weights[i] = values.get();
+					}
+					for (int i = 0; i < biases.length; i++) {
+						biases[i] = values.get();
+					}
+				}
+
+				layers[l] = new Layer(numNeurons, numInputs, weights, biases);
+				position += (long) (weights.length + biases.length) * header.precision;
+				numInputs = numNeurons;
+			}
+
+			event.commit(file.getPath(), layers.length, header.precision, channel.size());
+			return new NeuralNetwork(layers);
+		}
+	}
+
+	/**
+	 * Reads a single precision network from a file in the binary format, rounding double precision weights if necessary
+	 *
+	 * @param file the file to read
+	 * @return a new single precision network
+	 */
+	public static FloatNeuralNetwork readFloat(File file) throws IOException {
+		ModelLoadEvent event = new ModelLoadEvent();
+		event.begin();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Header header = readHeader(channel);
+
+			FloatLayer[] layers = new FloatLayer[header.layerSizes.length];
+			long position = header.length;
+			int numInputs = header.numInputs;
+			for (int l = 0; l < layers.length; l++) {
+				int numNeurons = header.layerSizes[l];
+				float[] weights = new float[Math.multiplyExact(numNeurons, numInputs)];
+				float[] biases = new float[numNeurons];
+
+				ByteBuffer block = mapBlock(channel, position, weights.length + biases.length, header.precision);
+				if (header.precision == SINGLE_PRECISION) {
+					FloatBuffer values = block.asFloatBuffer();
+					values.get(weights);
+					values.get(biases);
+				} else {
+					DoubleBuffer values = block.asDoubleBuffer();
+					for (int i = 0; i < weights.length; i++) {
+						weights[i] = (float) values.get();
+					}
+					for (int i = 0; i < biases.length; i++) {
+						biases[i] = (float) values.get();
+					}
+				}
+
+				layers[l] = new FloatLayer(numNeurons, numInputs, weights, biases);
+				position += (long) (weights.length + biases.length) * header.precision;
+				numInputs = numNeurons;
+			}
+
+			event.commit(file.getPath(), layers.length, header.precision, channel.size());
+			return new FloatNeuralNetwork(layers);
+		}
+	}
+
+	private static FileChannel openForWriting(File file) throws IOException {
+		return FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+	}
+
+	private static void writeHeader(FileChannel channel, int precision, int numInputs, int[] layerSizes) throws IOException {
+		if (precision != SINGLE_PRECISION && precision != DOUBLE_PRECISION) {
+			throw new IllegalArgumentException("Precision must be " + SINGLE_PRECISION + " or " + DOUBLE_PRECISION + " bytes but was " + precision + ".");
+		}
+
+		byte[][] names = new byte[layerSizes.length + 1][];
+		int length = PREFIX_LENGTH + (2 + layerSizes.length) * Integer.BYTES;
+		for (int l = 0; l < layerSizes.length; l++) {
+			String activation = (l < layerSizes.length - 1
+					? NeuralNetwork.ACTIVATION_FUNCTION
+					: NeuralNetwork.OUTPUT_ACTIVATION_FUNCTION).getClass().getSimpleName();
+			names[l] = activation.getBytes(StandardCharsets.UTF_8);
+		}
+		names[layerSizes.length] = NeuralNetwork.LOSS_FUNCTION.getClass().getSimpleName().getBytes(StandardCharsets.UTF_8);
+		for (byte[] name : names) {
+			length += Short.BYTES + name.length;
+		}
+
+		// Pad the header so the first weight block starts on an 8 byte boundary
+		int headerLength = (length + 7) & ~7;
+
+		ByteBuffer header = ByteBuffer.allocate(headerLength).order(ByteOrder.LITTLE_ENDIAN);
+		header.putInt(MAGIC).putInt(VERSION).putInt(precision).putInt(headerLength);
+		header.putInt(layerSizes.length).putInt(numInputs);
+		for (int layerSize : layerSizes) {
+			header.putInt(layerSize);
+		}
+		for (byte[] name : names) {
+			header.putShort((short) name.length).put(name);
+		}
+
+		header.clear();
+		writeFully(channel, header);
+	}
+
+	private static void writeValues(FileChannel channel, ByteBuffer buffer, double[] values, int precision) throws IOException {
+		int perBuffer = buffer.capacity() / precision;
+		for (int from = 0; from < values.length; from += perBuffer) {
+			int count = Math.min(perBuffer, values.length - from);
+			buffer.clear();
+			if (precision == DOUBLE_PRECISION) {
+				buffer.asDoubleBuffer().put(values, from, count);
+			} else {
+				FloatBuffer floats = buffer.asFloatBuffer();
+				for (int i = from; i < from + count; i++) {
+					floats.put((float) values[i]);
+				}
+			}
+			buffer.limit(count * precision);
+			writeFully(channel, buffer);
+		}
+	}
+
+	private static void writeValues(FileChannel channel, ByteBuffer buffer, float[] values) throws IOException {
+		int perBuffer = buffer.capacity() / SINGLE_PRECISION;
+		for (int from = 0; from < values.length; from += perBuffer) {
+			int count = Math.min(perBuffer, values.length - from);
+			buffer.clear();
+			buffer.asFloatBuffer().put(values, from, count);
+			buffer.limit(count * SINGLE_PRECISION);
+			writeFully(channel, buffer);
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+	}
+
+	private static Header readHeader(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if (size < PREFIX_LENGTH) {
+			throw new IOException("File is too short to be a binary network (" + size + " bytes).");
+		}
+
+		ByteBuffer prefix = channel.map(FileChannel.MapMode.READ_ONLY, 0, PREFIX_LENGTH).order(ByteOrder.LITTLE_ENDIAN);
+		if (prefix.getInt() != MAGIC) {
+			throw new IOException("File is not a binary network.");
+		}
+
+		int version = prefix.getInt();
+		if (version < 1 || version > VERSION) {
+			throw new IOException("Unsupported network file version " + version + ", the newest supported version is " + VERSION + ".");
+		}
+
+		int precision = prefix.getInt();
+		if (precision != SINGLE_PRECISION && precision != DOUBLE_PRECISION) {
+			throw new IOException("Unsupported precision of " + precision + " bytes.");
+		}
+
+		int headerLength = prefix.getInt();
+		if (headerLength < PREFIX_LENGTH || headerLength > size) {
+			throw new IOException("Header length " + headerLength + " does not fit in a file of " + size + " bytes.");
+		}
+
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, headerLength).order(ByteOrder.LITTLE_ENDIAN);
+		header.position(PREFIX_LENGTH);
+		try {
+			int numLayers = header.getInt();
+			int numInputs = header.getInt();
+			if (numLayers < 0 || numInputs < 0) {
+				throw new IOException("Invalid topology with " + numLayers + " layers and " + numInputs + " inputs.");
+			}
+
+			int[] layerSizes = new int[numLayers];
+			long expectedSize = headerLength;
+			int previous = numInputs;
+			for (int l = 0; l < numLayers; l++) {
+				layerSizes[l] = header.getInt();
+				if (layerSizes[l] <= 0) {
+					throw new IOException("Layer " + l + " has " + layerSizes[l] + " neurons.");
+				}
+				try {
+					Math.addExact(Math.multiplyExact(layerSizes[l], previous), layerSizes[l]);
+				} catch (ArithmeticException e) {
+					throw new IOException("Layer " + l + " with " + layerSizes[l] + " neurons and " + previous + " inputs is too large.", e);
+				}
+				expectedSize += ((long) layerSizes[l] * previous + layerSizes[l]) * precision;
+				previous = layerSizes[l];
+			}
+
+			for (int l = 0; l < numLayers; l++) {
+				String expected = (l < numLayers - 1
+						? NeuralNetwork.ACTIVATION_FUNCTION
+						: NeuralNetwork.OUTPUT_ACTIVATION_FUNCTION).getClass().getSimpleName();
+				String activation = readString(header);
+				if (!activation.equals(expected)) {
+					throw new IOException("Layer " + l + " was saved with " + activation + " but this network uses " + expected + ".");
+				}
+			}
+			// The loss function is only recorded for reference, it does not affect how a saved network behaves
+			readString(header);
+
+			if (size < expectedSize) {
+				throw new IOException("File is truncated, expected " + expectedSize + " bytes but found " + size + ".");
+			}
+
+			return new Header(precision, headerLength, numInputs, layerSizes);
+		} catch (BufferUnderflowException e) {
+			throw new IOException("Header is truncated.", e);
+		}
+	}
+
+	private static String readString(ByteBuffer buffer) {
+		byte[] bytes = new byte[Short.toUnsignedInt(buffer.getShort())];
+		buffer.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static ByteBuffer mapBlock(FileChannel channel, long position, int count, int precision) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, position, (long) count * precision).order(ByteOrder.LITTLE_ENDIAN);
+	}
+
+	private record Header(int precision, int length, int numInputs, int[] layerSizes) { }
+}
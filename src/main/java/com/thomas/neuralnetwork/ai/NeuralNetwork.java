@@ -1,23 +1,34 @@
 package com.thomas.neuralnetwork.ai;
 
-import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
+import com.thomas.neuralnetwork.jfr.BackwardPassEvent;
+import com.thomas.neuralnetwork.jfr.ForwardPassEvent;
 import com.thomas.neuralnetwork.math.activation.ActivationFunction;
 import com.thomas.neuralnetwork.math.activation.LeakyReLUActivation;
 import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
+import com.thomas.neuralnetwork.math.kernel.Kernels;
 import com.thomas.neuralnetwork.math.loss.CrossEntropyLoss;
 import com.thomas.neuralnetwork.math.loss.LossFunction;
 
 public class NeuralNetwork {
 	// TODO move settings into a properties file (https://www.baeldung.com/java-properties)
-	private static final ActivationFunction ACTIVATION_FUNCTION = new LeakyReLUActivation();
-	private static final ActivationFunction OUTPUT_ACTIVATION_FUNCTION = new SoftmaxActivation();
+	static final ActivationFunction ACTIVATION_FUNCTION = new LeakyReLUActivation();
+	static final ActivationFunction OUTPUT_ACTIVATION_FUNCTION = new SoftmaxActivation();
 	public static final LossFunction LOSS_FUNCTION = new CrossEntropyLoss();
 
+	// The number of samples each thread pushes through the network at once when predicting a batch
+	private static final int PREDICTION_CHUNK_SIZE = 64;
+
+	// Every thread that predicts keeps its own tape and input buffer, so repeated predictions don't allocate.
+	// They are kept per thread rather than per network, and only remember the network's shape, so a thread never keeps a network alive
+	private static final ThreadLocal<PredictionScratch> PREDICTION_SCRATCH = new ThreadLocal<>();
+
 	private final Layer[] layers;
 
 	/**
@@ -68,14 +79,7 @@ public class NeuralNetwork {
 	 * @return an array of the neural networks output
 	 */
 	public double[] forwardPropagate(double[] inputs) {
-		for (int i = 0; i < layers.length; i++) {
-			if (i < layers.length - 1) {
-				inputs = ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-			} else {
-				inputs = OUTPUT_ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-			}
-		}
-		return inputs;
+		return forwardPropagate(inputs, layers.length - 1);
 	}
 
 	/**
@@ -87,11 +91,8 @@ public class NeuralNetwork {
 	 */
 	public double[] forwardPropagate(double[] inputs, int maxIndex) {
 		for (int i = 0; i <= maxIndex; i++) {
-			if (i < layers.length - 1) {
-				inputs = ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-			} else {
-				inputs = OUTPUT_ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-			}
+			inputs = layers[i].calculateInputs(inputs);
+			activationFunction(i).applyInPlace(inputs);
 		}
 		return inputs;
 	}
@@ -106,19 +107,45 @@ public class NeuralNetwork {
 	 */
 	public double[] forwardPropagateNoActivation(double[] inputs, int maxIndex) {
 		for (int i = 0; i <= maxIndex; i++) {
-			if (i == maxIndex) {
-				inputs = layers[i].calculateInputs(inputs);
-			} else {
-				if (i < layers.length - 1) {
-					inputs = ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-				} else {
-					inputs = OUTPUT_ACTIVATION_FUNCTION.apply(layers[i].calculateInputs(inputs));
-				}
+			inputs = layers[i].calculateInputs(inputs);
+			if (i != maxIndex) {
+				activationFunction(i).applyInPlace(inputs);
 			}
 		}
 		return inputs;
 	}
 
+	/**
+	 * Performs forward propagation on the neural network, recording every layer's pre-activation and activation into the tape
+	 *
+	 * @param inputs the inputs to use
+	 * @param tape   the tape to record the pass into
+	 * @return an array of the neural networks output (owned by the tape)
+	 */
+	public double[] forwardPropagate(double[] inputs, ActivationTape tape) {
+		forwardPropagate(inputs, tape, true);
+		return tape.getOutputs();
+	}
+
+	/**
+	 * Records a forward pass into the tape, optionally leaving the output layer unactivated so the loss function can activate it
+	 *
+	 * @param inputs         the inputs to use
+	 * @param tape           the tape to record the pass into
+	 * @param activateOutput whether to apply the output activation function
+	 */
+	private void forwardPropagate(double[] inputs, ActivationTape tape, boolean activateOutput) {
+		tape.setInputs(inputs);
+		for (int i = 0; i < layers.length; i++) {
+			double[] preActivations = tape.getPreActivations(i);
+			layers[i].calculateInputs(tape.getLayerInputs(i), preActivations);
+
+			if (activateOutput || i < layers.length - 1) {
+				activationFunction(i).apply(preActivations, tape.getActivations(i));
+			}
+		}
+	}
+
 	/**
 	 * Performs back propagation on the neural network
 	 *
@@ -128,15 +155,66 @@ public class NeuralNetwork {
 	 * The dimensions of the array are as follows: [layer][neuron][deltaWeights, deltaBias]
 	 */
 	public double[][][] backPropagate(double[] inputs, double[] outputs) {
-		/*
-		 Initialize an array to hold δL/δz for each layer
-		 with L being the loss/error/cost function (same thing),
-		 and z being the output of the neuron before activation
-		 */
-		double[][] errorGradients = new double[layers.length][];
+		return backPropagate(inputs, outputs, new ActivationTape(this));
+	}
+
+	/**
+	 * Performs back propagation on the neural network, reusing the given tape for the forward pass
+	 *
+	 * @param inputs       The inputs to use
+	 * @param outputs      The desired outputs
+	 * @param tape         The tape to record the forward pass into, must have been created for this network
+	 * @return A 3D array containing the desired changes for the neural network's weights and biases
+	 * The dimensions of the array are as follows: [layer][neuron][deltaWeights, deltaBias]
+	 */
+	public double[][][] backPropagate(double[] inputs, double[] outputs, ActivationTape tape) {
+		forwardPropagate(inputs, tape, false);
+		backPropagateErrors(outputs, tape);
+
+		double[][][] deltaLayers = new double[layers.length][][];
+
+		for (int l = 0; l < layers.length; ++l) {
+			int numNeurons = layers[l].getNumNeurons();
+			int numInputs = layers[l].getNumInputs();
+			double[] prevLayerOutput = tape.getLayerInputs(l);
+			double[] errorGradients = tape.getErrorGradients(l);
+			double[][] deltaNeurons = new double[numNeurons][];
 
-		// Initialize the last layer's δL/δz
-		errorGradients[layers.length-1] = LOSS_FUNCTION.derive(OUTPUT_ACTIVATION_FUNCTION, outputs, forwardPropagateNoActivation(inputs, layers.length-1));
+			for (int j = 0; j < numNeurons; ++j) {
+				double[] deltaWeightsBiases = new double[numInputs + 1];
+
+				for (int i = 0; i < numInputs; i++) {
+					// δL/δw = prev layer activation * δL/δz
+					deltaWeightsBiases[i] = prevLayerOutput[i]*errorGradients[j];
+				}
+
+				// δL/δb = δL/δz
+				deltaWeightsBiases[numInputs] = errorGradients[j];
+
+				deltaNeurons[j] = deltaWeightsBiases;
+			}
+
+			deltaLayers[l] = deltaNeurons;
+		}
+
+		return deltaLayers;
+	}
+
+	/**
+	 * Calculates δL/δz for every layer from a forward pass recorded in the tape,
+	 * with L being the loss/error/cost function (same thing),
+	 * and z being the output of the neuron before activation
+	 *
+	 * @param outputs the desired outputs
+	 * @param tape    a tape holding a forward pass with an unactivated output layer, the output activation and error gradients are written back into it
+	 * @return the loss of the pass
+	 */
+	double backPropagateErrors(double[] outputs, ActivationTape tape) {
+		// Activate the output layer and initialize its δL/δz in a single pass
+		int last = layers.length-1;
+		double[] outputGradients = tape.getErrorGradients(last);
+		double loss = LOSS_FUNCTION.forwardBackward(OUTPUT_ACTIVATION_FUNCTION, outputs, tape.getPreActivations(last), tape.getActivations(last),
+				outputGradients, 0, outputGradients.length);
 
 		// Iterate through the layers, calculating δL/δz for each one
 		for (int l = layers.length-2; l >= 0; --l) {
@@ -144,56 +222,251 @@ public class NeuralNetwork {
 			 δL/δa for each the previous layer is equal to ∑((δL/δz)*w) for each weight in the current layer,
 			 with w being the weight connected to the neuron we are finding the error for
 			 */
-			double[] layerErrorSums = new double[layers[l].getNeurons().length];
-
-			for (int j = 0; j < errorGradients[l+1].length; ++j) {
-				for (int k = 0; k < layerErrorSums.length; ++k) {
-					// add (δL/δz)*w to the sum
-					layerErrorSums[k] += errorGradients[l+1][j] * layers[l+1].getNeurons()[j].getConnections()[k];
-				}
+			double[] layerErrorSums = tape.getErrorGradients(l);
+			double[] nextErrorGradients = tape.getErrorGradients(l+1);
+			double[] nextWeights = layers[l+1].getWeights();
+
+			Arrays.fill(layerErrorSums, 0);
+			for (int j = 0; j < nextErrorGradients.length; ++j) {
+				// add (δL/δz)*w to the sum
+				Kernels.axpy(nextErrorGradients[j], nextWeights, j * layerErrorSums.length, layerErrorSums, 0, layerErrorSums.length);
 			}
 
-
 			// calculate δa/δz
-			double[] layerDerivatives = ACTIVATION_FUNCTION.derive(forwardPropagateNoActivation(inputs, l));
+			double[] layerDerivatives = tape.getDerivatives();
+			ACTIVATION_FUNCTION.derive(tape.getPreActivations(l), layerDerivatives, 0, layerErrorSums.length);
 
 			/*
 			 δL/δz is equal to δL/δa * δa/δz
-			 To achieve this we simply set index [l][j] of the gradient array to layerErrorSums[j] (δL/δa),
-			 multiplied by layerDerivatives[j] (δa/δz)
+			 To achieve this we simply multiply layerErrorSums[j] (δL/δa) in place by layerDerivatives[j] (δa/δz)
 			 */
-			errorGradients[l] = new double[layerDerivatives.length];
+			for (int j = 0; j < layerErrorSums.length; j++) {
+				layerErrorSums[j] *= layerDerivatives[j];
+			}
+		}
+
+		return loss;
+	}
+
+	/**
+	 * Performs forward propagation on a whole batch at once, recording every layer's pre-activation and activation into the tape
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize the number of samples in the batch
+	 * @param tape      the tape to record the pass into
+	 * @return a row-major batchSize × numOutputs matrix of the neural networks output (owned by the tape)
+	 */
+	public double[] forwardPropagate(double[] inputs, int batchSize, BatchTape tape) {
+		forwardPropagate(inputs, batchSize, tape, true);
+		return tape.getOutputs();
+	}
+
+	/**
+	 * Records a batched forward pass into the tape, optionally leaving the output layer unactivated so the loss function can activate it
+	 *
+	 * @param inputs         a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize      the number of samples in the batch
+	 * @param tape           the tape to record the pass into
+	 * @param activateOutput whether to apply the output activation function
+	 */
+	private void forwardPropagate(double[] inputs, int batchSize, BatchTape tape, boolean activateOutput) {
+		ForwardPassEvent event = new ForwardPassEvent();
+		event.begin();
+
+		tape.setInputs(inputs, batchSize);
+		for (int l = 0; l < layers.length; l++) {
+			double[] preActivations = tape.getPreActivations(l);
+			layers[l].calculateInputs(tape.getLayerInputs(l), preActivations, batchSize);
+
+			if (!activateOutput && l == layers.length - 1) break;
 
-			for (int j = 0; j < errorGradients[l].length; j++) {
-				errorGradients[l][j] = layerErrorSums[j] * layerDerivatives[j];
+			ActivationFunction activationFunction = activationFunction(l);
+			int size = tape.getLayerSize(l);
+			for (int r = 0; r < batchSize; r++) {
+				activationFunction.apply(preActivations, tape.getActivations(l), r * size, size);
 			}
 		}
 
-		double[][][] deltaLayers = new double[layers.length][][];
+		event.commit(batchSize, layers.length);
+	}
 
-		for (int l = 0; l < layers.length; ++l) {
-			Neuron[] neurons = layers[l].getNeurons();
-			double[][] deltaNeurons = new double[neurons.length][];
+	/**
+	 * Performs back propagation on a whole batch at once and adds the summed gradient of every sample to the given gradients
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param outputs   a row-major batchSize × numOutputs matrix of the desired outputs
+	 * @param batchSize the number of samples in the batch
+	 * @param tape      the tape to record the forward pass into, must have been created for this network
+	 * @param gradients the gradients to add δL/δw and δL/δb to
+	 * @return the loss summed over every sample in the batch
+	 */
+	public double backPropagate(double[] inputs, double[] outputs, int batchSize, BatchTape tape, Gradients gradients) {
+		forwardPropagate(inputs, batchSize, tape, false);
+
+		BackwardPassEvent event = new BackwardPassEvent();
+		event.begin();
+
+		// Activate the output layer and initialize its δL/δz in a single pass
+		int last = layers.length - 1;
+		int outputSize = tape.getLayerSize(last);
+		double loss = 0;
+		for (int r = 0; r < batchSize; r++) {
+			loss += LOSS_FUNCTION.forwardBackward(OUTPUT_ACTIVATION_FUNCTION, outputs, tape.getPreActivations(last), tape.getActivations(last),
+					tape.getErrorGradients(last), r * outputSize, outputSize);
+		}
 
-			for (int j = 0; j < neurons.length; ++j) {
-				double[] deltaWeightsBiases = new double[neurons[j].getConnections().length + 1];
+		for (int l = last; l >= 0; --l) {
+			layers[l].accumulateGradients(tape.getLayerInputs(l), tape.getErrorGradients(l), batchSize, gradients.getWeights(l), gradients.getBiases(l));
 
-				double[] prevLayerOutput = forwardPropagate(inputs, l-1);
-				for (int i = 0; i < neurons[j].getConnections().length; i++) {
-					// δL/δw = prev layer activation * δL/δz
-					deltaWeightsBiases[i] = prevLayerOutput[i]*errorGradients[l][j];
+			if (l == 0) break;
+
+			// δL/δz of the previous layer is δL/δa (calculated by the layer) multiplied by δa/δz
+			double[] previousErrorGradients = tape.getErrorGradients(l - 1);
+			layers[l].calculateInputErrors(tape.getErrorGradients(l), previousErrorGradients, batchSize);
+
+			int size = tape.getLayerSize(l - 1);
+			double[] layerDerivatives = tape.getDerivatives();
+			for (int r = 0; r < batchSize; r++) {
+				ACTIVATION_FUNCTION.derive(tape.getPreActivations(l - 1), layerDerivatives, r * size, size);
+			}
+			for (int i = 0; i < batchSize * size; i++) {
+				previousErrorGradients[i] *= layerDerivatives[i];
+			}
+		}
+
+		event.commit(batchSize, layers.length);
+		return loss;
+	}
+
+	/**
+	 * Predicts the class probabilities of a whole batch of samples.
+	 * Large batches are split into chunks that are pushed through the network in parallel,
+	 * each as a single matrix-matrix product.
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize the number of samples in the batch
+	 * @return a row-major batchSize × numOutputs matrix of the neural networks output
+	 */
+	public double[] predictBatch(double[] inputs, int batchSize) {
+		double[] outputs = new double[batchSize * layers[layers.length - 1].getNumNeurons()];
+		predictBatch(inputs, batchSize, outputs);
+		return outputs;
+	}
+
+	/**
+	 * Predicts the class probabilities of a whole batch of samples into an existing matrix
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize the number of samples in the batch
+	 * @param outputs   a row-major batchSize × numOutputs matrix to write the neural networks output to
+	 */
+	public void predictBatch(double[] inputs, int batchSize, double[] outputs) {
+		int numInputs = layers[0].getNumInputs();
+		int numOutputs = layers[layers.length - 1].getNumNeurons();
+		if (inputs.length < batchSize * numInputs || outputs.length < batchSize * numOutputs) {
+			throw new IllegalArgumentException("A batch of " + batchSize + " samples needs " + batchSize * numInputs + " inputs and "
+					+ batchSize * numOutputs + " outputs, but " + inputs.length + " and " + outputs.length + " were given.");
+		}
+
+		int numChunks = Math.ceilDiv(batchSize, PREDICTION_CHUNK_SIZE);
+		if (numChunks <= 1) {
+			predictChunk(inputs, outputs, 0, batchSize);
+			return;
+		}
+
+		IntStream.range(0, numChunks).parallel().forEach(chunk -> {
+			int start = chunk * PREDICTION_CHUNK_SIZE;
+			predictChunk(inputs, outputs, start, Math.min(start + PREDICTION_CHUNK_SIZE, batchSize));
+		});
+	}
+
+	/**
+	 * Predicts the most likely class of every sample in a batch
+	 *
+	 * @param inputs    a row-major batchSize × numInputs matrix of inputs
+	 * @param batchSize the number of samples in the batch
+	 * @return the index of the largest output of each sample
+	 */
+	public int[] predictClasses(double[] inputs, int batchSize) {
+		int numOutputs = layers[layers.length - 1].getNumNeurons();
+		double[] outputs = predictBatch(inputs, batchSize);
+
+		int[] classes = new int[batchSize];
+		for (int r = 0; r < batchSize; r++) {
+			int offset = r * numOutputs;
+			int best = 0;
+			for (int i = 1; i < numOutputs; i++) {
+				if (outputs[offset + i] > outputs[offset + best]) {
+					best = i;
 				}
+			}
+			classes[r] = best;
+		}
+		return classes;
+	}
 
-				// δL/δb = δL/δz
-				deltaWeightsBiases[deltaWeightsBiases.length-1] = errorGradients[l][j];
+	/**
+	 * Pushes the samples [start, end) of a batch through the network using the calling thread's scratch buffers
+	 */
+	private void predictChunk(double[] inputs, double[] outputs, int start, int end) {
+		int numInputs = layers[0].getNumInputs();
+		int numOutputs = layers[layers.length - 1].getNumNeurons();
+		PredictionScratch scratch = predictionScratch();
+
+		// The tape reads its inputs from the start of the array, so the chunk is copied to the front of a buffer
+		System.arraycopy(inputs, start * numInputs, scratch.inputs, 0, (end - start) * numInputs);
+		forwardPropagate(scratch.inputs, end - start, scratch.tape, true);
+		System.arraycopy(scratch.tape.getOutputs(), 0, outputs, start * numOutputs, (end - start) * numOutputs);
+	}
 
-				deltaNeurons[j] = deltaWeightsBiases;
+	/**
+	 * Gets the calling thread's scratch buffers, replacing them if they were made for a network of a different shape
+	 */
+	private PredictionScratch predictionScratch() {
+		PredictionScratch scratch = PREDICTION_SCRATCH.get();
+		if (scratch == null || !scratch.fits(layers)) {
+			scratch = new PredictionScratch(layers, new BatchTape(this, PREDICTION_CHUNK_SIZE));
+			PREDICTION_SCRATCH.set(scratch);
+		}
+		return scratch;
+	}
+
+	/**
+	 * The buffers a thread uses to predict chunks of a batch, which can be used with any network of the shape they were made for
+	 */
+	private static final class PredictionScratch {
+		// The number of inputs followed by the number of neurons in every layer
+		private final int[] shape;
+		private final BatchTape tape;
+		private final double[] inputs;
+
+		private PredictionScratch(Layer[] layers, BatchTape tape) {
+			shape = new int[layers.length + 1];
+			shape[0] = layers[0].getNumInputs();
+			for (int l = 0; l < layers.length; l++) {
+				shape[l + 1] = layers[l].getNumNeurons();
 			}
+			this.tape = tape;
+			inputs = new double[PREDICTION_CHUNK_SIZE * shape[0]];
+		}
 
-			deltaLayers[l] = deltaNeurons;
+		private boolean fits(Layer[] layers) {
+			if (shape.length != layers.length + 1 || shape[0] != layers[0].getNumInputs()) return false;
+			for (int l = 0; l < layers.length; l++) {
+				if (shape[l + 1] != layers[l].getNumNeurons()) return false;
+			}
+			return true;
 		}
+	}
 
-		return deltaLayers;
+	/**
+	 * Gets the activation function used by a layer
+	 *
+	 * @param layer the index of the layer
+	 * @return the output activation function for the last layer, and the hidden activation function otherwise
+	 */
+	private ActivationFunction activationFunction(int layer) {
+		return layer < layers.length - 1 ? ACTIVATION_FUNCTION : OUTPUT_ACTIVATION_FUNCTION;
 	}
 
 	/**
@@ -216,6 +489,28 @@ public class NeuralNetwork {
 		return new NeuralNetwork(copiedLayers);
 	}
 
+	/**
+	 * Copies every weight and bias into a network of the same shape, so a snapshot can be taken without allocating
+	 *
+	 * @param target the network to overwrite
+	 * @throws IllegalArgumentException if the target has a different shape
+	 */
+	public void copyInto(NeuralNetwork target) {
+		Layer[] targetLayers = target.getLayers();
+		if (targetLayers.length != layers.length) {
+			throw new IllegalArgumentException("Cannot copy a network with " + layers.length + " layers into one with " + targetLayers.length + ".");
+		}
+
+		for (int l = 0; l < layers.length; l++) {
+			if (targetLayers[l].getNumNeurons() != layers[l].getNumNeurons() || targetLayers[l].getNumInputs() != layers[l].getNumInputs()) {
+				throw new IllegalArgumentException("Layer " + l + " has a different shape in the target network.");
+			}
+
+			System.arraycopy(layers[l].getWeights(), 0, targetLayers[l].getWeights(), 0, layers[l].getWeights().length);
+			System.arraycopy(layers[l].getBiases(), 0, targetLayers[l].getBiases(), 0, layers[l].getBiases().length);
+		}
+	}
+
 	/**
 	 * Converts the neural network to a 3D array representation.
 	 *
@@ -244,23 +539,20 @@ public class NeuralNetwork {
 	}
 
 	/**
-	 * Creates a neural network from a file
+	 * Creates a neural network from a file, detecting whether it uses the binary format or the legacy text format
 	 *
-	 * @param file A file containing a 3D array representation of a neural network
-	 * @return a n        assertEquals(original.toString(), fromFile.toString());
-ew neural network from the array
+	 * @param file A file containing a neural network saved by {@link NetworkFile} or a 3D array representation of a neural network
+	 * @return a new neural network from the file, or null if it could not be read
 	 */
 	public static NeuralNetwork fromFile(File file) {
-		try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-			StringBuilder sb = new StringBuilder();
-			String line;
-			while ((line = reader.readLine()) != null) {
-				sb.append(line);
+		try {
+			if (NetworkFile.isBinary(file)) {
+				return NetworkFile.read(file);
 			}
 
-			double[][][] array = arrayFromString(sb.toString());
-
-			return fromArray(array);
+			try (Reader reader = new FileReader(file)) {
+				return TextNetworkReader.read(reader);
+			}
 		} catch (IOException e) {
 			e.printStackTrace();
 		}
@@ -268,6 +560,13 @@ ew neural network from the array
 		return null;
 	}
 
+	/**
+	 * Parses the 3D array representation of a neural network.
+	 * Loading a network from text should go through {@link TextNetworkReader}, which does not build the intermediate array.
+	 *
+	 * @param s the string created by {@link #toString()}
+	 * @return a 3D array representation of the neural network
+	 */
 	public static double[][][] arrayFromString(String s) {
 
 		String[] innerArrayStrings = s.substring(3, s.length() - 3)
@@ -1,20 +1,42 @@
 package com.thomas.neuralnetwork.ai;
 
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+
 import java.util.Arrays;
 
+/**
+ * A view of a single row of a {@link Layer}'s weight matrix and bias vector.
+ * Layers store their weights contiguously, this class only exists so that code working with individual neurons keeps working.
+ */
 public class Neuron {
-	private final double[] connections;
-	private double bias;
+	private final double[] weights;
+	private final double[] biases;
+	private final int index;
+	private final int numConnections;
 
 	/**
 	 * Creates a new Neuron with the specified weights and biases
-	 * 
+	 *
 	 * @param connections the weights to use
 	 * @param bias the bias for this neuron
 	 */
 	public Neuron(double[] connections, double bias) {
-		this.connections = connections;
-		this.bias = bias;
+		this(connections, new double[]{bias}, 0, connections.length);
+	}
+
+	/**
+	 * Creates a view of the neuron at the given index of a layer's storage
+	 *
+	 * @param weights        the row-major weight matrix of the layer
+	 * @param biases         the bias vector of the layer
+	 * @param index          the index of this neuron in the layer
+	 * @param numConnections the number of inputs each neuron in the layer has
+	 */
+	Neuron(double[] weights, double[] biases, int index, int numConnections) {
+		this.weights = weights;
+		this.biases = biases;
+		this.index = index;
+		this.numConnections = numConnections;
 	}
 
 	/**
@@ -23,67 +45,85 @@ public class Neuron {
 	 * @param addend the amount to add to the bias
 	 */
 	public void addToBias(double addend) {
-		bias += addend;
+		biases[index] += addend;
 	}
-	
+
 	/**
 	 * Adds the corresponding double from the addend to its connection
 	 *
 	 * @param addend an array of doubles to add to the connections
 	 */
 	public void addToConnections(double[] addend) {
-		for (int i = 0; i < connections.length; i++) {
-			connections[i] += addend[i];
-		}
+		Kernels.axpy(1.0, addend, 0, weights, index * numConnections, numConnections);
 	}
 
 	/**
 	 * Creates a deep copy of this Neuron
-	 * 
+	 *
 	 * @return the new copied neuron
 	 */
 	public Neuron copy() {
-		return new Neuron(Arrays.copyOf(connections, connections.length), bias);
+		return new Neuron(getConnections(), getBias());
 	}
 
 	/**
 	 * Creates a new neuron from an array
-	 * 
+	 *
 	 * @param array the array to use when creating the neuron
 	 * @return the new neuron
 	 */
 	public static Neuron fromArray(double[] array) {
-		Neuron temp = new Neuron(new double[array.length-1], array[array.length-1]);
-		System.arraycopy(array, 0, temp.connections, 0, array.length - 1);
-		return temp;
+		return new Neuron(Arrays.copyOf(array, array.length - 1), array[array.length-1]);
 	}
 
 	/**
 	 * Creates an array that represents this neuron
-	 * 
+	 *
 	 * @return an array that represents this neuron
 	 */
 	public double[] toArray() {
-		double[] result = Arrays.copyOf(connections, connections.length+1);
-		result[connections.length] = bias;
+		double[] result = new double[numConnections + 1];
+		copyConnectionsTo(result, 0);
+		result[numConnections] = getBias();
 		return result;
 	}
-	
+
+	/**
+	 * Copies this neuron's connections into the given array
+	 *
+	 * @param destination the array to copy into
+	 * @param offset      the index in the destination to start at
+	 */
+	void copyConnectionsTo(double[] destination, int offset) {
+		System.arraycopy(weights, index * numConnections, destination, offset, numConnections);
+	}
+
 	/**
-	 * Gets this neurons connections
-	 * 
+	 * Gets a copy of this neurons connections
+	 *
 	 * @return this neurons connections
 	 */
 	public double[] getConnections() {
+		double[] connections = new double[numConnections];
+		copyConnectionsTo(connections, 0);
 		return connections;
 	}
 
+	/**
+	 * Gets the number of connections this neuron has
+	 *
+	 * @return the number of connections
+	 */
+	public int getNumConnections() {
+		return numConnections;
+	}
+
 	/**
 	 * Gets this neuron's bias
-	 * 
+	 *
 	 * @return this neuron's bias
 	 */
 	public double getBias() {
-		return bias;
+		return biases[index];
 	}
 }
@@ -0,0 +1,315 @@
+package com.thomas.neuralnetwork.ai;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Reads networks saved in the legacy text format, which is the {@link java.util.Arrays#deepToString(Object[])} of {@link NeuralNetwork#toArray()}.
+ * The input is read in a single pass one character at a time, and every number is parsed straight into the weight and bias storage of its layer,
+ * so no intermediate strings or 3D arrays are created.
+ * Numbers with a significand that fits exactly in a double are converted without allocating,
+ * longer ones fall back to {@link Double#parseDouble(String)} so that every value is still read back exactly.
+ */
+public class TextNetworkReader {
+	private static final int BUFFER_SIZE = 1 << 13;
+	private static final long MAX_EXACT_SIGNIFICAND = 1L << 53;
+	private static final double[] POWERS_OF_TEN = {
+			1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+			1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	private final Reader reader;
+	private final ByteBuffer bytes;
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private int position;
+	private int limit;
+	private long offset;
+
+	// The characters of the number being parsed, only turned into a string when the fast path can't be used
+	private char[] token = new char[32];
+
+	private TextNetworkReader(Reader reader, ByteBuffer bytes) {
+		this.reader = reader;
+		this.bytes = bytes;
+	}
+
+	/**
+	 * Reads a network from a stream of characters, the reader is not closed
+	 *
+	 * @param reader a reader positioned at the start of a network in the text format
+	 * @return a new neural network
+	 */
+	public static NeuralNetwork read(Reader reader) throws IOException {
+		return new TextNetworkReader(reader, null).readNetwork();
+	}
+
+	/**
+	 * Reads a network from ASCII encoded bytes, from the buffer's position up to its limit
+	 *
+	 * @param bytes a buffer holding a network in the text format, such as a memory mapped file
+	 * @return a new neural network
+	 */
+	public static NeuralNetwork read(ByteBuffer bytes) throws IOException {
+		return new TextNetworkReader(null, bytes.duplicate()).readNetwork();
+	}
+
+	private NeuralNetwork readNetwork() throws IOException {
+		List<Layer> layers = new ArrayList<>();
+
+		expect('[');
+		if (peekNonWhitespace() == ']') {
+			next();
+		} else {
+			int numInputs = -1;
+			int separator;
+			do {
+				Layer layer = readLayer(numInputs);
+				layers.add(layer);
+				numInputs = layer.getNumNeurons();
+				separator = nextNonWhitespace();
+			} while (separator == ',');
+			check(separator, ']');
+		}
+
+		int trailing = nextNonWhitespace();
+		if (trailing != -1) {
+			throw error(trailing, "end of input");
+		}
+
+		return new NeuralNetwork(layers.toArray(new Layer[0]));
+	}
+
+	/**
+	 * Reads a layer of the form [[w, w, ..., b], [w, w, ..., b], ...]
+	 *
+	 * @param expectedInputs the number of neurons in the previous layer, used to size the weight storage up front, or -1 if unknown
+	 */
+	private Layer readLayer(int expectedInputs) throws IOException {
+		expect('[');
+
+		int numInputs = -1;
+		// One extra slot so that the bias at the end of each row can be read in place before it is moved to the biases
+		double[] weights = new double[Math.max(expectedInputs, 16) + 1];
+		double[] biases = new double[16];
+		int numNeurons = 0;
+
+		int separator;
+		do {
+			expect('[');
+			int rowStart = numNeurons * Math.max(numInputs, 0);
+			int count = 0;
+			int next;
+			do {
+				int index = rowStart + count;
+				if (index >= weights.length) {
+					weights = Arrays.copyOf(weights, Math.max(weights.length * 2, index + 1));
+				}
+				weights[index] = readNumber();
+				count++;
+				next = nextNonWhitespace();
+			} while (next == ',');
+			check(next, ']');
+
+			if (numInputs == -1) {
+				numInputs = count - 1;
+			} else if (count - 1 != numInputs) {
+				throw new IOException("Neuron " + numNeurons + " has " + (count - 1) + " connections but the previous neurons in its layer have " + numInputs + ".");
+			}
+
+			if (numNeurons == biases.length) {
+				biases = Arrays.copyOf(biases, biases.length * 2);
+			}
+			biases[numNeurons++] = weights[rowStart + numInputs];
+
+			// Make sure the next row, including its bias, fits without growing the array mid row
+			int required = (numNeurons + 1) * numInputs + 1;
+			if (required > weights.length) {
+				weights = Arrays.copyOf(weights, Math.max(weights.length * 2, required));
+			}
+
+			separator = nextNonWhitespace();
+		} while (separator == ',');
+		check(separator, ']');
+
+		int numWeights = numNeurons * numInputs;
+		return new Layer(numNeurons, numInputs,
+				weights.length == numWeights ? weights : Arrays.copyOf(weights, numWeights),
+				biases.length == numNeurons ? biases : Arrays.copyOf(biases, numNeurons));
+	}
+
+	private double readNumber() throws IOException {
+		int c = nextNonWhitespace();
+		int length = 0;
+
+		boolean negative = false;
+		if (c == '-' || c == '+') {
+			negative = c == '-';
+			length = append(length, c);
+			c = next();
+		}
+
+		long significand = 0;
+		int significantDigits = 0;
+		int exponent = 0;
+		boolean exact = true;
+		boolean anyDigits = false;
+
+		for (; c >= '0' && c <= '9'; c = next()) {
+			length = append(length, c);
+			anyDigits = true;
+			if (significand != 0 || c != '0') {
+				if (++significantDigits > 18) {
+					exact = false;
+				} else {
+					significand = significand * 10 + (c - '0');
+				}
+			}
+		}
+
+		if (c == '.') {
+			length = append(length, c);
+			for (c = next(); c >= '0' && c <= '9'; c = next()) {
+				length = append(length, c);
+				anyDigits = true;
+				if (significand != 0 || c != '0') {
+					if (++significantDigits > 18) {
+						exact = false;
+					} else {
+						significand = significand * 10 + (c - '0');
+					}
+				}
+				exponent--;
+			}
+		}
+
+		if ((c == 'E' || c == 'e') && anyDigits) {
+			length = append(length, c);
+			c = next();
+			boolean negativeExponent = false;
+			if (c == '-' || c == '+') {
+				negativeExponent = c == '-';
+				length = append(length, c);
+				c = next();
+			}
+
+			int explicitExponent = 0;
+			boolean exponentDigits = false;
+			for (; c >= '0' && c <= '9'; c = next()) {
+				length = append(length, c);
+				exponentDigits = true;
+				if (explicitExponent < 10000) {
+					explicitExponent = explicitExponent * 10 + (c - '0');
+				}
+			}
+			if (!exponentDigits) {
+				exact = false;
+			}
+			exponent += negativeExponent ? -explicitExponent : explicitExponent;
+		}
+
+		if (!anyDigits) {
+			// NaN and Infinity are written out as words, collect them and let Double.parseDouble handle them
+			for (; Character.isLetter(c); c = next()) {
+				length = append(length, c);
+			}
+			exact = false;
+		}
+
+		pushBack(c);
+
+		if (length == 0) {
+			throw error(c, "a number");
+		}
+
+		/*
+		 When the significand and the power of ten are both exactly representable as doubles,
+		 a single multiplication or division is correctly rounded, so the result matches Double.parseDouble exactly
+		 */
+		if (exact && significand <= MAX_EXACT_SIGNIFICAND && exponent >= -22 && exponent <= 22) {
+			double value = exponent < 0 ? significand / POWERS_OF_TEN[-exponent] : significand * POWERS_OF_TEN[exponent];
+			return negative ? -value : value;
+		}
+
+		try {
+			return Double.parseDouble(new String(token, 0, length));
+		} catch (NumberFormatException e) {
+			throw new IOException("Invalid number \"" + new String(token, 0, length) + "\" at character " + (offset + position) + ".", e);
+		}
+	}
+
+	private int append(int length, int c) {
+		if (length == token.length) {
+			token = Arrays.copyOf(token, token.length * 2);
+		}
+		token[length] = (char) c;
+		return length + 1;
+	}
+
+	private void expect(char expected) throws IOException {
+		check(nextNonWhitespace(), expected);
+	}
+
+	private void check(int c, char expected) throws IOException {
+		if (c != expected) {
+			throw error(c, "'" + expected + "'");
+		}
+	}
+
+	private IOException error(int c, String expected) {
+		String found = c == -1 ? "end of input" : "'" + (char) c + "'";
+		return new IOException("Expected " + expected + " but found " + found + " at character " + (offset + position) + ".");
+	}
+
+	private int peekNonWhitespace() throws IOException {
+		int c = nextNonWhitespace();
+		pushBack(c);
+		return c;
+	}
+
+	private int nextNonWhitespace() throws IOException {
+		int c = next();
+		while (c == ' ' || c == '\n' || c == '\r' || c == '\t') {
+			c = next();
+		}
+		return c;
+	}
+
+	private void pushBack(int c) {
+		if (c != -1) {
+			position--;
+		}
+	}
+
+	private int next() throws IOException {
+		if (position == limit && !fill()) {
+			return -1;
+		}
+		return buffer[position++];
+	}
+
+	private boolean fill() throws IOException {
+		offset += limit;
+		position = 0;
+		limit = 0;
+
+		if (reader != null) {
+			int read;
+			while ((read = reader.read(buffer)) == 0) {
+				// A reader may return 0 characters without being at the end of the stream
+			}
+			limit = Math.max(read, 0);
+		} else {
+			int count = Math.min(bytes.remaining(), buffer.length);
+			for (int i = 0; i < count; i++) {
+				buffer[i] = (char) (bytes.get() & 0xFF);
+			}
+			limit = count;
+		}
+
+		return limit > 0;
+	}
+}
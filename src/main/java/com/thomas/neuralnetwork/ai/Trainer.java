@@ -1,62 +1,322 @@
 package com.thomas.neuralnetwork.ai;
 
-import com.thomas.neuralnetwork.data.DataPoint;
+import com.thomas.neuralnetwork.checkpoint.Checkpoint;
+import com.thomas.neuralnetwork.checkpoint.Checkpointer;
+import com.thomas.neuralnetwork.data.BatchLoader;
+import com.thomas.neuralnetwork.data.Dataset;
+import com.thomas.neuralnetwork.jfr.BatchEvent;
+import com.thomas.neuralnetwork.jfr.EpochEvent;
+import com.thomas.neuralnetwork.jfr.GradientReductionEvent;
+import com.thomas.neuralnetwork.jfr.WeightUpdateEvent;
 import com.thomas.neuralnetwork.math.learningRate.CyclicLearningRate;
 import com.thomas.neuralnetwork.math.learningRate.LearningRate;
-import javafx.application.Platform;
-import javafx.scene.chart.XYChart;
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+import com.thomas.neuralnetwork.metrics.MetricsRingBuffer;
+import com.thomas.neuralnetwork.metrics.TrainingEvent;
+import com.thomas.neuralnetwork.metrics.TrainingListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.text.DecimalFormat;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.Random;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntUnaryOperator;
 
-import static com.thomas.neuralnetwork.ai.NeuralNetwork.LOSS_FUNCTION;
+public class Trainer implements AutoCloseable {
+    /**
+     * How the gradients computed by the worker threads are applied to the network
+     */
+    public enum UpdateMode {
+        /**
+         * Every batch is split across the workers, and their gradients are summed and applied together once all of them are done
+         */
+        SYNCHRONOUS,
+        /**
+         * Every worker trains on whole batches of its own and applies its gradients straight to the shared weights,
+         * without locks or waiting for the other workers (Hogwild!).
+         * A worker may read weights that another worker is halfway through updating, which costs little when updates are sparse
+         */
+        HOGWILD,
+        /**
+         * The samples are split into one shard per worker, and every worker trains its own copy of the network on its shard.
+         * After a number of local steps set by the averaging schedule the copies are averaged back into the network,
+         * so the workers only wait for each other once per round rather than once per batch
+         */
+        LOCAL_SGD
+    }
+
+    /**
+     * The precision the network is trained in
+     */
+    public enum Precision {
+        /**
+         * The network is trained directly
+         */
+        DOUBLE,
+        /**
+         * A single precision copy of the network is trained, which halves the memory traffic of every pass.
+         * The copy is written back into the network after every epoch, so metrics, validation and checkpoints all see the trained weights.
+         * Only available with synchronous updates
+         */
+        SINGLE
+    }
 
-public class Trainer {
     private static final int BATCH_SIZE = 32;
+    private static final int DEFAULT_NUM_THREADS = Runtime.getRuntime().availableProcessors();
+    private static final int MIN_SLICE_SIZE = 8;
 
 
     private final NeuralNetwork neuralNetwork;
-    private boolean training;
+    private final int numThreads;
+    // The number of weights and biases, only used to describe events
+    private final int numParameters;
+    private volatile boolean training;
     private volatile boolean stoppedTraining;
     private int epoch;
-    private final ExecutorService pool = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    private Random random = new Random();
+    private int prefetchDepth = 2;
+    private final Evaluator evaluator = new Evaluator();
+    private Dataset validationDataset;
+    private int validationInterval = 1;
+    private UpdateMode updateMode = UpdateMode.SYNCHRONOUS;
+    private Precision precision = Precision.DOUBLE;
+    // The copy trained in single precision, made the first time it is needed
+    private FloatNeuralNetwork floatNetwork;
+    private IntUnaryOperator averagingSchedule = epoch -> 8;
+    private final ExecutorService pool;
+
+    // Every worker owns its forward pass buffers and gradient accumulator, so a batch step allocates nothing
+    private final Worker[] workers;
+    private final Reducer[] reducers;
+    private final HogwildWorker[] hogwildWorkers;
+    private final LocalWorker[] localWorkers;
+    private final Averager[] averagers;
+    private int activeWorkers;
+    private double batchLearningRate;
+    private double batchNoiseFreq;
+    private double batchNoiseStrength;
+
+    // The epoch being trained in the Hogwild and local SGD modes, shared by their workers
+    private final AtomicInteger nextHogwildBatch = new AtomicInteger();
+    private Dataset epochDataset;
+    private int[] epochOrder;
+    private double[] epochLearningRates;
+
+    // The epoch being trained in local SGD mode
+    private int localSteps;
+    private int stepsPerShard;
+
+    // The weights with the lowest cost so far, copied into the same buffer every time so an improvement doesn't allocate
+    private final NeuralNetwork bestNetwork;
+    private Checkpointer checkpointer;
+    private int checkpointInterval = 1;
+    // A checkpoint whose learning rate and cost are picked up the next time training starts
+    private Checkpoint resumedCheckpoint;
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
-    private XYChart.Series<Number, Number> costSeries;
-    private XYChart.Series<Number, Number> accuracySeries;
-    private XYChart.Series<Number, Number> certaintySeries;
+    // Batch and epoch events are handed to the listeners on the metrics thread, so a slow listener never holds up training
+    private final MetricsRingBuffer metrics = new MetricsRingBuffer();
 
+    /**
+     * Creates a trainer with one worker thread per available processor
+     *
+     * @param neuralNetwork the network to train
+     */
     public Trainer(NeuralNetwork neuralNetwork) {
-        this.neuralNetwork = neuralNetwork;
+        this(neuralNetwork, DEFAULT_NUM_THREADS);
     }
 
-    public Trainer(NeuralNetwork neuralNetwork, XYChart.Series<Number, Number> costSeries, XYChart.Series<Number, Number> accuracySeries, XYChart.Series<Number, Number> certaintySeries) {
+    /**
+     * Creates a trainer
+     *
+     * @param neuralNetwork the network to train
+     * @param numThreads    the number of worker threads, at least 1
+     */
+    public Trainer(NeuralNetwork neuralNetwork, int numThreads) {
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("A trainer needs at least one thread but was given " + numThreads + ".");
+        }
+
         this.neuralNetwork = neuralNetwork;
+        this.numThreads = numThreads;
+
+        int parameters = 0;
+        for (Layer layer : neuralNetwork.getLayers()) {
+            parameters += layer.getWeights().length + layer.getBiases().length;
+        }
+        numParameters = parameters;
+        bestNetwork = neuralNetwork.copy();
 
-        this.costSeries = costSeries;
-        this.accuracySeries = accuracySeries;
-        this.certaintySeries = certaintySeries;
+        // Daemon threads, so that a finished headless run can exit without shutting the trainer down
+        pool = Executors.newFixedThreadPool(numThreads, runnable -> {
+            Thread thread = new Thread(runnable, "trainer-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        workers = new Worker[numThreads];
+        reducers = new Reducer[numThreads];
+        hogwildWorkers = new HogwildWorker[numThreads];
+        localWorkers = new LocalWorker[numThreads];
+        averagers = new Averager[numThreads];
+
+        setupWorkers();
     }
 
-    private void updateChart(double epoch, double cost, double accuracy, double certainty) {
-        if (costSeries == null || accuracySeries == null || certaintySeries == null) return;
+    private void setupWorkers() {
+        for (int i = 0; i < numThreads; i++) {
+            workers[i] = new Worker();
+            reducers[i] = new Reducer(i);
+            hogwildWorkers[i] = new HogwildWorker(workers[i]);
+            localWorkers[i] = new LocalWorker(i, workers[i]);
+            averagers[i] = new Averager(i);
+        }
+    }
 
-        Platform.runLater(() -> {
-            costSeries.getData().add(new XYChart.Data<>(epoch, cost));
-            accuracySeries.getData().add(new XYChart.Data<>(epoch, accuracy));
-            certaintySeries.getData().add(new XYChart.Data<>(epoch, certainty));
-        });
+    /**
+     * Seeds the random number generator used to order the samples each epoch, so that a training run can be reproduced
+     *
+     * @param seed the seed
+     */
+    public void setSeed(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Sets how many batches are assembled in the background ahead of the one being trained on.
+     * Only synchronous updates prefetch, the Hogwild and local SGD workers gather their own batches as they go.
+     *
+     * @param prefetchDepth the queue depth of the batch loader, at least 1
+     */
+    public void setPrefetchDepth(int prefetchDepth) {
+        this.prefetchDepth = prefetchDepth;
+    }
+
+    /**
+     * Sets how the gradients of each batch are applied, the synchronous mode is used by default.
+     * A change is picked up the next time training starts.
+     *
+     * @param updateMode the update mode
+     */
+    public void setUpdateMode(UpdateMode updateMode) {
+        this.updateMode = updateMode;
+    }
+
+    /**
+     * Sets the precision the network is trained in, double precision is used by default
+     *
+     * @param precision the precision
+     */
+    public void setPrecision(Precision precision) {
+        this.precision = precision;
+    }
+
+    /**
+     * Sets how many steps each worker takes on its own copy of the network between averages in local SGD mode
+     *
+     * @param localSteps the number of local steps, used for every epoch
+     */
+    public void setLocalSteps(int localSteps) {
+        if (localSteps < 1) {
+            throw new IllegalArgumentException("The number of local steps must be at least 1 but was " + localSteps + ".");
+        }
+
+        averagingSchedule = epoch -> localSteps;
+    }
+
+    /**
+     * Sets how many local steps are taken between averages in each epoch of local SGD mode,
+     * such as averaging often early in training and less often once the network has settled
+     *
+     * @param averagingSchedule a function from the epoch to the number of local steps, which must be at least 1
+     */
+    public void setAveragingSchedule(IntUnaryOperator averagingSchedule) {
+        this.averagingSchedule = averagingSchedule;
+    }
+
+    /**
+     * Sets a separate dataset that the network is fully evaluated on after training epochs.
+     * Without one, the cost, accuracy and certainty of each epoch are measured on the training batches as they are trained on,
+     * which costs nothing extra but mixes in the changes made during the epoch.
+     *
+     * @param validationDataset the samples to evaluate on, such as a held out subset of the training data, or null to only use the training metrics
+     * @param interval          the number of epochs between evaluations, at least 1
+     */
+    public void setValidationDataset(Dataset validationDataset, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The validation interval must be at least 1 but was " + interval + ".");
+        }
+
+        this.validationDataset = validationDataset;
+        this.validationInterval = interval;
+    }
+
+    /**
+     * Adds a listener that is told about every completed batch and epoch, on the metrics thread rather than the training threads
+     *
+     * @param listener the listener
+     */
+    public void addListener(TrainingListener listener) {
+        metrics.addListener(listener);
+    }
+
+    /**
+     * Saves a checkpoint in the background every so many epochs, which training can later be resumed from with {@link #resumeFrom(Checkpoint)}
+     *
+     * @param checkpointer the checkpointer, which is left open when training ends
+     * @param interval     the number of epochs between checkpoints, at least 1
+     */
+    public void setCheckpointer(Checkpointer checkpointer, int interval) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("The checkpoint interval must be at least 1 but was " + interval + ".");
+        }
+        this.checkpointer = checkpointer;
+        this.checkpointInterval = interval;
+    }
+
+    /**
+     * Carries on from a checkpoint the next time training starts, with the epoch after the checkpoint's
+     * and the learning rate schedule where it left off. The samples are shuffled afresh, so a resumed run sees them in a different order.
+     * The trainer must have been created with the checkpoint's network, see {@link Checkpoint#loadNetwork()}.
+     *
+     * @param checkpoint the checkpoint
+     */
+    public void resumeFrom(Checkpoint checkpoint) {
+        epoch = checkpoint.getEpoch() + 1;
+        resumedCheckpoint = checkpoint;
+    }
+
+    /**
+     * Copies the network with the lowest cost so far, which can be done while training is running
+     *
+     * @return a new network
+     */
+    public NeuralNetwork snapshotBest() {
+        synchronized (bestNetwork) {
+            return bestNetwork.copy();
+        }
+    }
+
+    private void captureBest() {
+        synchronized (bestNetwork) {
+            neuralNetwork.copyInto(bestNetwork);
+        }
+    }
+
+    /**
+     * Gets the network being trained
+     */
+    public NeuralNetwork getNeuralNetwork() {
+        return neuralNetwork;
     }
 
     /**
      * Trains the neural network using given data and runs until the cost increases
      *
-     * @param dataPoints    a list of data-points (inputs and outputs) to train on
+     * @param dataset       the samples (inputs and outputs) to train on
      * @param epochs        the number of times to run the backpropagation algorithm on the dataset
      *                      (set to 0 to run indefinitely)
      * @param noiseFreq     the probability that a number will be randomly altered
@@ -64,177 +324,400 @@ public class Trainer {
      *
      * @return the network with the lowest cost across every epoch
      */
-    public NeuralNetwork start(CopyOnWriteArrayList<DataPoint> dataPoints, int epochs, double noiseFreq, double noiseStrength) {
+    public NeuralNetwork start(Dataset dataset, int epochs, double noiseFreq, double noiseStrength) {
+        // Read once, since the loader is only made for synchronous updates
+        UpdateMode mode = updateMode;
+        if (precision == Precision.SINGLE && mode != UpdateMode.SYNCHRONOUS) {
+            throw new IllegalStateException("Single precision training is only available with synchronous updates, not " + mode + ".");
+        }
+
         logger.info("Starting training!");
 
+        stoppedTraining = false;
         training = true;
 
-        NeuralNetwork bestNetwork = neuralNetwork.copy();
-        ThreadPoolExecutor pool = (ThreadPoolExecutor) Executors.newFixedThreadPool(4);
-        int batchesPerEpoch = Math.ceilDiv(dataPoints.size(), BATCH_SIZE);
+        captureBest();
+        int batchesPerEpoch = Math.ceilDiv(dataset.size(), BATCH_SIZE);
         LearningRate learningRate = new CyclicLearningRate(0.01, 0.1, 2, 1.5, 0.9, batchesPerEpoch);
 
-        while ((epochs == 0 || epoch <= epochs) && training) {
-            double[][] inputs = dataPoints.stream().map(DataPoint::inputs).toArray(double[][]::new);
-            double[][] outputs = dataPoints.stream().map(DataPoint::outputs).toArray(double[][]::new);
+        boolean singlePrecision = precision == Precision.SINGLE;
+        // The other modes gather their own batches, so only synchronous updates need the loader's buffers and thread
+        BatchLoader loader = mode == UpdateMode.SYNCHRONOUS ? new BatchLoader(dataset, BATCH_SIZE, prefetchDepth, singlePrecision) : null;
 
-            logger.info("");
-            logger.info("Starting epoch " + epoch + "!");
+        // Whatever ends the run, a failed batch included, stop() has to see it end or it would wait forever
+        try {
+            if (singlePrecision) {
+                prepareSinglePrecision();
+            }
 
-            Collections.shuffle(dataPoints);
+            int[] order = new int[dataset.size()];
+            for (int a = 0; a < dataset.size(); a++) {
+                order[a] = a;
+            }
 
-            double[][] predictions = new double[dataPoints.size()][];
+            // Training and validation costs are only compared with costs measured the same way, the first of each has nothing to compare against
+            double previousTrainingCost = Double.POSITIVE_INFINITY;
+            double previousValidationCost = Double.POSITIVE_INFINITY;
 
-            for (int a = 0; a < dataPoints.size(); a++) {
-                predictions[a] = neuralNetwork.forwardPropagate(inputs[a]);
+            if (resumedCheckpoint != null) {
+                if (resumedCheckpoint.getLearningRateState().length > 0) {
+                    learningRate.setState(resumedCheckpoint.getLearningRateState());
+                }
+                if (resumedCheckpoint.isValidationCost()) {
+                    previousValidationCost = resumedCheckpoint.getCost();
+                } else {
+                    previousTrainingCost = resumedCheckpoint.getCost();
+                }
+                logger.info("Resuming from the checkpoint of epoch " + resumedCheckpoint.getEpoch() + ".");
+                resumedCheckpoint = null;
             }
 
-            double costBefore = LOSS_FUNCTION.calculate(outputs, predictions);
+            while ((epochs == 0 || epoch <= epochs) && training) {
+                logger.info("");
+                logger.info("Starting epoch " + epoch + "!");
 
-            // Perform backpropagation and weight updates in batches to reduce memory usage and improve speed
-            for (int batchNum = 0; batchNum < batchesPerEpoch; batchNum++) {
-                double lr = learningRate.get();
+                EpochEvent epochEvent = new EpochEvent();
+                epochEvent.begin();
 
-                int batchStart = batchNum * BATCH_SIZE;
-                int batchEnd = Math.min((batchNum + 1) * BATCH_SIZE, dataPoints.size());
+                shuffle(order);
 
-                logger.debug("Starting backpropagation batch #" + (batchNum + 1) + " at index " + batchStart + " and ending at index " + batchEnd + ".");
+                for (int i = 0; i < numThreads; i++) {
+                    workers[i].resetMetrics();
+                }
 
-                double[][][][] desiredChanges = batchBackPropagate(dataPoints, batchStart, batchEnd);
-                double[][][] averageDesiredChanges = desiredChanges[0];
+                long epochStart = System.nanoTime();
 
-                for (int o = 1; o < desiredChanges.length; o++) {
-                    for (int x = 0; x < desiredChanges[o].length; x++) {
-                        for (int y = 0; y < desiredChanges[o][x].length; y++) {
-                            for (int z = 0; z < desiredChanges[o][x][y].length; z++) {
-                                averageDesiredChanges[x][y][z] += desiredChanges[o][x][y][z];
-                            }
-                        }
-                    }
+                if (mode == UpdateMode.HOGWILD) {
+                    trainHogwild(dataset, order, learningRate, batchesPerEpoch, noiseFreq, noiseStrength);
+                } else if (mode == UpdateMode.LOCAL_SGD) {
+                    trainLocalSgd(dataset, order, learningRate, batchesPerEpoch, noiseFreq, noiseStrength);
+                } else {
+                    trainSynchronous(loader, order, learningRate, batchesPerEpoch, noiseFreq, noiseStrength);
                 }
 
-                for (int x = 0; x < averageDesiredChanges.length; ++x) {
-                    for (int y = 0; y < averageDesiredChanges[x].length; ++y) {
-                        for (int z = 0; z < averageDesiredChanges[x][y].length; ++z) {
-                            averageDesiredChanges[x][y][z] /= BATCH_SIZE;
+                if (singlePrecision) {
+                    floatNetwork.copyInto(neuralNetwork);
+                }
 
-                            // Must be negative in order to traverse the loss in the "downhill" direction
-                            averageDesiredChanges[x][y][z] *= -lr;
+                long epochNanos = System.nanoTime() - epochStart;
+                logger.info("Trained on " + dataset.size() + " samples in " + epochNanos / 1_000_000 + " ms ("
+                        + new DecimalFormat("#").format(dataset.size() / (epochNanos / 1e9)) + " samples per second) with " + mode + " updates.");
 
-                            if (Math.random() < noiseFreq) {
-                                averageDesiredChanges[x][y][z] += (Math.random() * 2 - 1) * noiseStrength;
-                            }
-                        }
-                    }
+                // The metrics were accumulated from the forward passes of the training batches, so no extra pass over the dataset is needed
+                double loss = 0;
+                int correct = 0;
+                double certainty = 0;
+                int samples = 0;
+                for (Worker worker : workers) {
+                    loss += worker.loss;
+                    correct += worker.correct;
+                    certainty += worker.certainty;
+                    samples += worker.samples;
+                }
+
+                double costAfter = loss / samples;
+                double accuracy = (double) correct / samples * 100;
+                certainty = certainty / samples * 100;
+                String measuredOn = "training batches";
+                boolean validated = false;
+                double costBefore = previousTrainingCost;
+                previousTrainingCost = costAfter;
+
+                if (validationDataset != null && epoch % validationInterval == 0) {
+                    Evaluation evaluation = evaluator.evaluate(neuralNetwork, validationDataset);
+                    logger.info("Training cost: " + costAfter + ", training accuracy: " + new DecimalFormat("#.##").format(accuracy) + "%.");
+
+                    costAfter = evaluation.getLoss();
+                    accuracy = evaluation.getAccuracy() * 100;
+                    certainty = evaluation.getCertainty() * 100;
+                    measuredOn = validationDataset.size() + " validation samples";
+                    validated = true;
+                    costBefore = previousValidationCost;
+                    previousValidationCost = costAfter;
                 }
 
-                // Update weights and biases based on desired changes
-                for (int x = 0; x < averageDesiredChanges.length; x++) {
-                    for (int y = 0; y < averageDesiredChanges[x].length; y++) {
-                        neuralNetwork.getLayers()[x].getNeurons()[y].addToConnections(
-                                Arrays.copyOfRange(averageDesiredChanges[x][y], 0, averageDesiredChanges[x][y].length - 1));
-                        neuralNetwork.getLayers()[x].getNeurons()[y]
-                                .addToBias(averageDesiredChanges[x][y][averageDesiredChanges[x][y].length - 1]);
+                /*
+                Calculate change in cost
+                 */
+
+                String costChange;
+                if (costBefore == Double.POSITIVE_INFINITY) {
+                    costChange = "was measured for the first time";
+                    captureBest();
+                } else if (costBefore == costAfter) {
+                    costChange = "stayed the same";
+                } else {
+                    double costDifference = Math.abs(costBefore - costAfter);
+                    if (costBefore > costAfter) {
+                        costChange = "decreased by " + costDifference;
+                        captureBest();
+                    } else {
+                        costChange = "increased by " + costDifference;
                     }
                 }
-            }
 
-            predictions = new double[dataPoints.size()][];
+				/*
+				Print information about batch and update chart
+				 */
 
-            for (int a = 0; a < dataPoints.size(); a++) {
-                predictions[a] = neuralNetwork.forwardPropagate(inputs[a]);
-            }
+                logger.info("Cost " + costChange + "; new cost: " + costAfter + " (measured on " + measuredOn + ").");
+                logger.info("Accuracy after changes: " + new DecimalFormat("#.##").format(accuracy) + "%.");
+                logger.info("Certainty after changes: " + new DecimalFormat("#.##").format(certainty) + "%.");
 
-            double costAfter = LOSS_FUNCTION.calculate(outputs, predictions);
+                TrainingEvent event = metrics.claim();
+                if (event != null) {
+                    metrics.publish(event.epoch(epoch, samples, costAfter, accuracy, certainty, epochNanos, MetricsRingBuffer.gcMillis()));
+                }
 
-            /*
-            Calculate change in cost
-             */
+                epochEvent.commit(epoch, samples, batchesPerEpoch, mode.name(), costAfter, accuracy / 100);
 
-            String costChange;
-            if (costBefore == costAfter) {
-                costChange = "stayed the same";
-            } else {
-                double costDifference = Math.abs(costBefore - costAfter);
-                if (costBefore > costAfter) {
-                    costChange = "decreased by " + costDifference;
-                    bestNetwork = neuralNetwork.copy();
-                } else {
-                    costChange = "increased by " + costDifference;
+                learningRate.update(epoch);
+
+                // Taken after the learning rate update, so a resumed run starts the next epoch with the same schedule
+                if (checkpointer != null && epoch % checkpointInterval == 0) {
+                    checkpointer.save(neuralNetwork, epoch, costAfter, validated, learningRate.getState());
                 }
+
+                logger.info("Epoch " + (epoch++) + " complete.");
             }
 
-            /*
-            Calculate accuracy
-             */
+            if (checkpointer != null) {
+                checkpointer.flush();
+            }
 
-            double accuracy = 0;
+            // Let the listeners catch up, so that a run that ends now has its last epoch written out
+            if (!metrics.flush(10, TimeUnit.SECONDS)) {
+                logger.warn("The training listeners are still behind, their remaining events may be lost.");
+            }
+            if (metrics.getDropped() > 0) {
+                logger.warn("The training listeners fell behind and " + metrics.getDropped() + " events were dropped.");
+            }
 
-            for (int i = 0; i < predictions.length; ++i) {
-                for (int j = 0; j < predictions[i].length; ++j) {
-                    if (outputs[i][j] == 1 && predictions[i][j] > 0.5) {
-                        ++accuracy;
-                    }
-                }
+            return snapshotBest();
+        } finally {
+            if (loader != null) {
+                loader.close();
             }
 
-            accuracy /= dataPoints.size();
-            accuracy *= 100;
+            training = false;
+            stoppedTraining = true;
+        }
+    }
 
-            /*
-            Calculate certainty
-             */
+    /**
+     * Rounds the network into the single precision copy, making the copy and the workers' single precision buffers the first time
+     */
+    private void prepareSinglePrecision() {
+        if (floatNetwork == null) {
+            floatNetwork = FloatNeuralNetwork.fromNetwork(neuralNetwork);
+            for (Worker worker : workers) {
+                worker.allocateSinglePrecision();
+            }
+        } else {
+            floatNetwork.copyFrom(neuralNetwork);
+        }
+    }
 
-            double certainty = 0;
+    /**
+     * Shuffles the visiting order in place with a Fisher-Yates shuffle, which is O(n) and doesn't allocate
+     *
+     * @param order the indices of the samples
+     */
+    private void shuffle(int[] order) {
+        for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int temp = order[i];
+            order[i] = order[j];
+            order[j] = temp;
+        }
+    }
 
-            for (int i = 0; i < dataPoints.size(); ++i) {
-                for (int j = 0; j < outputs[i].length; ++j) {
-                    if (outputs[i][j] == 1) {
-                        certainty += predictions[i][j];
-                    }
-                }
+    /**
+     * Trains one epoch with every batch split across the workers, and their gradients applied together once the batch is done
+     */
+    private void trainSynchronous(BatchLoader loader, int[] order, LearningRate learningRate, int batchesPerEpoch, double noiseFreq, double noiseStrength) {
+        // The loader assembles the following batches while each batch is being trained on
+        loader.start(order);
+
+        // Perform backpropagation and weight updates in batches to reduce memory usage and improve speed
+        for (int batchNum = 0; batchNum < batchesPerEpoch; batchNum++) {
+            double lr = learningRate.get();
+
+            long stepStart = System.nanoTime();
+            BatchEvent batchEvent = new BatchEvent();
+            batchEvent.begin();
+
+            BatchLoader.Batch batch = nextBatch(loader);
+            int batchSize = batch.getSize();
+            batchBackPropagate(batch);
+            loader.release(batch);
+
+            // Update weights and biases based on desired changes
+            applyChanges(lr, noiseFreq, noiseStrength);
+
+            double batchLoss = 0;
+            for (int i = 0; i < activeWorkers; i++) {
+                batchLoss += workers[i].lastLoss;
             }
+            publishBatch(batchNum, batchSize, batchLoss, System.nanoTime() - stepStart);
+            batchEvent.commit(epoch, batchNum, batchSize);
+        }
 
-            certainty /= dataPoints.size();
-            certainty *= 100;
+        logger.info("Batch loader stalled training " + loader.getStalls() + " times for a total of "
+                + loader.getStallNanos() / 1_000_000 + " ms, loading took " + loader.getLoadNanos() / 1_000_000 + " ms.");
+        loader.resetMetrics();
+    }
 
-			/*
-			Print information about batch and update chart
-			 */
+    /**
+     * Trains one epoch with the workers taking whole batches from a shared counter, each applying its gradients as soon as its batch is done
+     */
+    private void trainHogwild(Dataset dataset, int[] order, LearningRate learningRate, int batchesPerEpoch, double noiseFreq, double noiseStrength) {
+        // The learning rates are worked out up front so that each batch gets the rate it would in synchronous mode, whichever worker takes it
+        double[] learningRates = new double[batchesPerEpoch];
+        for (int batchNum = 0; batchNum < batchesPerEpoch; batchNum++) {
+            learningRates[batchNum] = learningRate.get();
+        }
 
-            logger.info("Cost " + costChange + "; new cost: " + costAfter + ".");
-            logger.info("Accuracy after changes: " + new DecimalFormat("#.##").format(accuracy) + "%.");
-            logger.info("Certainty after changes: " + new DecimalFormat("#.##").format(certainty) + "%.");
+        epochDataset = dataset;
+        epochOrder = order;
+        epochLearningRates = learningRates;
+        nextHogwildBatch.set(0);
+        batchNoiseFreq = noiseFreq;
+        batchNoiseStrength = noiseStrength;
 
-            // We have epoch as an argument to create an effectively final copy
-            updateChart(epoch, costAfter, accuracy, certainty);
+        runInParallel(hogwildWorkers, hogwildWorkers.length);
+    }
 
-            learningRate.update(epoch);
+    /**
+     * Trains one epoch with every worker training its own copy of the network on its own shard of the samples,
+     * averaging the copies back into the network after every round of local steps
+     */
+    private void trainLocalSgd(Dataset dataset, int[] order, LearningRate learningRate, int batchesPerEpoch, double noiseFreq, double noiseStrength) {
+        localSteps = averagingSchedule.applyAsInt(epoch);
+        if (localSteps < 1) {
+            throw new IllegalArgumentException("The averaging schedule gave " + localSteps + " local steps for epoch " + epoch + ".");
+        }
 
-            logger.info("Epoch " + (epoch++) + " complete.");
+        // Each worker's steps are spread over the same learning rate schedule that synchronous mode covers in an epoch
+        double[] learningRates = new double[batchesPerEpoch];
+        for (int batchNum = 0; batchNum < batchesPerEpoch; batchNum++) {
+            learningRates[batchNum] = learningRate.get();
         }
 
-        pool.close();
+        epochDataset = dataset;
+        epochOrder = order;
+        epochLearningRates = learningRates;
+        stepsPerShard = Math.ceilDiv(Math.ceilDiv(order.length, numThreads), BATCH_SIZE);
+        batchNoiseFreq = noiseFreq;
+        batchNoiseStrength = noiseStrength;
 
-        training = false;
-        stoppedTraining = true;
+        for (int i = 0; i < numThreads; i++) {
+            localWorkers[i].startShard((int) ((long) order.length * i / numThreads), (int) ((long) order.length * (i + 1) / numThreads));
+        }
 
-        return bestNetwork;
+        int rounds = 0;
+        for (int step = 0; step < stepsPerShard; step += localSteps) {
+            runInParallel(localWorkers, localWorkers.length);
+            averageReplicas();
+            rounds++;
+        }
+
+        logger.info("Averaged " + numThreads + " replicas " + rounds + " times, every " + localSteps + " local steps.");
     }
 
-    double[][][][] batchBackPropagate(CopyOnWriteArrayList<DataPoint> dataPoints, int batchStart, int batchEnd) {
-        int numElements = batchEnd-batchStart;
+    /**
+     * Gets the copy of the network a worker trains in local SGD mode, making it from the network if it hasn't been made yet
+     *
+     * @param worker the index of the worker
+     */
+    NeuralNetwork getReplica(int worker) {
+        LocalWorker localWorker = localWorkers[worker];
+        if (localWorker.replica == null) {
+            localWorker.replica = neuralNetwork.copy();
+        }
+        return localWorker.replica;
+    }
 
-        double[][][][] desiredChanges = new double[numElements][][][];
+    /**
+     * Averages every worker's replica into the network, and copies the average back to the replicas
+     */
+    void averageReplicas() {
+        GradientReductionEvent event = new GradientReductionEvent();
+        event.begin();
+        runInParallel(averagers, averagers.length);
+        event.commit(numThreads, numParameters);
+    }
 
-        CountDownLatch latch = new CountDownLatch(numElements);
+    /**
+     * Hands a batch's measurements to the listeners, if there are any, without waiting for them
+     *
+     * @param batchNum  the index of the batch within the epoch
+     * @param batchSize the number of samples in the batch
+     * @param batchLoss the loss summed over the batch
+     * @param nanos     the time the batch took to train
+     */
+    private void publishBatch(int batchNum, int batchSize, double batchLoss, long nanos) {
+        if (!metrics.hasListeners()) return;
 
-        for (int i = batchStart; i < batchEnd; i++) {
-            int finalI = i;
-            pool.submit(() -> {
-                desiredChanges[finalI - batchStart] = neuralNetwork.backPropagate(dataPoints.get(finalI).inputs(), dataPoints.get(finalI).outputs());
-                latch.countDown();
-            });
+        TrainingEvent event = metrics.claim();
+        if (event != null) {
+            metrics.publish(event.batch(epoch, batchNum, batchSize, batchLoss / batchSize, nanos, MetricsRingBuffer.gcMillis()));
+        }
+    }
+
+    private static BatchLoader.Batch nextBatch(BatchLoader loader) {
+        try {
+            return loader.next();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Splits a batch into one slice per worker, and pushes each slice through the network as a single matrix-matrix product.
+     * Each worker adds its slice's gradients to its own accumulator, which {@link #applyChanges} then reduces.
+     *
+     * @param batch the batch to train on
+     */
+    void batchBackPropagate(BatchLoader.Batch batch) {
+        int numElements = batch.getSize();
+        // Slices smaller than a few samples would lose most of the benefit of the matrix-matrix product
+        int sliceSize = Math.max(MIN_SLICE_SIZE, Math.ceilDiv(numElements, numThreads));
+        activeWorkers = Math.ceilDiv(numElements, sliceSize);
+
+        for (int i = 0; i < activeWorkers; i++) {
+            int sliceStart = i * sliceSize;
+            workers[i].setSlice(batch, sliceStart, Math.min(sliceStart + sliceSize, numElements));
+        }
+
+        runInParallel(workers, activeWorkers);
+    }
+
+    /**
+     * Reduces the workers' accumulated gradients in parallel, each reducer owning a range of every layer's parameters.
+     * The reducers average the gradients over the batch, move the parameters against them, and clear the accumulators for the next batch.
+     *
+     * @param lr            the learning rate
+     * @param noiseFreq     the probability that a change will be randomly altered
+     * @param noiseStrength a multiplier how much a randomly selected change will be randomly altered
+     */
+    void applyChanges(double lr, double noiseFreq, double noiseStrength) {
+        batchLearningRate = lr;
+        batchNoiseFreq = noiseFreq;
+        batchNoiseStrength = noiseStrength;
+
+        GradientReductionEvent event = new GradientReductionEvent();
+        event.begin();
+        runInParallel(reducers, reducers.length);
+        event.commit(activeWorkers, numParameters);
+    }
+
+    private void runInParallel(Task[] tasks, int numTasks) {
+        CountDownLatch latch = new CountDownLatch(numTasks);
+
+        for (int i = 0; i < numTasks; i++) {
+            tasks[i].latch = latch;
+            pool.execute(tasks[i]);
         }
 
         try {
@@ -243,17 +726,450 @@ public class Trainer {
             throw new RuntimeException(e);
         }
 
-        return desiredChanges;
+        for (int i = 0; i < numTasks; i++) {
+            if (tasks[i].failure != null) {
+                Throwable failure = tasks[i].failure;
+                tasks[i].failure = null;
+                throw new RuntimeException(failure);
+            }
+        }
+    }
+
+    /**
+     * A unit of work that is handed to the pool once per batch, reused so a batch step doesn't allocate
+     */
+    private abstract static class Task implements Runnable {
+        private CountDownLatch latch;
+        private Throwable failure;
+
+        @Override
+        public final void run() {
+            try {
+                execute();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                latch.countDown();
+            }
+        }
+
+        abstract void execute();
+    }
+
+    /**
+     * Pushes a slice of a batch through the network, using its own buffers and gradient accumulator
+     */
+    private class Worker extends Task {
+        private final BatchTape tape = new BatchTape(neuralNetwork, BATCH_SIZE);
+        private final Gradients gradients = new Gradients(neuralNetwork);
+        private final double[] inputs;
+        private final double[] outputs;
+
+        private BatchLoader.Batch batch;
+        private int sliceStart;
+        private int sliceEnd;
+
+        // The metrics of the samples this worker has trained on this epoch
+        private double loss;
+        private int correct;
+        private double certainty;
+        private int samples;
+        // The loss of the last batch this worker trained on, summed over its samples
+        private double lastLoss;
+
+        // The single precision counterparts of the buffers above, only made if the trainer trains in single precision
+        private FloatBatchTape floatTape;
+        private FloatGradients floatGradients;
+        private float[] floatInputs;
+        private float[] floatOutputs;
+
+        private Worker() {
+            Layer[] layers = neuralNetwork.getLayers();
+            inputs = new double[BATCH_SIZE * layers[0].getNumInputs()];
+            outputs = new double[BATCH_SIZE * layers[layers.length - 1].getNumNeurons()];
+        }
+
+        private void allocateSinglePrecision() {
+            floatTape = new FloatBatchTape(floatNetwork, BATCH_SIZE);
+            floatGradients = new FloatGradients(floatNetwork);
+            floatInputs = new float[inputs.length];
+            floatOutputs = new float[outputs.length];
+        }
+
+        private void setSlice(BatchLoader.Batch batch, int sliceStart, int sliceEnd) {
+            this.batch = batch;
+            this.sliceStart = sliceStart;
+            this.sliceEnd = sliceEnd;
+        }
+
+        @Override
+        void execute() {
+            int batchSize = sliceEnd - sliceStart;
+
+            // The rows of the slice are contiguous in the batch, so they can be copied in one go
+            int inputSize = inputs.length / BATCH_SIZE;
+            int outputSize = outputs.length / BATCH_SIZE;
+
+            if (precision == Precision.SINGLE) {
+                System.arraycopy(batch.getFloatInputs(), sliceStart * inputSize, floatInputs, 0, batchSize * inputSize);
+                System.arraycopy(batch.getFloatOutputs(), sliceStart * outputSize, floatOutputs, 0, batchSize * outputSize);
+
+                double batchLoss = floatNetwork.backPropagate(floatInputs, floatOutputs, batchSize, floatTape, floatGradients);
+                recordSinglePrecision(batchLoss, batchSize);
+                return;
+            }
+
+            System.arraycopy(batch.getInputs(), sliceStart * inputSize, inputs, 0, batchSize * inputSize);
+            System.arraycopy(batch.getOutputs(), sliceStart * outputSize, outputs, 0, batchSize * outputSize);
+
+            double batchLoss = neuralNetwork.backPropagate(inputs, outputs, batchSize, tape, gradients);
+            record(batchLoss, batchSize);
+        }
+
+        /**
+         * Adds the metrics of the batch that was just back propagated, using the output activations the forward pass left in the tape
+         */
+        private void record(double batchLoss, int batchSize) {
+            double[] predicted = tape.getOutputs();
+            int outputSize = outputs.length / BATCH_SIZE;
+
+            for (int r = 0; r < batchSize; r++) {
+                int offset = r * outputSize;
+                int best = 0;
+                int label = 0;
+                for (int i = 1; i < outputSize; i++) {
+                    if (predicted[offset + i] > predicted[offset + best]) best = i;
+                    if (outputs[offset + i] > outputs[offset + label]) label = i;
+                }
+
+                if (best == label) correct++;
+                certainty += predicted[offset + label];
+            }
+
+            loss += batchLoss;
+            samples += batchSize;
+            lastLoss = batchLoss;
+        }
+
+        /**
+         * The single precision counterpart of {@link #record(double, int)}
+         */
+        private void recordSinglePrecision(double batchLoss, int batchSize) {
+            float[] predicted = floatTape.getOutputs();
+            int outputSize = floatOutputs.length / BATCH_SIZE;
+
+            for (int r = 0; r < batchSize; r++) {
+                int offset = r * outputSize;
+                int best = 0;
+                int label = 0;
+                for (int i = 1; i < outputSize; i++) {
+                    if (predicted[offset + i] > predicted[offset + best]) best = i;
+                    if (floatOutputs[offset + i] > floatOutputs[offset + label]) label = i;
+                }
+
+                if (best == label) correct++;
+                certainty += predicted[offset + label];
+            }
+
+            loss += batchLoss;
+            samples += batchSize;
+            lastLoss = batchLoss;
+        }
+
+        private void resetMetrics() {
+            loss = 0;
+            correct = 0;
+            certainty = 0;
+            samples = 0;
+        }
+    }
+
+    /**
+     * Trains on whole batches until the epoch runs out, applying each batch's gradients straight to the shared weights.
+     * It reuses the buffers and gradient accumulator of a synchronous worker, since the two modes never run at the same time.
+     */
+    private class HogwildWorker extends Task {
+        private final Worker worker;
+
+        private HogwildWorker(Worker worker) {
+            this.worker = worker;
+        }
+
+        @Override
+        void execute() {
+            int inputSize = epochDataset.getInputSize();
+            int outputSize = epochDataset.getNumClasses();
+
+            for (int batchNum = nextHogwildBatch.getAndIncrement(); batchNum < epochLearningRates.length; batchNum = nextHogwildBatch.getAndIncrement()) {
+                int batchStart = batchNum * BATCH_SIZE;
+                int batchSize = Math.min(BATCH_SIZE, epochOrder.length - batchStart);
+                long stepStart = System.nanoTime();
+                BatchEvent batchEvent = new BatchEvent();
+                batchEvent.begin();
+
+                for (int i = 0; i < batchSize; i++) {
+                    int index = epochOrder[batchStart + i];
+                    epochDataset.copyInputs(index, worker.inputs, i * inputSize);
+                    epochDataset.copyOutputs(index, worker.outputs, i * outputSize);
+                }
+
+                double batchLoss = neuralNetwork.backPropagate(worker.inputs, worker.outputs, batchSize, worker.tape, worker.gradients);
+                worker.record(batchLoss, batchSize);
+
+                applyGradients(neuralNetwork, worker.gradients, epochLearningRates[batchNum]);
+                publishBatch(batchNum, batchSize, batchLoss, System.nanoTime() - stepStart);
+                batchEvent.commit(epoch, batchNum, batchSize);
+            }
+        }
+    }
+
+    /**
+     * Trains a copy of the network on a shard of the epoch, a round of local steps at a time
+     */
+    private class LocalWorker extends Task {
+        private final int index;
+        private final Worker worker;
+        private NeuralNetwork replica;
+        private int shardStart;
+        private int shardEnd;
+        private int step;
+
+        private LocalWorker(int index, Worker worker) {
+            this.index = index;
+            this.worker = worker;
+        }
+
+        private void startShard(int shardStart, int shardEnd) {
+            // The copy is only made the first time, since most runs never use local SGD
+            if (replica == null) {
+                replica = neuralNetwork.copy();
+            } else {
+                neuralNetwork.copyInto(replica);
+            }
+
+            this.shardStart = shardStart;
+            this.shardEnd = shardEnd;
+            step = 0;
+        }
+
+        @Override
+        void execute() {
+            int inputSize = epochDataset.getInputSize();
+            int outputSize = epochDataset.getNumClasses();
+
+            for (int i = 0; i < localSteps; i++, step++) {
+                int batchStart = shardStart + step * BATCH_SIZE;
+                if (batchStart >= shardEnd) return;
+                int batchSize = Math.min(BATCH_SIZE, shardEnd - batchStart);
+                long stepStart = System.nanoTime();
+                BatchEvent batchEvent = new BatchEvent();
+                batchEvent.begin();
+
+                for (int j = 0; j < batchSize; j++) {
+                    int index = epochOrder[batchStart + j];
+                    epochDataset.copyInputs(index, worker.inputs, j * inputSize);
+                    epochDataset.copyOutputs(index, worker.outputs, j * outputSize);
+                }
+
+                double batchLoss = replica.backPropagate(worker.inputs, worker.outputs, batchSize, worker.tape, worker.gradients);
+                worker.record(batchLoss, batchSize);
+
+                int rate = (int) ((long) step * epochLearningRates.length / stepsPerShard);
+                applyGradients(replica, worker.gradients, epochLearningRates[rate]);
+                // Numbered by shard, so that the batches of different workers don't share numbers
+                publishBatch(index * stepsPerShard + step, batchSize, batchLoss, System.nanoTime() - stepStart);
+                batchEvent.commit(epoch, index * stepsPerShard + step, batchSize);
+            }
+        }
+    }
+
+    /**
+     * Averages one range of every layer's parameters across the replicas into the network, and copies the average back to the replicas
+     */
+    private class Averager extends Task {
+        private final int index;
+
+        private Averager(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void execute() {
+            Layer[] layers = neuralNetwork.getLayers();
+            for (int l = 0; l < layers.length; l++) {
+                average(layers[l].getWeights(), l, false);
+                average(layers[l].getBiases(), l, true);
+            }
+        }
+
+        private void average(double[] parameters, int layer, boolean biases) {
+            int from = (int) ((long) parameters.length * index / averagers.length);
+            int to = (int) ((long) parameters.length * (index + 1) / averagers.length);
+
+            Arrays.fill(parameters, from, to, 0);
+            for (LocalWorker localWorker : localWorkers) {
+                Layer replicaLayer = localWorker.replica.getLayers()[layer];
+                Kernels.axpy(1.0 / localWorkers.length, biases ? replicaLayer.getBiases() : replicaLayer.getWeights(), from, parameters, from, to - from);
+            }
+
+            for (LocalWorker localWorker : localWorkers) {
+                Layer replicaLayer = localWorker.replica.getLayers()[layer];
+                System.arraycopy(parameters, from, biases ? replicaLayer.getBiases() : replicaLayer.getWeights(), from, to - from);
+            }
+        }
+    }
+
+    /**
+     * Moves a network's parameters against gradients accumulated over a batch, and clears the gradients for the next batch
+     *
+     * @param network   the network to update
+     * @param gradients the batch's gradients
+     * @param lr        the learning rate
+     */
+    private void applyGradients(NeuralNetwork network, Gradients gradients, double lr) {
+        WeightUpdateEvent event = new WeightUpdateEvent();
+        event.begin();
+
+        Layer[] layers = network.getLayers();
+        for (int l = 0; l < layers.length; l++) {
+            applyGradients(gradients.getWeights(l), layers[l].getWeights(), lr);
+            applyGradients(gradients.getBiases(l), layers[l].getBiases(), lr);
+        }
+
+        event.commit(numParameters, lr);
+    }
+
+    private void applyGradients(double[] gradients, double[] parameters, double lr) {
+        // Must be negative in order to traverse the loss in the "downhill" direction
+        double scale = -lr / BATCH_SIZE;
+
+        for (int i = 0; i < gradients.length; i++) {
+            double gradient = gradients[i];
+            // Parameters that the batch didn't touch are left alone, so sparse Hogwild updates don't write to cache lines other workers are reading
+            if (gradient == 0 && batchNoiseFreq <= 0) continue;
+
+            double change = gradient * scale;
+
+            if (batchNoiseFreq > 0 && ThreadLocalRandom.current().nextDouble() < batchNoiseFreq) {
+                change += (ThreadLocalRandom.current().nextDouble() * 2 - 1) * batchNoiseStrength;
+            }
+
+            parameters[i] += change;
+            gradients[i] = 0;
+        }
+    }
+
+    /**
+     * Sums the workers' gradients for one range of every layer's parameters and applies them
+     */
+    private class Reducer extends Task {
+        private final int index;
+
+        private Reducer(int index) {
+            this.index = index;
+        }
+
+        @Override
+        void execute() {
+            if (precision == Precision.SINGLE) {
+                FloatLayer[] layers = floatNetwork.getLayers();
+                for (int l = 0; l < layers.length; l++) {
+                    reduce(layers[l].getWeights(), l, false);
+                    reduce(layers[l].getBiases(), l, true);
+                }
+                return;
+            }
+
+            Layer[] layers = neuralNetwork.getLayers();
+            for (int l = 0; l < layers.length; l++) {
+                reduce(layers[l].getWeights(), l, false);
+                reduce(layers[l].getBiases(), l, true);
+            }
+        }
+
+        private void reduce(double[] parameters, int layer, boolean biases) {
+            int from = (int) ((long) parameters.length * index / reducers.length);
+            int to = (int) ((long) parameters.length * (index + 1) / reducers.length);
+
+            double[] total = biases ? workers[0].gradients.getBiases(layer) : workers[0].gradients.getWeights(layer);
+            for (int w = 1; w < activeWorkers; w++) {
+                double[] gradients = biases ? workers[w].gradients.getBiases(layer) : workers[w].gradients.getWeights(layer);
+                Kernels.axpy(1.0, gradients, from, total, from, to - from);
+                Arrays.fill(gradients, from, to, 0);
+            }
+
+            if (batchNoiseFreq <= 0) {
+                // Must be negative in order to traverse the loss in the "downhill" direction
+                Kernels.axpy(-batchLearningRate / BATCH_SIZE, total, from, parameters, from, to - from);
+                Arrays.fill(total, from, to, 0);
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                // Must be negative in order to traverse the loss in the "downhill" direction
+                double change = total[i] / BATCH_SIZE * -batchLearningRate;
+
+                if (ThreadLocalRandom.current().nextDouble() < batchNoiseFreq) {
+                    change += (ThreadLocalRandom.current().nextDouble() * 2 - 1) * batchNoiseStrength;
+                }
+
+                parameters[i] += change;
+                total[i] = 0;
+            }
+        }
+
+        /**
+         * The single precision counterpart of {@link #reduce(double[], int, boolean)}
+         */
+        private void reduce(float[] parameters, int layer, boolean biases) {
+            int from = (int) ((long) parameters.length * index / reducers.length);
+            int to = (int) ((long) parameters.length * (index + 1) / reducers.length);
+
+            float[] total = biases ? workers[0].floatGradients.getBiases(layer) : workers[0].floatGradients.getWeights(layer);
+            for (int w = 1; w < activeWorkers; w++) {
+                float[] gradients = biases ? workers[w].floatGradients.getBiases(layer) : workers[w].floatGradients.getWeights(layer);
+                Kernels.axpy(1f, gradients, from, total, from, to - from);
+                Arrays.fill(gradients, from, to, 0);
+            }
+
+            if (batchNoiseFreq <= 0) {
+                // Must be negative in order to traverse the loss in the "downhill" direction
+                Kernels.axpy((float) (-batchLearningRate / BATCH_SIZE), total, from, parameters, from, to - from);
+                Arrays.fill(total, from, to, 0);
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                // Must be negative in order to traverse the loss in the "downhill" direction
+                double change = total[i] / BATCH_SIZE * -batchLearningRate;
+
+                if (ThreadLocalRandom.current().nextDouble() < batchNoiseFreq) {
+                    change += (ThreadLocalRandom.current().nextDouble() * 2 - 1) * batchNoiseStrength;
+                }
+
+                parameters[i] += (float) change;
+                total[i] = 0;
+            }
+        }
     }
 
     public void stop() {
         if (!training) return;
 
         training = false;
-        stoppedTraining = false;
 
         while (!stoppedTraining) {
             Thread.onSpinWait();
         }
     }
+
+    /**
+     * Stops training and shuts down the worker and metrics threads, the trainer can't be started again afterwards
+     */
+    @Override
+    public void close() {
+        stop();
+        pool.shutdown();
+        metrics.close();
+    }
 }
@@ -0,0 +1,125 @@
+package com.thomas.neuralnetwork.checkpoint;
+
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Properties;
+
+/**
+ * A network saved by a {@link Checkpointer}, along with what is needed to resume training it.
+ * A checkpoint is a network file and a properties file that describes it, the properties file is written last,
+ * so a checkpoint is only ever listed once its network is completely on disk.
+ */
+public final class Checkpoint {
+    private final File metadataFile;
+    private final File networkFile;
+    private final int epoch;
+    private final double cost;
+    private final boolean validationCost;
+    private final double[] learningRateState;
+
+    Checkpoint(File metadataFile, File networkFile, int epoch, double cost, boolean validationCost, double[] learningRateState) {
+        this.metadataFile = metadataFile;
+        this.networkFile = networkFile;
+        this.epoch = epoch;
+        this.cost = cost;
+        this.validationCost = validationCost;
+        this.learningRateState = learningRateState;
+    }
+
+    /**
+     * Reads a checkpoint's properties file
+     *
+     * @param metadataFile the properties file
+     * @return the checkpoint it describes
+     * @throws IOException if the file can't be read or is missing a property
+     */
+    static Checkpoint read(File metadataFile) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = new FileReader(metadataFile)) {
+            properties.load(reader);
+        }
+
+        try {
+            String learningRate = properties.getProperty("learningRate", "");
+            return new Checkpoint(
+                    metadataFile,
+                    new File(metadataFile.getParentFile(), properties.getProperty("network")),
+                    Integer.parseInt(properties.getProperty("epoch")),
+                    Double.parseDouble(properties.getProperty("cost")),
+                    properties.getProperty("costMeasuredOn", "training").equals("validation"),
+                    learningRate.isEmpty() ? new double[0] : Arrays.stream(learningRate.split(",")).mapToDouble(Double::parseDouble).toArray()
+            );
+        } catch (NullPointerException | NumberFormatException e) {
+            throw new IOException(metadataFile + " is not a complete checkpoint.", e);
+        }
+    }
+
+    Properties toProperties() {
+        Properties properties = new Properties();
+        properties.setProperty("network", networkFile.getName());
+        properties.setProperty("epoch", Integer.toString(epoch));
+        properties.setProperty("cost", Double.toString(cost));
+        properties.setProperty("costMeasuredOn", validationCost ? "validation" : "training");
+
+        StringBuilder learningRate = new StringBuilder();
+        for (double value : learningRateState) {
+            if (!learningRate.isEmpty()) learningRate.append(',');
+            learningRate.append(value);
+        }
+        properties.setProperty("learningRate", learningRate.toString());
+
+        return properties;
+    }
+
+    /**
+     * Loads the network, which may be in the binary or the text format
+     *
+     * @return a new network
+     * @throws IOException if the network file can't be read
+     */
+    public NeuralNetwork loadNetwork() throws IOException {
+        NeuralNetwork neuralNetwork = NeuralNetwork.fromFile(networkFile);
+        if (neuralNetwork == null) {
+            throw new IOException("Could not load the network of " + metadataFile + " from " + networkFile + ".");
+        }
+        return neuralNetwork;
+    }
+
+    File getMetadataFile() {
+        return metadataFile;
+    }
+
+    public File getNetworkFile() {
+        return networkFile;
+    }
+
+    /**
+     * Gets the epoch that had just been trained when the checkpoint was taken
+     */
+    public int getEpoch() {
+        return epoch;
+    }
+
+    public double getCost() {
+        return cost;
+    }
+
+    /**
+     * Checks whether the cost was measured on a validation dataset rather than on the training batches
+     */
+    public boolean isValidationCost() {
+        return validationCost;
+    }
+
+    /**
+     * Gets the state of the learning rate schedule, see {@link com.thomas.neuralnetwork.math.learningRate.LearningRate#getState()}
+     */
+    public double[] getLearningRateState() {
+        return learningRateState.clone();
+    }
+}
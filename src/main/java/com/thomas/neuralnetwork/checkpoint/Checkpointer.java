@@ -0,0 +1,311 @@
+package com.thomas.neuralnetwork.checkpoint;
+
+import com.thomas.neuralnetwork.ai.NetworkFile;
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Saves checkpoints of a network in the background while it trains.
+ * <p>
+ * Saving copies the weights into one of two reusable buffers and hands the buffer to a writer thread,
+ * so training only pauses for the copy. If both buffers are still being written the checkpoint is skipped rather than waited for.
+ * Every file is written under a temporary name and then renamed, so a crash never leaves a half written checkpoint behind.
+ * After each checkpoint, only the most recent and the lowest cost checkpoints are kept.
+ * <p>
+ * A checkpointer holds buffers shaped like the first network it saves, so it should only be used for one network.
+ */
+public class Checkpointer implements AutoCloseable {
+    /**
+     * The format networks are written in
+     */
+    public enum Format {
+        /**
+         * The binary .nnet format of {@link NetworkFile}
+         */
+        BINARY(".nnet"),
+        /**
+         * The legacy text format, {@link NeuralNetwork#toString()}
+         */
+        TEXT(".txt");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+    }
+
+    private static final String PREFIX = "checkpoint-";
+    private static final String METADATA_EXTENSION = ".properties";
+    private static final String TEMPORARY_EXTENSION = ".tmp";
+    private static final int NUM_BUFFERS = 2;
+
+    private static final Logger logger = LoggerFactory.getLogger(Checkpointer.class);
+
+    private final File directory;
+    private Format format = Format.BINARY;
+    private int keepLast = 3;
+    private int keepBest = 1;
+
+    // The buffers that aren't being written, only the thread that saves allocates them
+    private final BlockingQueue<NeuralNetwork> free = new ArrayBlockingQueue<>(NUM_BUFFERS);
+    private int allocatedBuffers;
+    private int skipped;
+
+    // A daemon thread, so that a checkpoint that is still being written can't keep the process alive, close() waits for it instead
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "checkpoint-writer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Creates a checkpointer that saves into a directory, creating the directory if it doesn't exist
+     *
+     * @param directory the directory
+     * @throws IOException if the directory can't be created
+     */
+    public Checkpointer(File directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory.toPath());
+    }
+
+    /**
+     * Sets the format networks are written in, the binary format is used by default
+     *
+     * @param format the format
+     */
+    public void setFormat(Format format) {
+        this.format = format;
+    }
+
+    /**
+     * Sets which checkpoints are kept, a checkpoint is kept if it is one of the most recent or one of the lowest cost.
+     * By default the 3 most recent and the lowest cost checkpoints are kept.
+     *
+     * @param keepLast the number of most recent checkpoints to keep, at least 1 so that there is always one to resume from
+     * @param keepBest the number of lowest cost checkpoints to keep
+     */
+    public void setRetention(int keepLast, int keepBest) {
+        if (keepLast < 1 || keepBest < 0) {
+            throw new IllegalArgumentException("At least 1 recent checkpoint must be kept, and the number of best checkpoints can't be negative.");
+        }
+        this.keepLast = keepLast;
+        this.keepBest = keepBest;
+    }
+
+    /**
+     * Copies a network's weights and writes them in the background, only the copy is done on the calling thread
+     *
+     * @param neuralNetwork     the network, which mustn't be changing during the call
+     * @param epoch             the epoch that has just been trained
+     * @param cost              the cost of the network after the epoch
+     * @param validationCost    whether the cost was measured on a validation dataset
+     * @param learningRateState the state of the learning rate schedule
+     * @return the checkpoint once it has been written, or null if both buffers were still being written and the checkpoint was skipped
+     */
+    public CompletableFuture<Checkpoint> save(NeuralNetwork neuralNetwork, int epoch, double cost, boolean validationCost, double[] learningRateState) {
+        NeuralNetwork buffer = free.poll();
+        if (buffer != null) {
+            neuralNetwork.copyInto(buffer);
+        } else if (allocatedBuffers < NUM_BUFFERS) {
+            // The buffers are made the first times they are needed, and reused from then on
+            buffer = neuralNetwork.copy();
+            allocatedBuffers++;
+        } else {
+            skipped++;
+            logger.warn("Skipped the checkpoint of epoch " + epoch + " since the previous checkpoints are still being written.");
+            return null;
+        }
+
+        NeuralNetwork snapshot = buffer;
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return write(snapshot, epoch, cost, validationCost, learningRateState);
+            } catch (IOException e) {
+                logger.error("Could not write the checkpoint of epoch " + epoch + ".", e);
+                throw new UncheckedIOException(e);
+            } finally {
+                free.add(snapshot);
+            }
+        }, writer);
+    }
+
+    private Checkpoint write(NeuralNetwork neuralNetwork, int epoch, double cost, boolean validationCost, double[] learningRateState) throws IOException {
+        String name = String.format("%s%06d", PREFIX, epoch);
+        File networkFile = new File(directory, name + format.extension);
+        File metadataFile = new File(directory, name + METADATA_EXTENSION);
+
+        write(neuralNetwork, networkFile, format);
+
+        // The metadata goes last, so the checkpoint only appears once its network is complete
+        Checkpoint checkpoint = new Checkpoint(metadataFile, networkFile, epoch, cost, validationCost, learningRateState);
+        File temporary = temporaryFile(metadataFile);
+        try (Writer out = new FileWriter(temporary)) {
+            checkpoint.toProperties().store(out, "Checkpoint of epoch " + epoch);
+        }
+        moveAtomically(temporary.toPath(), metadataFile.toPath());
+
+        logger.info("Saved the checkpoint of epoch " + epoch + " to " + networkFile + ".");
+        applyRetention();
+        return checkpoint;
+    }
+
+    /**
+     * Writes a network to a file under a temporary name and then renames it, so the file is either the old one or the complete new one
+     *
+     * @param neuralNetwork the network to write
+     * @param file          the file to write to, it is replaced if it exists
+     * @param format        the format to write in
+     * @throws IOException if the file can't be written
+     */
+    public static void write(NeuralNetwork neuralNetwork, File file, Format format) throws IOException {
+        File temporary = temporaryFile(file);
+
+        if (format == Format.BINARY) {
+            NetworkFile.write(neuralNetwork, temporary);
+        } else {
+            try (Writer out = new FileWriter(temporary)) {
+                out.write(neuralNetwork.toString());
+            }
+        }
+
+        moveAtomically(temporary.toPath(), file.toPath());
+    }
+
+    private static File temporaryFile(File file) {
+        return new File(file.getAbsoluteFile().getParentFile(), file.getName() + TEMPORARY_EXTENSION);
+    }
+
+    private static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            // Some file systems can't rename atomically, replacing is the best they can do
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Deletes every checkpoint that is neither one of the most recent nor one of the lowest cost.
+     * Training and validation costs aren't comparable, so the best are ranked among the validation checkpoints when there are any.
+     */
+    private void applyRetention() {
+        List<Checkpoint> checkpoints = list(directory);
+
+        Set<File> kept = new HashSet<>();
+        checkpoints.stream()
+                .sorted(Comparator.comparingInt(Checkpoint::getEpoch).reversed())
+                .limit(keepLast)
+                .forEach(checkpoint -> kept.add(checkpoint.getMetadataFile()));
+
+        boolean validated = checkpoints.stream().anyMatch(Checkpoint::isValidationCost);
+        checkpoints.stream()
+                .filter(checkpoint -> checkpoint.isValidationCost() == validated)
+                .sorted(Comparator.comparingDouble(Checkpoint::getCost))
+                .limit(keepBest)
+                .forEach(checkpoint -> kept.add(checkpoint.getMetadataFile()));
+
+        for (Checkpoint checkpoint : checkpoints) {
+            if (kept.contains(checkpoint.getMetadataFile())) continue;
+
+            // The metadata goes first, so a checkpoint that is only partly deleted is never listed
+            if (!checkpoint.getMetadataFile().delete() || !checkpoint.getNetworkFile().delete()) {
+                logger.warn("Could not delete the checkpoint of epoch " + checkpoint.getEpoch() + ".");
+            }
+        }
+    }
+
+    /**
+     * Lists the complete checkpoints in a directory
+     *
+     * @param directory the directory
+     * @return the checkpoints, oldest first
+     */
+    public static List<Checkpoint> list(File directory) {
+        File[] files = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(METADATA_EXTENSION));
+        List<Checkpoint> checkpoints = new ArrayList<>();
+        if (files == null) return checkpoints;
+
+        for (File file : files) {
+            try {
+                checkpoints.add(Checkpoint.read(file));
+            } catch (IOException e) {
+                logger.warn("Ignoring " + file + ": " + e.getMessage());
+            }
+        }
+
+        checkpoints.sort(Comparator.comparingInt(Checkpoint::getEpoch));
+        return checkpoints;
+    }
+
+    /**
+     * Finds the most recent checkpoint in a directory, to resume training from
+     *
+     * @param directory the directory
+     * @return the checkpoint with the highest epoch, or null if there are none
+     */
+    public static Checkpoint latest(File directory) {
+        List<Checkpoint> checkpoints = list(directory);
+        return checkpoints.isEmpty() ? null : checkpoints.get(checkpoints.size() - 1);
+    }
+
+    /**
+     * Gets the number of checkpoints skipped because the previous ones were still being written
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Waits until every checkpoint saved so far has been written
+     */
+    public void flush() {
+        try {
+            // The writer runs tasks in order, so once this has run every earlier checkpoint is done
+            writer.submit(() -> { }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Waits for the checkpoints being written and stops the writer thread
+     */
+    @Override
+    public void close() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(1, TimeUnit.MINUTES)) {
+                logger.warn("Gave up waiting for the last checkpoints to be written.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
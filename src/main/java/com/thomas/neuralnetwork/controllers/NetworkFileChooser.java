@@ -0,0 +1,22 @@
+package com.thomas.neuralnetwork.controllers;
+
+import javafx.event.ActionEvent;
+import javafx.scene.Node;
+import javafx.stage.FileChooser;
+
+import java.io.File;
+
+/**
+ * Asks the user for a network file, kept with the controllers so that the data and ai packages don't depend on JavaFX
+ */
+public class NetworkFileChooser {
+    public static File chooseFile(ActionEvent event) {
+        FileChooser fileChooser = new FileChooser();
+        FileChooser.ExtensionFilter extensionFilter = new FileChooser.ExtensionFilter("Neural Network Files (*.nnet)", "*.nnet");
+
+        fileChooser.getExtensionFilters().add(extensionFilter);
+        fileChooser.setInitialDirectory(new File("."));
+
+        return fileChooser.showOpenDialog(((Node) event.getSource()).getScene().getWindow());
+    }
+}
@@ -1,20 +1,24 @@
 package com.thomas.neuralnetwork.controllers;
 
+import com.thomas.neuralnetwork.ai.Evaluation;
+import com.thomas.neuralnetwork.ai.Evaluator;
 import com.thomas.neuralnetwork.ai.NeuralNetwork;
-import com.thomas.neuralnetwork.data.DataPoint;
+import com.thomas.neuralnetwork.data.Dataset;
 import com.thomas.neuralnetwork.data.MnistDataReader;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.scene.control.Button;
 import javafx.scene.control.Label;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Arrays;
-import java.util.List;
-
-import static com.thomas.neuralnetwork.ai.NeuralNetwork.LOSS_FUNCTION;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class TestingController {
 
@@ -22,7 +26,16 @@ public class TestingController {
     public Button loadNetworkButton;
     private NeuralNetwork neuralNetwork;
 
-    List<DataPoint> dataPoints;
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Evaluator evaluator = new Evaluator();
+    // A daemon thread, so that an evaluation still running when the window closes doesn't keep the application alive
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "network-tester");
+        thread.setDaemon(true);
+        return thread;
+    });
+    Dataset dataset;
 
     @FXML
     public Label output;
@@ -30,7 +43,7 @@ public class TestingController {
     @FXML
     private void initialize() throws IOException {
         // Initialize training data
-        dataPoints = MnistDataReader.readData(
+        dataset = MnistDataReader.readDataset(
                 getClass().getResourceAsStream("/data/t10k-images.idx3-ubyte"),
                 getClass().getResourceAsStream("/data/t10k-labels.idx1-ubyte")
         );
@@ -38,7 +51,7 @@ public class TestingController {
 
     @FXML
     public void loadNetwork(ActionEvent event) {
-        File file = MnistDataReader.chooseFile(event);
+        File file = NetworkFileChooser.chooseFile(event);
 
         if (file == null) return; // No file has been selected.
 
@@ -53,42 +66,47 @@ public class TestingController {
             return;
         }
 
-        testButton.setText("Test");
-
-        double[][] predictions = new double[dataPoints.size()][];
-        double[][] actual = dataPoints.stream().map(DataPoint::outputs).toArray(double[][]::new);
-
-        for (int a = 0; a < dataPoints.size(); a++) {
-            predictions[a] = neuralNetwork.forwardPropagate(dataPoints.get(a).inputs());
-        }
-
-        double cost = LOSS_FUNCTION.calculate(actual, predictions);
-
-        /*
-        Calculate accuracy
-         */
+        testButton.setText("Testing...");
+        testButton.setDisable(true);
+
+        // Evaluate on a background thread so that the UI stays responsive
+        NeuralNetwork network = neuralNetwork;
+        executor.execute(() -> {
+            Evaluation evaluation;
+            try {
+                evaluation = evaluator.evaluate(network, dataset);
+            } catch (RuntimeException e) {
+                logger.error("Testing the network failed.", e);
+                Platform.runLater(() -> {
+                    testButton.setText("Test");
+                    testButton.setDisable(false);
+                    output.setText("Testing failed: " + e.getMessage());
+                });
+                return;
+            }
 
-        double accuracy = 0;
-        int[] numIncorrect = new int[10];
+            Platform.runLater(() -> {
+                testButton.setText("Test");
+                testButton.setDisable(false);
+
+                int[] misclassified = evaluation.getMisclassified();
+                output.setText("Cost: " + evaluation.getLoss() + "\n" +
+                "Accuracy: " + new DecimalFormat("#.##").format(evaluation.getAccuracy() * 100) + "%.\n" +
+                "Top " + evaluation.getTopK() + " accuracy: " + new DecimalFormat("#.##").format(evaluation.getTopKAccuracy() * 100) + "%.\n" +
+                "Incorrect classifications: " + Arrays.stream(misclassified).sum() + " (" + Arrays.toString(misclassified) + ")\n" +
+                "Confusion matrix (rows are labels, columns are predictions):\n" + formatConfusionMatrix(evaluation.getConfusionMatrix()));
+            });
+        });
+    }
 
-        for (int i = 0; i < predictions.length; ++i) {
-            for (int j = 0; j < predictions[i].length; ++j) {
-                if (actual[i][j] == 1) {
-                    if (predictions[i][j] > 0.5) {
-                        ++accuracy;
-                    } else {
-                        ++numIncorrect[j];
-                    }
-                }
+    private static String formatConfusionMatrix(int[][] confusionMatrix) {
+        StringBuilder builder = new StringBuilder();
+        for (int[] row : confusionMatrix) {
+            for (int count : row) {
+                builder.append(String.format("%6d", count));
             }
+            builder.append('\n');
         }
-
-        accuracy /= dataPoints.size();
-        accuracy *= 100;
-
-
-        output.setText("Cost: " + cost + "\n" +
-        "Accuracy: " + new DecimalFormat("#.##").format(accuracy) + "%.\n" +
-        "Incorrect classifications: " + Arrays.stream(numIncorrect).sum() + " (" + Arrays.toString(numIncorrect) + ")");
+        return builder.toString();
     }
 }
@@ -0,0 +1,36 @@
+package com.thomas.neuralnetwork.controllers;
+
+import com.thomas.neuralnetwork.metrics.TrainingEvent;
+import com.thomas.neuralnetwork.metrics.TrainingListener;
+import javafx.application.Platform;
+import javafx.scene.chart.XYChart;
+
+/**
+ * Plots the cost, accuracy and certainty of every epoch, handing the new points to the JavaFX thread
+ */
+class TrainingChart implements TrainingListener {
+    private final XYChart.Series<Number, Number> cost;
+    private final XYChart.Series<Number, Number> accuracy;
+    private final XYChart.Series<Number, Number> certainty;
+
+    TrainingChart(XYChart.Series<Number, Number> cost, XYChart.Series<Number, Number> accuracy, XYChart.Series<Number, Number> certainty) {
+        this.cost = cost;
+        this.accuracy = accuracy;
+        this.certainty = certainty;
+    }
+
+    @Override
+    public void epochCompleted(TrainingEvent event) {
+        // The event is reused once this returns, so its values are copied out before handing them over
+        int epoch = event.getEpoch();
+        double cost = event.getLoss();
+        double accuracy = event.getAccuracy();
+        double certainty = event.getCertainty();
+
+        Platform.runLater(() -> {
+            this.cost.getData().add(new XYChart.Data<>(epoch, cost));
+            this.accuracy.getData().add(new XYChart.Data<>(epoch, accuracy));
+            this.certainty.getData().add(new XYChart.Data<>(epoch, certainty));
+        });
+    }
+}
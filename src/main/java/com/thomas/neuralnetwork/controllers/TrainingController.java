@@ -2,8 +2,10 @@ package com.thomas.neuralnetwork.controllers;
 
 import com.thomas.neuralnetwork.ai.NeuralNetwork;
 import com.thomas.neuralnetwork.ai.Trainer;
-import com.thomas.neuralnetwork.data.DataPoint;
+import com.thomas.neuralnetwork.checkpoint.Checkpointer;
+import com.thomas.neuralnetwork.data.Dataset;
 import com.thomas.neuralnetwork.data.MnistDataReader;
+import com.thomas.neuralnetwork.data.UserData;
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
@@ -17,12 +19,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.util.*;
-import java.util.concurrent.CopyOnWriteArrayList;
 
 public class TrainingController {
     private static final String SAVE_BUTTON_TEXT = "Save To File";
     private static final String SAVE_BUTTON_SAVING_TEXT = "Saving To File...";
-    private static final String SAVE_BUTTON_TRAINING_TEXT = "Pause the Training to Save.";
     private static final String SAVE_BUTTON_NULL_NETWORK_TEXT = "You Must Train a Network First.";
     private static final String SAVE_BUTTON_EXISTS_TEXT = "WARNING: File Exists. Overwrite?";
     private static final String RESET_BUTTON_CONFIRM_TEXT = "Confirm Reset?";
@@ -61,7 +61,8 @@ public class TrainingController {
 
     private Trainer trainer;
     private NeuralNetwork neuralNetwork;
-    private CopyOnWriteArrayList<DataPoint> dataPoints;
+    private Dataset dataset;
+    private Dataset userDataset;
     private volatile boolean training = false;
 
 
@@ -69,11 +70,10 @@ public class TrainingController {
     @FXML
     private void initialize() throws IOException {
         // Initialize training data
-        dataPoints = new CopyOnWriteArrayList<>();
-        dataPoints.addAll(MnistDataReader.readData(
+        dataset = MnistDataReader.readDataset(
                 getClass().getResourceAsStream("/data/train-images.idx3-ubyte"),
                 getClass().getResourceAsStream("/data/train-labels.idx1-ubyte")
-        ));
+        );
 
         // Create series for the lines and add to chart
         setupLineChart();
@@ -82,7 +82,7 @@ public class TrainingController {
     private void train() {
         Platform.runLater(() -> startButton.setText(START_BUTTON_RUNNING_TEXT));
         training = true;
-        neuralNetwork = trainer.start(dataPoints, 0, 0, 0);
+        neuralNetwork = trainer.start(userDataset == null ? dataset : Dataset.concat(dataset, userDataset), 0, 0, 0);
 
         training = false;
         Platform.runLater(() -> startButton.setText(START_BUTTON_TEXT));
@@ -124,21 +124,34 @@ public class TrainingController {
     @FXML
     public void resetNetwork() {
         if (resetButton.getText().equals(RESET_BUTTON_CONFIRM_TEXT)) {
+            // The chart is set up first, so that the new trainer plots onto the new series
+            lineChart.getData().clear();
+            setupLineChart();
+
             if (trainer != null) {
-                trainer.stop();
                 int[] layersParsed = Arrays.stream(("784, " + hiddenLayers.getText() + ", 10").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
-                trainer = new Trainer(new NeuralNetwork(layersParsed), cost, accuracy, certainty);
+                trainer = createTrainer(new NeuralNetwork(layersParsed));
             }
 
-            lineChart.getData().clear();
-            setupLineChart();
-
             resetButton.setText(RESET_BUTTON_TEXT);
         } else {
             resetButton.setText(RESET_BUTTON_CONFIRM_TEXT);
         }
     }
 
+    /**
+     * Creates a trainer for a network, closing the trainer it replaces so that its threads don't pile up
+     */
+    private Trainer createTrainer(NeuralNetwork neuralNetwork) {
+        if (trainer != null) {
+            trainer.close();
+        }
+
+        Trainer trainer = new Trainer(neuralNetwork);
+        trainer.addListener(new TrainingChart(cost, accuracy, certainty));
+        return trainer;
+    }
+
     private void setupLineChart() {
         cost = new LineChart.Series<>();
         cost.setName("Cost");
@@ -157,19 +170,10 @@ public class TrainingController {
 
     @FXML
     public void saveToFile() {
-        if (training) {
-            saveButton.setText(SAVE_BUTTON_TRAINING_TEXT);
-
-            new Thread(() -> {
-                while (training) {
-                    Thread.onSpinWait();
-                }
-
-                Platform.runLater(() -> saveButton.setText(SAVE_BUTTON_TEXT));
-            }).start();
-        }
+        // While training, the best network so far is saved without pausing the training
+        NeuralNetwork toSave = training ? trainer.snapshotBest() : neuralNetwork;
 
-        if (neuralNetwork == null) {
+        if (toSave == null) {
             saveButton.setText(SAVE_BUTTON_NULL_NETWORK_TEXT);
             return;
         }
@@ -178,24 +182,17 @@ public class TrainingController {
         File trained = new File(fileName.getText() + ".nnet");
 
         try {
-            if (saveButton.getText().equals(SAVE_BUTTON_TEXT) && !trained.createNewFile()) {
+            if (saveButton.getText().equals(SAVE_BUTTON_TEXT) && trained.exists()) {
                 saveButton.setText(SAVE_BUTTON_EXISTS_TEXT);
                 logger.warn("Save file exists.");
                 return;
             }
 
-            if (trained.delete() && trained.createNewFile()) {
-                logger.info("Successfully deleted and recreated save file.");
-            }
-
             saveButton.setText(SAVE_BUTTON_SAVING_TEXT);
 
-            BufferedWriter writer = new BufferedWriter(new FileWriter(trained));
-
             logger.info("Writing neural network to file... ");
-            writer.write(neuralNetwork.toString());
+            Checkpointer.write(toSave, trained, Checkpointer.Format.BINARY);
             logger.info("Done!");
-            writer.close();
             saveButton.setText(SAVE_BUTTON_TEXT);
         } catch (IOException e) {
             e.printStackTrace();
@@ -207,7 +204,7 @@ public class TrainingController {
         try {
             int[] layersParsed = Arrays.stream(("784, " + hiddenLayers.getText() + ", 10").split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
 
-            trainer = new Trainer(new NeuralNetwork(layersParsed), cost, accuracy, certainty);
+            trainer = createTrainer(new NeuralNetwork(layersParsed));
 
             if (startButton.getText().equals(START_BUTTON_UNINITIALIZED_TEXT)) {
                 startButton.setText(START_BUTTON_TEXT);
@@ -231,30 +228,29 @@ public class TrainingController {
 
     @FXML
     public void loadNetwork(ActionEvent event) {
-        File file = MnistDataReader.chooseFile(event);
+        File file = NetworkFileChooser.chooseFile(event);
 
         if (file == null) return; // No file has been selected.
 
         fileName.setText(file.getName().replace(".nnet", ""));
-        trainer = new Trainer(NeuralNetwork.fromFile(file), cost, accuracy, certainty);
+        trainer = createTrainer(NeuralNetwork.fromFile(file));
     }
 
 
     public void toggleUseUserData(ActionEvent actionEvent) throws IOException {
-        List<DataPoint> dataPointListTemp = new ArrayList<>();
-        if (new File("user-images.idx3-ubyte").exists() && new File("user-labels.idx1-ubyte").exists()) {
-            dataPointListTemp.addAll(MnistDataReader.readData(
-                    new FileInputStream("user-images.idx3-ubyte"),
-                    new FileInputStream("user-labels.idx1-ubyte")
-            ));
-        }
-
+        // The datasets are immutable, so the change is picked up the next time training starts
         if (((CheckBox)actionEvent.getTarget()).isSelected()) {
-            dataPoints.addAll(dataPointListTemp);
-            System.out.println("Added " + dataPointListTemp.size() + " Data Points.");
-        } else {
-            dataPoints.removeAll(dataPointListTemp);
-            System.out.println("Removed " + dataPointListTemp.size() + " Data Points.");
+            if (new File("user-images.idx3-ubyte").exists() && new File("user-labels.idx1-ubyte").exists()) {
+                new UserData("user").repairLabelFile();
+                userDataset = MnistDataReader.readDataset(
+                        new File("user-images.idx3-ubyte"),
+                        new File("user-labels.idx1-ubyte")
+                );
+                System.out.println("Added " + userDataset.size() + " Data Points.");
+            }
+        } else if (userDataset != null) {
+            System.out.println("Removed " + userDataset.size() + " Data Points.");
+            userDataset = null;
         }
     }
 }
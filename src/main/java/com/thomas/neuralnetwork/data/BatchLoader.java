@@ -0,0 +1,305 @@
+package com.thomas.neuralnetwork.data;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Assembles training batches on a background thread, so the next batches are gathered, normalized and augmented
+ * while the current one is being trained on.
+ * <p>
+ * The loader owns a fixed pool of batch buffers. The background thread fills free buffers in the order given to {@link #start(int[])}
+ * and queues them, and the training thread takes them with {@link #next()} and hands them back with {@link #release(Batch)}.
+ * With a queue depth of 1 this is classic double buffering, larger depths smooth out uneven loading times.
+ * <p>
+ * The loader records how often and for how long {@link #next()} had to wait for a batch, which shows when loading rather than compute is the bottleneck.
+ * <p>
+ * A loader fills its batches in either double or single precision, only allocating the matrices of the precision it loads.
+ */
+public class BatchLoader implements AutoCloseable {
+    /**
+     * Changes the inputs of a sample after they have been normalized, such as by adding noise or shifting an image
+     */
+    public interface Augmentation {
+        /**
+         * @param inputs a batch matrix holding the sample's inputs
+         * @param offset the index of the sample's first input
+         * @param length the number of inputs the sample has
+         */
+        void apply(double[] inputs, int offset, int length);
+    }
+
+    /**
+     * A batch of samples stored as row-major matrices, one row per sample
+     */
+    public static final class Batch {
+        private final double[] inputs;
+        private final double[] outputs;
+        private final float[] floatInputs;
+        private final float[] floatOutputs;
+        private int size;
+
+        private Batch(int capacity, int inputSize, int outputSize, boolean singlePrecision) {
+            inputs = new double[singlePrecision ? 0 : capacity * inputSize];
+            outputs = new double[singlePrecision ? 0 : capacity * outputSize];
+            floatInputs = new float[singlePrecision ? capacity * inputSize : 0];
+            floatOutputs = new float[singlePrecision ? capacity * outputSize : 0];
+        }
+
+        /**
+         * Gets the input matrix, only the first size rows are valid, and it is empty if the loader loads single precision batches
+         */
+        public double[] getInputs() {
+            return inputs;
+        }
+
+        /**
+         * Gets the one-hot output matrix, only the first size rows are valid, and it is empty if the loader loads single precision batches
+         */
+        public double[] getOutputs() {
+            return outputs;
+        }
+
+        /**
+         * The single precision counterpart of {@link #getInputs()}, it is empty unless the loader loads single precision batches
+         */
+        public float[] getFloatInputs() {
+            return floatInputs;
+        }
+
+        /**
+         * The single precision counterpart of {@link #getOutputs()}, it is empty unless the loader loads single precision batches
+         */
+        public float[] getFloatOutputs() {
+            return floatOutputs;
+        }
+
+        /**
+         * Gets the number of samples in the batch
+         */
+        public int getSize() {
+            return size;
+        }
+    }
+
+    // Queued after a failure so that the training thread doesn't wait forever for a batch that will never come
+    private static final Batch FAILED = new Batch(0, 0, 0, false);
+
+    private final Dataset dataset;
+    private final int batchSize;
+    private final boolean singlePrecision;
+    // Augmentations work in double precision, so a single precision sample is augmented here before it is rounded into the batch
+    private final double[] augmentedSample;
+    private final BlockingQueue<Batch> free;
+    private final BlockingQueue<Batch> ready;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "batch-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile Augmentation augmentation;
+    private volatile Throwable failure;
+
+    private final AtomicLong loadNanos = new AtomicLong();
+    private final AtomicLong batchesLoaded = new AtomicLong();
+    private long stalls;
+    private long stallNanos;
+
+    /**
+     * Creates a new loader and its batch buffers, which are loaded in double precision
+     *
+     * @param dataset    the samples to load
+     * @param batchSize  the largest number of samples in a batch
+     * @param queueDepth how many batches may be loaded ahead of the one being trained on, at least 1
+     */
+    public BatchLoader(Dataset dataset, int batchSize, int queueDepth) {
+        this(dataset, batchSize, queueDepth, false);
+    }
+
+    /**
+     * Creates a new loader and its batch buffers
+     *
+     * @param dataset         the samples to load
+     * @param batchSize       the largest number of samples in a batch
+     * @param queueDepth      how many batches may be loaded ahead of the one being trained on, at least 1
+     * @param singlePrecision whether to load the batches into {@link Batch#getFloatInputs()} and {@link Batch#getFloatOutputs()}
+     */
+    public BatchLoader(Dataset dataset, int batchSize, int queueDepth, boolean singlePrecision) {
+        if (queueDepth < 1) {
+            throw new IllegalArgumentException("The queue depth must be at least 1 but was " + queueDepth + ".");
+        }
+
+        this.dataset = dataset;
+        this.batchSize = batchSize;
+        this.singlePrecision = singlePrecision;
+        augmentedSample = new double[singlePrecision ? dataset.getInputSize() : 0];
+
+        int numBuffers = queueDepth + 1;
+        free = new ArrayBlockingQueue<>(numBuffers);
+        ready = new ArrayBlockingQueue<>(numBuffers + 1);
+        for (int i = 0; i < numBuffers; i++) {
+            free.add(new Batch(batchSize, dataset.getInputSize(), dataset.getNumClasses(), singlePrecision));
+        }
+    }
+
+    /**
+     * Sets the augmentation applied to every sample as it is loaded
+     *
+     * @param augmentation the augmentation, or null for none
+     */
+    public void setAugmentation(Augmentation augmentation) {
+        this.augmentation = augmentation;
+    }
+
+    /**
+     * Starts loading an epoch in the background.
+     * Every batch of the previous epoch must have been taken before starting the next one,
+     * and the order must not be changed until the last batch of this epoch has been taken.
+     *
+     * @param order the indices of the samples in the order they should be loaded, split into batches of batchSize
+     */
+    public void start(int[] order) {
+        executor.execute(() -> {
+            try {
+                for (int batchStart = 0; batchStart < order.length; batchStart += batchSize) {
+                    Batch batch = free.take();
+
+                    long start = System.nanoTime();
+                    load(batch, order, batchStart, Math.min(batchStart + batchSize, order.length));
+                    loadNanos.addAndGet(System.nanoTime() - start);
+                    batchesLoaded.incrementAndGet();
+
+                    ready.put(batch);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable t) {
+                failure = t;
+                ready.add(FAILED);
+            }
+        });
+    }
+
+    private void load(Batch batch, int[] order, int batchStart, int batchEnd) {
+        int inputSize = dataset.getInputSize();
+        int outputSize = dataset.getNumClasses();
+        Augmentation augmentation = this.augmentation;
+
+        batch.size = batchEnd - batchStart;
+        if (singlePrecision) {
+            loadSingle(batch, order, batchStart, augmentation);
+            return;
+        }
+
+        for (int i = 0; i < batch.size; i++) {
+            int index = order[batchStart + i];
+            dataset.copyInputs(index, batch.inputs, i * inputSize);
+            dataset.copyOutputs(index, batch.outputs, i * outputSize);
+
+            if (augmentation != null) {
+                augmentation.apply(batch.inputs, i * inputSize, inputSize);
+            }
+        }
+    }
+
+    private void loadSingle(Batch batch, int[] order, int batchStart, Augmentation augmentation) {
+        int inputSize = dataset.getInputSize();
+        int outputSize = dataset.getNumClasses();
+
+        for (int i = 0; i < batch.size; i++) {
+            int index = order[batchStart + i];
+            dataset.copyOutputs(index, batch.floatOutputs, i * outputSize);
+
+            if (augmentation == null) {
+                dataset.copyInputs(index, batch.floatInputs, i * inputSize);
+                continue;
+            }
+
+            dataset.copyInputs(index, augmentedSample, 0);
+            augmentation.apply(augmentedSample, 0, inputSize);
+            for (int j = 0; j < inputSize; j++) {
+                batch.floatInputs[i * inputSize + j] = (float) augmentedSample[j];
+            }
+        }
+    }
+
+    /**
+     * Takes the next loaded batch, waiting for it if the loader has fallen behind.
+     * The batch must be handed back with {@link #release(Batch)} once it is no longer needed.
+     *
+     * @return the next batch of the epoch
+     */
+    public Batch next() throws InterruptedException {
+        Batch batch = ready.poll();
+        if (batch == null) {
+            long start = System.nanoTime();
+            batch = ready.take();
+            stallNanos += System.nanoTime() - start;
+            stalls++;
+        }
+
+        if (batch == FAILED) {
+            throw new IllegalStateException("Loading a batch failed.", failure);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Hands a batch back so that its buffers can be filled again
+     *
+     * @param batch a batch taken with {@link #next()}
+     */
+    public void release(Batch batch) {
+        free.add(batch);
+    }
+
+    /**
+     * Gets the number of times {@link #next()} had to wait because no batch was ready
+     */
+    public long getStalls() {
+        return stalls;
+    }
+
+    /**
+     * Gets the total time {@link #next()} spent waiting for batches, in nanoseconds
+     */
+    public long getStallNanos() {
+        return stallNanos;
+    }
+
+    /**
+     * Gets the number of batches loaded
+     */
+    public long getBatchesLoaded() {
+        return batchesLoaded.get();
+    }
+
+    /**
+     * Gets the total time the background thread spent gathering, normalizing and augmenting batches, in nanoseconds
+     */
+    public long getLoadNanos() {
+        return loadNanos.get();
+    }
+
+    /**
+     * Sets every metric back to zero, must be called from the thread that calls {@link #next()}
+     */
+    public void resetMetrics() {
+        stalls = 0;
+        stallNanos = 0;
+        loadNanos.set(0);
+        batchesLoaded.set(0);
+    }
+
+    /**
+     * Stops the background thread, any batch being loaded is abandoned
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
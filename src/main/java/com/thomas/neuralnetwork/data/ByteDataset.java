@@ -0,0 +1,101 @@
+package com.thomas.neuralnetwork.data;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A dataset of unsigned byte inputs, such as greyscale pixels, stored one byte per input.
+ * Inputs are normalized to [0, 1] by dividing by 255 as they are copied out,
+ * so the 60,000 MNIST training images take 47 MB instead of the ~380 MB needed for them as {@link DataPoint}s.
+ */
+public class ByteDataset implements Dataset {
+    private static final double[] NORMALIZED = new double[256];
+    private static final float[] NORMALIZED_FLOAT = new float[256];
+
+    static {
+        for (int i = 0; i < 256; i++) {
+            NORMALIZED[i] = ((double) i)/255;
+            NORMALIZED_FLOAT[i] = ((float) i)/255;
+        }
+    }
+
+    private final ByteBuffer inputs;
+    private final byte[] labels;
+    private final int inputSize;
+    private final int numClasses;
+
+    /**
+     * Creates a new dataset backed by the given arrays (they are not copied)
+     *
+     * @param inputs     the inputs of every sample one after the other, of length labels.length * inputSize
+     * @param labels     the class of every sample
+     * @param inputSize  the number of inputs each sample has
+     * @param numClasses the number of classes a sample can belong to
+     */
+    public ByteDataset(byte[] inputs, byte[] labels, int inputSize, int numClasses) {
+        this(ByteBuffer.wrap(inputs), labels, inputSize, numClasses);
+    }
+
+    /**
+     * Creates a new dataset backed by the given buffer and array (they are not copied)
+     *
+     * @param inputs     a buffer holding the inputs of every sample one after the other from its position,
+     *                   such as a memory mapped file
+     * @param labels     the class of every sample
+     * @param inputSize  the number of inputs each sample has
+     * @param numClasses the number of classes a sample can belong to
+     */
+    public ByteDataset(ByteBuffer inputs, byte[] labels, int inputSize, int numClasses) {
+        if (inputs.remaining() < (long) labels.length * inputSize) {
+            throw new IllegalArgumentException("Expected " + (long) labels.length * inputSize + " inputs for " + labels.length
+                    + " samples but got " + inputs.remaining() + ".");
+        }
+
+        for (int i = 0; i < labels.length; i++) {
+            if (Byte.toUnsignedInt(labels[i]) >= numClasses) {
+                throw new IllegalArgumentException("Sample " + i + " has label " + Byte.toUnsignedInt(labels[i])
+                        + " but there are only " + numClasses + " classes.");
+            }
+        }
+
+        this.inputs = inputs.slice();
+        this.labels = labels;
+        this.inputSize = inputSize;
+        this.numClasses = numClasses;
+    }
+
+    @Override
+    public int size() {
+        return labels.length;
+    }
+
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    @Override
+    public int getLabel(int index) {
+        return Byte.toUnsignedInt(labels[index]);
+    }
+
+    @Override
+    public void copyInputs(int index, double[] target, int offset) {
+        int start = index * inputSize;
+        for (int i = 0; i < inputSize; i++) {
+            target[offset + i] = NORMALIZED[Byte.toUnsignedInt(inputs.get(start + i))];
+        }
+    }
+
+    @Override
+    public void copyInputs(int index, float[] target, int offset) {
+        int start = index * inputSize;
+        for (int i = 0; i < inputSize; i++) {
+            target[offset + i] = NORMALIZED_FLOAT[Byte.toUnsignedInt(inputs.get(start + i))];
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.thomas.neuralnetwork.data;
+
+/**
+ * A view of several datasets one after the other, created by {@link Dataset#concat(Dataset...)}
+ */
+class ConcatDataset implements Dataset {
+    private final Dataset[] datasets;
+    // The index of the first sample of each dataset, with the total size at the end
+    private final int[] starts;
+
+    ConcatDataset(Dataset[] datasets) {
+        if (datasets.length == 0) {
+            throw new IllegalArgumentException("At least one dataset is required.");
+        }
+
+        this.datasets = datasets.clone();
+        starts = new int[datasets.length + 1];
+        for (int i = 0; i < datasets.length; i++) {
+            if (datasets[i].getInputSize() != datasets[0].getInputSize() || datasets[i].getNumClasses() != datasets[0].getNumClasses()) {
+                throw new IllegalArgumentException("Dataset " + i + " has " + datasets[i].getInputSize() + " inputs and " + datasets[i].getNumClasses()
+                        + " classes but dataset 0 has " + datasets[0].getInputSize() + " and " + datasets[0].getNumClasses() + ".");
+            }
+            starts[i + 1] = Math.addExact(starts[i], datasets[i].size());
+        }
+    }
+
+    private int datasetOf(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+        }
+
+        int dataset = 0;
+        while (index >= starts[dataset + 1]) {
+            dataset++;
+        }
+        return dataset;
+    }
+
+    @Override
+    public int size() {
+        return starts[datasets.length];
+    }
+
+    @Override
+    public int getInputSize() {
+        return datasets[0].getInputSize();
+    }
+
+    @Override
+    public int getNumClasses() {
+        return datasets[0].getNumClasses();
+    }
+
+    @Override
+    public int getLabel(int index) {
+        int dataset = datasetOf(index);
+        return datasets[dataset].getLabel(index - starts[dataset]);
+    }
+
+    @Override
+    public void copyInputs(int index, double[] target, int offset) {
+        int dataset = datasetOf(index);
+        datasets[dataset].copyInputs(index - starts[dataset], target, offset);
+    }
+
+    @Override
+    public void copyInputs(int index, float[] target, int offset) {
+        int dataset = datasetOf(index);
+        datasets[dataset].copyInputs(index - starts[dataset], target, offset);
+    }
+}
@@ -0,0 +1,97 @@
+package com.thomas.neuralnetwork.data;
+
+import java.util.Arrays;
+
+/**
+ * A read-only collection of labelled samples for classification.
+ * Samples are addressed by index and written into buffers owned by the caller,
+ * so an implementation is free to keep its data in whatever compact form it likes and only expand it on the fly.
+ */
+public interface Dataset {
+    /**
+     * Gets the number of samples
+     *
+     * @return the number of samples in this dataset
+     */
+    int size();
+
+    /**
+     * Gets the number of inputs each sample has
+     *
+     * @return the length of a sample's inputs
+     */
+    int getInputSize();
+
+    /**
+     * Gets the number of classes a sample can belong to, which is the length of the one-hot outputs
+     *
+     * @return the number of classes
+     */
+    int getNumClasses();
+
+    /**
+     * Gets the class of a sample
+     *
+     * @param index the index of the sample
+     * @return the label of the sample, in [0, numClasses)
+     */
+    int getLabel(int index);
+
+    /**
+     * Writes the normalized inputs of a sample into [offset, offset + inputSize) of the target
+     *
+     * @param index  the index of the sample
+     * @param target the array to write into, such as a row of a batch matrix
+     * @param offset the index to start writing at
+     */
+    void copyInputs(int index, double[] target, int offset);
+
+    /**
+     * The single precision counterpart of {@link #copyInputs(int, double[], int)}
+     */
+    void copyInputs(int index, float[] target, int offset);
+
+    /**
+     * Writes the one-hot outputs of a sample into [offset, offset + numClasses) of the target
+     *
+     * @param index  the index of the sample
+     * @param target the array to write into, such as a row of a batch matrix
+     * @param offset the index to start writing at
+     */
+    default void copyOutputs(int index, double[] target, int offset) {
+        Arrays.fill(target, offset, offset + getNumClasses(), 0);
+        target[offset + getLabel(index)] = 1;
+    }
+
+    /**
+     * The single precision counterpart of {@link #copyOutputs(int, double[], int)}
+     */
+    default void copyOutputs(int index, float[] target, int offset) {
+        Arrays.fill(target, offset, offset + getNumClasses(), 0);
+        target[offset + getLabel(index)] = 1;
+    }
+
+    /**
+     * Creates a data-point holding a copy of a sample, for code that still works with {@link DataPoint}s
+     *
+     * @param index the index of the sample
+     * @return a new data-point
+     */
+    default DataPoint get(int index) {
+        double[] inputs = new double[getInputSize()];
+        double[] outputs = new double[getNumClasses()];
+        copyInputs(index, inputs, 0);
+        copyOutputs(index, outputs, 0);
+        return new DataPoint(inputs, outputs);
+    }
+
+    /**
+     * Creates a view of several datasets one after the other, without copying any of their samples
+     *
+     * @param datasets the datasets to join, which must all have the same input size and number of classes
+     * @return a dataset containing the samples of every given dataset in order
+     */
+    static Dataset concat(Dataset... datasets) {
+        return datasets.length == 1 ? datasets[0] : new ConcatDataset(datasets);
+    }
+}
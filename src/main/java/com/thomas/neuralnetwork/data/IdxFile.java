@@ -0,0 +1,258 @@
+package com.thomas.neuralnetwork.data;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * A file in the IDX format used by MNIST, read through a memory mapping so that nothing is copied until an item is asked for.
+ * The first dimension counts the items (such as images), and the remaining dimensions make up each item (such as 28x28 pixels).
+ * <p>
+ * The file starts with a magic number whose first two bytes are 0, whose third byte is the type of the data
+ * and whose fourth byte is the number of dimensions, followed by the size of each dimension as a big-endian int.
+ * The data follows in big-endian order.
+ */
+public class IdxFile {
+    public enum Type {
+        UNSIGNED_BYTE(0x08, 1),
+        SIGNED_BYTE(0x09, 1),
+        SHORT(0x0B, 2),
+        INT(0x0C, 4),
+        FLOAT(0x0D, 4),
+        DOUBLE(0x0E, 8);
+
+        private final int code;
+        private final int size;
+
+        Type(int code, int size) {
+            this.code = code;
+            this.size = size;
+        }
+
+        /**
+         * Gets the type byte used in the magic number
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * Gets the number of bytes used by each element
+         */
+        public int getSize() {
+            return size;
+        }
+
+        private static Type fromCode(int code) throws IOException {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IOException("Unknown IDX data type 0x" + Integer.toHexString(code) + ".");
+        }
+    }
+
+    private final ByteBuffer data;
+    private final Type type;
+    private final int[] dimensions;
+    private final int itemSize;
+
+    private IdxFile(ByteBuffer data, Type type, int[] dimensions, int itemSize) {
+        this.data = data;
+        this.type = type;
+        this.dimensions = dimensions;
+        this.itemSize = itemSize;
+    }
+
+    /**
+     * Maps a file into memory and reads its header
+     *
+     * @param file an IDX file
+     * @return the mapped file
+     * @throws IOException if the file can't be read, is larger than 2 GB, or its header doesn't match its contents
+     */
+    public static IdxFile open(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException(file + " is " + channel.size() + " bytes, which is too large to map.");
+            }
+
+            // The mapping stays valid after the channel is closed
+            return wrap(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Reads the header of IDX data held in a buffer, from its position to its limit
+     *
+     * @param buffer a buffer holding an IDX file, it is not copied
+     * @return a view of the data
+     * @throws IOException if the header is invalid or doesn't match the amount of data
+     */
+    public static IdxFile wrap(ByteBuffer buffer) throws IOException {
+        ByteBuffer header = buffer.slice().order(ByteOrder.BIG_ENDIAN);
+        if (header.remaining() < Integer.BYTES) {
+            throw new IOException("IDX data is too short to hold a magic number.");
+        }
+
+        if (header.get() != 0 || header.get() != 0) {
+            throw new IOException("Invalid IDX magic number, the first two bytes must be 0.");
+        }
+        Type type = Type.fromCode(Byte.toUnsignedInt(header.get()));
+        int numDimensions = Byte.toUnsignedInt(header.get());
+        if (numDimensions == 0) {
+            throw new IOException("IDX data must have at least one dimension.");
+        }
+
+        if (header.remaining() < numDimensions * Integer.BYTES) {
+            throw new IOException("IDX data is too short to hold " + numDimensions + " dimensions.");
+        }
+
+        int[] dimensions = new int[numDimensions];
+        long numElements = 1;
+        for (int i = 0; i < numDimensions; i++) {
+            dimensions[i] = header.getInt();
+            if (dimensions[i] < 0) {
+                throw new IOException("Dimension " + i + " has a negative size of " + dimensions[i] + ".");
+            }
+            numElements *= dimensions[i];
+            if (numElements * type.size > Integer.MAX_VALUE) {
+                throw new IOException("IDX data with dimensions " + Arrays.toString(Arrays.copyOf(dimensions, i + 1)) + "... is too large.");
+            }
+        }
+
+        long expected = numElements * type.size;
+        if (header.remaining() != expected) {
+            throw new IOException("Dimensions " + Arrays.toString(dimensions) + " of " + type + " need " + expected
+                    + " bytes of data but there are " + header.remaining() + ".");
+        }
+
+        int itemSize = 1;
+        for (int i = 1; i < numDimensions; i++) {
+            itemSize *= dimensions[i];
+        }
+
+        return new IdxFile(header.slice().order(ByteOrder.BIG_ENDIAN), type, dimensions, itemSize);
+    }
+
+    /**
+     * Gets the type of the elements
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Gets the size of each dimension
+     *
+     * @return a copy of the dimensions, the first of which is the number of items
+     */
+    public int[] getDimensions() {
+        return dimensions.clone();
+    }
+
+    /**
+     * Gets the number of items, which is the size of the first dimension
+     */
+    public int getNumItems() {
+        return dimensions[0];
+    }
+
+    /**
+     * Gets the number of elements in each item, which is the product of every dimension but the first
+     */
+    public int getItemSize() {
+        return itemSize;
+    }
+
+    /**
+     * Gets the data following the header
+     *
+     * @return a read-only big-endian view of the data, positioned at the first element
+     */
+    public ByteBuffer getData() {
+        return data.asReadOnlyBuffer().order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * Gets where an item starts in the data
+     *
+     * @param item the index of the item
+     * @return the offset of the item's first element in bytes from the start of {@link #getData()}
+     */
+    public int offsetOf(int item) {
+        return item * itemSize * type.size;
+    }
+
+    /**
+     * Reads one element of an item
+     *
+     * @param item    the index of the item
+     * @param element the index of the element within the item
+     * @return the value of the element
+     */
+    public double get(int item, int element) {
+        return read(offsetOf(item) + element * type.size);
+    }
+
+    /**
+     * Reads one element of an item of an integer type, such as a label
+     *
+     * @param item    the index of the item
+     * @param element the index of the element within the item
+     * @return the value of the element
+     * @throws UnsupportedOperationException if the elements are floating point
+     */
+    public int getInt(int item, int element) {
+        int position = offsetOf(item) + element * type.size;
+        return switch (type) {
+            case UNSIGNED_BYTE -> Byte.toUnsignedInt(data.get(position));
+            case SIGNED_BYTE -> data.get(position);
+            case SHORT -> data.getShort(position);
+            case INT -> data.getInt(position);
+            case FLOAT, DOUBLE -> throw new UnsupportedOperationException(type + " elements are not integers.");
+        };
+    }
+
+    /**
+     * Copies the elements of an item, without any normalization
+     *
+     * @param item   the index of the item
+     * @param target the array to write into
+     * @param offset the index to start writing at
+     */
+    public void copyItem(int item, double[] target, int offset) {
+        int position = offsetOf(item);
+        for (int i = 0; i < itemSize; i++) {
+            target[offset + i] = read(position);
+            position += type.size;
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #copyItem(int, double[], int)}
+     */
+    public void copyItem(int item, float[] target, int offset) {
+        int position = offsetOf(item);
+        for (int i = 0; i < itemSize; i++) {
+            target[offset + i] = (float) read(position);
+            position += type.size;
+        }
+    }
+
+    private double read(int position) {
+        return switch (type) {
+            case UNSIGNED_BYTE -> Byte.toUnsignedInt(data.get(position));
+            case SIGNED_BYTE -> data.get(position);
+            case SHORT -> data.getShort(position);
+            case INT -> data.getInt(position);
+            case FLOAT -> data.getFloat(position);
+            case DOUBLE -> data.getDouble(position);
+        };
+    }
+}
@@ -1,55 +1,129 @@
 package com.thomas.neuralnetwork.data;
 
-import javafx.event.ActionEvent;
-import javafx.scene.Node;
-import javafx.stage.FileChooser;
+import com.thomas.neuralnetwork.jfr.DatasetLoadEvent;
 
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
 
 public class MnistDataReader {
-    public static File chooseFile(ActionEvent event) {
-        FileChooser fileChooser = new FileChooser();
-        FileChooser.ExtensionFilter extensionFilter = new FileChooser.ExtensionFilter("Neural Network Files (*.nnet)", "*.nnet");
+    /**
+     * Reads the data into a {@link ByteDataset}, keeping one byte per pixel and label instead of expanding every image into doubles
+     */
+    public static Dataset readDataset(InputStream imageData, InputStream labelData) throws IOException {
+        DatasetLoadEvent event = new DatasetLoadEvent();
+        event.begin();
 
-        fileChooser.getExtensionFilters().add(extensionFilter);
-        fileChooser.setInitialDirectory(new File("."));
+        try (DataInputStream imageInputStream = new DataInputStream(new BufferedInputStream(imageData));
+             DataInputStream labelInputStream = new DataInputStream(new BufferedInputStream(labelData))) {
+            checkMagicNumber(imageInputStream.readInt(), 3);
+            int numberOfImages = imageInputStream.readInt();
+            int nRows = imageInputStream.readInt();
+            int nCols = imageInputStream.readInt();
 
-        return fileChooser.showOpenDialog(((Node) event.getSource()).getScene().getWindow());
+            checkMagicNumber(labelInputStream.readInt(), 1);
+            int numberOfLabels = labelInputStream.readInt();
+
+            if (numberOfImages != numberOfLabels) {
+                throw new IOException("Found " + numberOfImages + " images but " + numberOfLabels + " labels.");
+            }
+
+            byte[] pixels = new byte[Math.multiplyExact(numberOfImages, nRows * nCols)];
+            byte[] labels = new byte[numberOfLabels];
+            imageInputStream.readFully(pixels);
+            labelInputStream.readFully(labels);
+
+            event.commit("stream", numberOfImages, nRows * nCols);
+            return new ByteDataset(pixels, labels, nRows * nCols, 10);
+        }
     }
+
+    /**
+     * Maps a pair of IDX files into a {@link ByteDataset} without copying the images.
+     * The images must be unsigned bytes, the labels may be any integer type.
+     */
+    public static Dataset readDataset(File imageFile, File labelFile) throws IOException {
+        DatasetLoadEvent event = new DatasetLoadEvent();
+        event.begin();
+
+        IdxFile images = IdxFile.open(imageFile);
+        IdxFile labels = IdxFile.open(labelFile);
+
+        if (images.getType() != IdxFile.Type.UNSIGNED_BYTE) {
+            throw new IOException(imageFile + " holds " + images.getType() + " elements but images must be " + IdxFile.Type.UNSIGNED_BYTE + ".");
+        }
+        if (labels.getDimensions().length != 1) {
+            throw new IOException(labelFile + " has " + labels.getDimensions().length + " dimensions but labels must have 1.");
+        }
+        if (images.getNumItems() != labels.getNumItems()) {
+            throw new IOException("Found " + images.getNumItems() + " images but " + labels.getNumItems() + " labels.");
+        }
+
+        byte[] labelBytes = new byte[labels.getNumItems()];
+        for (int i = 0; i < labelBytes.length; i++) {
+            int label = labels.getInt(i, 0);
+            if (label < 0 || label >= 10) {
+                throw new IOException("Label " + i + " is " + label + " but must be a digit.");
+            }
+            labelBytes[i] = (byte) label;
+        }
+
+        event.commit(imageFile.getPath(), images.getNumItems(), images.getItemSize());
+        return new ByteDataset(images.getData(), labelBytes, images.getItemSize(), 10);
+    }
+
     public static List<DataPoint> readData(InputStream imageData, InputStream labelData) throws IOException {
+        DatasetLoadEvent event = new DatasetLoadEvent();
+        event.begin();
+
         DataInputStream imageInputStream = new DataInputStream(new BufferedInputStream(imageData));
-        imageInputStream.readInt(); // There is a "magic number" here that we do not need
+        checkMagicNumber(imageInputStream.readInt(), 3);
         int numberOfImages = imageInputStream.readInt();
         int nRows = imageInputStream.readInt();
         int nCols = imageInputStream.readInt();
 
         DataInputStream labelInputStream = new DataInputStream(new BufferedInputStream(labelData));
-        labelInputStream.readInt(); // There is a "magic number" here that we do not need
+        checkMagicNumber(labelInputStream.readInt(), 1);
         int numberOfLabels = labelInputStream.readInt();
 
+        if (numberOfImages != numberOfLabels) {
+            throw new IOException("Found " + numberOfImages + " images but " + numberOfLabels + " labels.");
+        }
+
         List<DataPoint> data = new ArrayList<>(numberOfImages);
 
-        assert numberOfImages == numberOfLabels;
+        byte[] image = new byte[nRows*nCols];
 
         for(int i = 0; i < numberOfImages; i++) {
             int label = labelInputStream.readUnsignedByte();
+            imageInputStream.readFully(image);
 
-            double[] image = new double[nRows*nCols];
+            double[] inputs = new double[image.length];
             double[] labelArray = new double[10];
             labelArray[label] = 1;
 
-            for (int o = 0; o < nRows*nCols; o++) {
-                image[o] = ((double) imageInputStream.readUnsignedByte())/255;
+            for (int o = 0; o < image.length; o++) {
+                inputs[o] = ((double) Byte.toUnsignedInt(image[o]))/255;
             }
 
-            data.add(new DataPoint(image, labelArray));
+            data.add(new DataPoint(inputs, labelArray));
         }
 
         imageInputStream.close();
         labelInputStream.close();
 
+        event.commit("stream", numberOfImages, nRows * nCols);
         return data;
     }
+
+    /**
+     * Checks the magic number of a stream of unsigned bytes (type 0x08) with the given number of dimensions,
+     * {@link IdxFile} should be used for any other type
+     */
+    private static void checkMagicNumber(int magicNumber, int numDimensions) throws IOException {
+        int expected = IdxFile.Type.UNSIGNED_BYTE.getCode() << 8 | numDimensions;
+        if (magicNumber != expected) {
+            throw new IOException("Expected the magic number 0x" + String.format("%08X", expected) + " but found 0x" + String.format("%08X", magicNumber) + ".");
+        }
+    }
 }
@@ -1,6 +1,9 @@
 package com.thomas.neuralnetwork.data;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 public class UserData {
     private final String labelsFile;
@@ -85,7 +88,10 @@ public class UserData {
     }
 
     public void setupLabelFile() {
-        if (new File(labelsFile).exists()) return;
+        if (new File(labelsFile).exists()) {
+            repairLabelFile();
+            return;
+        }
 
         try (FileOutputStream fos = new FileOutputStream(labelsFile);
              BufferedOutputStream bos = new BufferedOutputStream(fos)) {
@@ -105,14 +111,48 @@ public class UserData {
             */
             bos.write(new byte[]{0x00, 0x00, 0x08, 0x01});
 
-            // Write the dimensions
-            bos.write(new byte[]{0x00, 0x00, 0x00, 0x00}); // Number of dimensions
+            // Write the dimensions (0 labels)
+            // Dimension 1 will be updated later
             bos.write(new byte[]{0x00, 0x00, 0x00, 0x00}); // Size in dimension 1 (0)
         } catch (IOException e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Rewrites a label file left by older versions so it can be read as IDX data.
+     * Those wrote an extra zero int after the number of labels, and stored each label as a 4 byte int instead of an unsigned byte.
+     * Files that are already valid, or that match neither layout, are left alone.
+     */
+    public void repairLabelFile() {
+        File file = new File(labelsFile);
+        if (!file.exists()) return;
+
+        try {
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            if (bytes.length < 8) return;
+
+            int count = ByteBuffer.wrap(bytes, 4, 4).getInt();
+            long dataLength = bytes.length - 8;
+            int padding = dataLength == count + 4L || dataLength == 4L * count + 4 ? 4 : 0;
+            int labelSize = count > 0 && dataLength - padding == 4L * count ? 4 : 1;
+            if (padding == 0 && labelSize == 1) return;
+
+            // Keep the header and the low byte of every label, which is the whole label for the digits 0-9
+            byte[] repaired = new byte[8 + count];
+            System.arraycopy(bytes, 0, repaired, 0, 8);
+            for (int i = 0; i < count; i++) {
+                repaired[8 + i] = bytes[8 + padding + (i + 1) * labelSize - 1];
+            }
+
+            File temporary = new File(labelsFile + ".tmp");
+            Files.write(temporary.toPath(), repaired);
+            Files.move(temporary.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private void incrementFirstDimensionInFile(String filename) {
         try (RandomAccessFile file = new RandomAccessFile(filename, "rw")) {
             file.seek(4);
@@ -1,7 +1,7 @@
 package com.thomas.neuralnetwork.drawing;
 
 import com.thomas.neuralnetwork.ai.NeuralNetwork;
-import com.thomas.neuralnetwork.data.MnistDataReader;
+import com.thomas.neuralnetwork.controllers.NetworkFileChooser;
 import com.thomas.neuralnetwork.data.UserData;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -73,7 +73,7 @@ public class DrawingClassifier {
         btnClear.setOnAction(event -> clearCanvas());
 
         btnLoadNetwork = new Button("Load Network");
-        btnLoadNetwork.setOnAction(event -> loadNetwork(MnistDataReader.chooseFile(event)));
+        btnLoadNetwork.setOnAction(event -> loadNetwork(NetworkFileChooser.chooseFile(event)));
 
         userLabel = new TextField();
 
@@ -133,7 +133,7 @@ public class DrawingClassifier {
             return;
         }
 
-        userData.addToLabels(UserData.intToByteArray(label));
+        userData.addToLabels(new byte[]{(byte) label});
         userData.addToImages(UserData.pixelsToByteArray(lastClassified));
     }
 
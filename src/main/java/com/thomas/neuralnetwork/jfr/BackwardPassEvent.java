@@ -0,0 +1,36 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans the backward pass of a batch, from the loss to the gradients of the first layer
+ */
+@Name("com.thomas.neuralnetwork.BackwardPass")
+@Label("Backward Pass")
+@Category({"Neural Network", "Passes"})
+@Description("The backward pass of a batch, from the loss to the gradients of the first layer")
+@StackTrace(false)
+@Enabled(false)
+public final class BackwardPassEvent extends jdk.jfr.Event {
+    @Label("Batch Size")
+    private int batchSize;
+
+    @Label("Layers")
+    private int layers;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int batchSize, int layers) {
+        if (!shouldCommit()) return;
+
+        this.batchSize = batchSize;
+        this.layers = layers;
+        commit();
+    }
+}
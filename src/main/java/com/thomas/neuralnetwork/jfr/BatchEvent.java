@@ -0,0 +1,40 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans one training step, from loading the batch to applying its gradients
+ */
+@Name("com.thomas.neuralnetwork.Batch")
+@Label("Batch")
+@Category({"Neural Network", "Training"})
+@Description("One training step, from loading a batch to applying its gradients")
+@StackTrace(false)
+@Enabled(false)
+public final class BatchEvent extends jdk.jfr.Event {
+    @Label("Epoch")
+    private int epoch;
+
+    @Label("Batch")
+    private int batch;
+
+    @Label("Samples")
+    private int samples;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int epoch, int batch, int samples) {
+        if (!shouldCommit()) return;
+
+        this.epoch = epoch;
+        this.batch = batch;
+        this.samples = samples;
+        commit();
+    }
+}
@@ -0,0 +1,43 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Spans reading a dataset of images and labels
+ */
+@Name("com.thomas.neuralnetwork.DatasetLoad")
+@Label("Dataset Load")
+@Category({"Neural Network", "I/O"})
+@Description("Reading a dataset of images and labels")
+public final class DatasetLoadEvent extends jdk.jfr.Event {
+    @Label("Source")
+    @Description("The image file, or stream if the data came from a stream")
+    private String source;
+
+    @Label("Samples")
+    private int samples;
+
+    @Label("Input Size")
+    private int inputSize;
+
+    @Label("Image Data")
+    @DataAmount
+    private long bytes;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(String source, int samples, int inputSize) {
+        if (!shouldCommit()) return;
+
+        this.source = source;
+        this.samples = samples;
+        this.inputSize = inputSize;
+        this.bytes = (long) samples * inputSize;
+        commit();
+    }
+}
@@ -0,0 +1,53 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Percentage;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans the training of one epoch, including the validation pass if there is one
+ */
+@Name("com.thomas.neuralnetwork.Epoch")
+@Label("Epoch")
+@Category({"Neural Network", "Training"})
+@Description("The training of one epoch")
+@StackTrace(false)
+public final class EpochEvent extends jdk.jfr.Event {
+    @Label("Epoch")
+    private int epoch;
+
+    @Label("Samples")
+    private int samples;
+
+    @Label("Batches")
+    private int batches;
+
+    @Label("Update Mode")
+    private String updateMode;
+
+    @Label("Cost")
+    private double cost;
+
+    @Label("Accuracy")
+    @Description("The fraction of samples classified correctly")
+    @Percentage
+    private double accuracy;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int epoch, int samples, int batches, String updateMode, double cost, double accuracy) {
+        if (!shouldCommit()) return;
+
+        this.epoch = epoch;
+        this.samples = samples;
+        this.batches = batches;
+        this.updateMode = updateMode;
+        this.cost = cost;
+        this.accuracy = accuracy;
+        commit();
+    }
+}
@@ -0,0 +1,36 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a batched forward pass, whether for training or for predictions
+ */
+@Name("com.thomas.neuralnetwork.ForwardPass")
+@Label("Forward Pass")
+@Category({"Neural Network", "Passes"})
+@Description("A batched forward pass through every layer")
+@StackTrace(false)
+@Enabled(false)
+public final class ForwardPassEvent extends jdk.jfr.Event {
+    @Label("Batch Size")
+    private int batchSize;
+
+    @Label("Layers")
+    private int layers;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int batchSize, int layers) {
+        if (!shouldCommit()) return;
+
+        this.batchSize = batchSize;
+        this.layers = layers;
+        commit();
+    }
+}
@@ -0,0 +1,37 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans combining the work of the worker threads, summing their gradients in synchronous mode or averaging their replicas in local SGD mode
+ */
+@Name("com.thomas.neuralnetwork.GradientReduction")
+@Label("Gradient Reduction")
+@Category({"Neural Network", "Training"})
+@Description("Combining the gradients or replicas of the worker threads. In synchronous mode this includes the weight update")
+@StackTrace(false)
+@Enabled(false)
+public final class GradientReductionEvent extends jdk.jfr.Event {
+    @Label("Contributors")
+    @Description("The number of gradient accumulators or replicas combined")
+    private int contributors;
+
+    @Label("Parameters")
+    private int parameters;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int contributors, int parameters) {
+        if (!shouldCommit()) return;
+
+        this.contributors = contributors;
+        this.parameters = parameters;
+        commit();
+    }
+}
@@ -0,0 +1,43 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Spans reading a network from a .nnet file
+ */
+@Name("com.thomas.neuralnetwork.ModelLoad")
+@Label("Model Load")
+@Category({"Neural Network", "I/O"})
+@Description("Reading a network from a .nnet file")
+public final class ModelLoadEvent extends jdk.jfr.Event {
+    @Label("Path")
+    private String path;
+
+    @Label("Layers")
+    private int layers;
+
+    @Label("Precision")
+    @Description("The number of bytes per weight in the file")
+    private int precision;
+
+    @Label("File Size")
+    @DataAmount
+    private long bytes;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(String path, int layers, int precision, long bytes) {
+        if (!shouldCommit()) return;
+
+        this.path = path;
+        this.layers = layers;
+        this.precision = precision;
+        this.bytes = bytes;
+        commit();
+    }
+}
@@ -0,0 +1,36 @@
+package com.thomas.neuralnetwork.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Spans a worker moving a network's parameters against its own gradients, in Hogwild and local SGD modes
+ */
+@Name("com.thomas.neuralnetwork.WeightUpdate")
+@Label("Weight Update")
+@Category({"Neural Network", "Training"})
+@Description("A worker applying its gradients to the shared network or its replica")
+@StackTrace(false)
+@Enabled(false)
+public final class WeightUpdateEvent extends jdk.jfr.Event {
+    @Label("Parameters")
+    private int parameters;
+
+    @Label("Learning Rate")
+    private double learningRate;
+
+    /**
+     * Ends the event and commits it with its values, if it is enabled
+     */
+    public void commit(int parameters, double learningRate) {
+        if (!shouldCommit()) return;
+
+        this.parameters = parameters;
+        this.learningRate = learningRate;
+        commit();
+    }
+}
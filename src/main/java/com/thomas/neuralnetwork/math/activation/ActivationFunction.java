@@ -1,7 +1,71 @@
 package com.thomas.neuralnetwork.math.activation;
 
 public interface ActivationFunction {
-    double[] apply(double[] array);
+    /**
+     * Applies the activation function to the elements [offset, offset + length) of the array,
+     * writing the result into the same positions of the result array.
+     * The result may be the same array as the input to apply the function in place.
+     *
+     * @param array  the array to read from
+     * @param result the array to write into
+     * @param offset the index of the first element
+     * @param length the number of elements, functions such as softmax treat this range as a single vector
+     */
+    void apply(double[] array, double[] result, int offset, int length);
 
-    double[] derive(double[] array);
+    /**
+     * Writes the derivative of the activation function for the elements [offset, offset + length) of the array
+     * into the same positions of the result array.
+     * The result may be the same array as the input to derive in place.
+     *
+     * @param array  the array to read from
+     * @param result the array to write into
+     * @param offset the index of the first element
+     * @param length the number of elements
+     */
+    void derive(double[] array, double[] result, int offset, int length);
+
+    /**
+     * The single precision counterpart of {@link #apply(double[], double[], int, int)}
+     */
+    void apply(float[] array, float[] result, int offset, int length);
+
+    /**
+     * The single precision counterpart of {@link #derive(double[], double[], int, int)}
+     */
+    void derive(float[] array, float[] result, int offset, int length);
+
+    default double[] apply(double[] array) {
+        double[] result = new double[array.length];
+        apply(array, result, 0, array.length);
+        return result;
+    }
+
+    default void apply(double[] array, double[] result) {
+        apply(array, result, 0, array.length);
+    }
+
+    default void applyInPlace(double[] array) {
+        apply(array, array, 0, array.length);
+    }
+
+    default double[] derive(double[] array) {
+        double[] result = new double[array.length];
+        derive(array, result, 0, array.length);
+        return result;
+    }
+
+    default void derive(double[] array, double[] result) {
+        derive(array, result, 0, array.length);
+    }
+
+    default void deriveInPlace(double[] array) {
+        derive(array, array, 0, array.length);
+    }
+
+    default float[] apply(float[] array) {
+        float[] result = new float[array.length];
+        apply(array, result, 0, array.length);
+        return result;
+    }
 }
@@ -1,21 +1,25 @@
 package com.thomas.neuralnetwork.math.activation;
 
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+
 public class LeakyReLUActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
-            result[i] = (array[i] > 0) ? array[i] : array[i] * 0.01;
-        }
-        return result;
+    public void apply(double[] array, double[] result, int offset, int length) {
+        Kernels.leakyRelu(0.01, array, result, offset, length);
+    }
+
+    @Override
+    public void derive(double[] array, double[] result, int offset, int length) {
+        Kernels.leakyReluDerivative(0.01, array, result, offset, length);
+    }
+
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        Kernels.leakyRelu(0.01f, array, result, offset, length);
     }
 
     @Override
-    public double[] derive(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
-            result[i] = (array[i] > 0) ? 1 : 0.01;
-        }
-        return result;
+    public void derive(float[] array, float[] result, int offset, int length) {
+        Kernels.leakyReluDerivative(0.01f, array, result, offset, length);
     }
 }
@@ -4,14 +4,26 @@ import java.util.Arrays;
 
 public class LinearActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        return Arrays.copyOf(array, array.length);
+    public void apply(double[] array, double[] result, int offset, int length) {
+        if (array != result) {
+            System.arraycopy(array, offset, result, offset, length);
+        }
     }
 
     @Override
-    public double[] derive(double[] array) {
-        double[] result = new double[array.length];
-        Arrays.fill(result, 1);
-        return result;
+    public void derive(double[] array, double[] result, int offset, int length) {
+        Arrays.fill(result, offset, offset + length, 1);
+    }
+
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        if (array != result) {
+            System.arraycopy(array, offset, result, offset, length);
+        }
+    }
+
+    @Override
+    public void derive(float[] array, float[] result, int offset, int length) {
+        Arrays.fill(result, offset, offset + length, 1);
     }
 }
@@ -2,20 +2,30 @@ package com.thomas.neuralnetwork.math.activation;
 
 public class ReLUActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void apply(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             result[i] = (array[i] > 0) ? array[i] : 0;
         }
-        return result;
     }
 
     @Override
-    public double[] derive(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void derive(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (array[i] > 0) ? 1 : 0;
+        }
+    }
+
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (array[i] > 0) ? array[i] : 0;
+        }
+    }
+
+    @Override
+    public void derive(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             result[i] = (array[i] > 0) ? 1 : 0;
         }
-        return result;
     }
 }
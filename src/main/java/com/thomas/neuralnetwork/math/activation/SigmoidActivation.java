@@ -2,21 +2,32 @@ package com.thomas.neuralnetwork.math.activation;
 
 public class SigmoidActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void apply(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             result[i] = 1 / (1 + Math.exp(-array[i]));
         }
-        return result;
     }
 
     @Override
-    public double[] derive(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void derive(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             double sigmoid = 1 / (1 + Math.exp(-array[i]));
             result[i] = sigmoid * (1 - sigmoid);
         }
-        return result;
+    }
+
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (float) (1 / (1 + Math.exp(-array[i])));
+        }
+    }
+
+    @Override
+    public void derive(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float sigmoid = (float) (1 / (1 + Math.exp(-array[i])));
+            result[i] = sigmoid * (1 - sigmoid);
+        }
     }
 }
@@ -1,40 +1,92 @@
 package com.thomas.neuralnetwork.math.activation;
 
-import java.util.Arrays;
-
 public class SoftmaxActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        double[] result = new double[array.length];
+    public void apply(double[] array, double[] result, int offset, int length) {
+        // Subtracting the largest element doesn't change the result, but keeps Math.exp from overflowing on large inputs
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; i++) {
+            max = Math.max(max, array[i]);
+        }
+
         double eSum = 0;
 
-        for (int i = 0; i < array.length; i++) {
-            result[i] = Math.exp(array[i]);
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = Math.exp(array[i] - max);
             eSum += result[i];
         }
 
-        for (int i = 0; i < array.length; i++) {
+        for (int i = offset; i < offset + length; i++) {
             result[i] /= eSum;
         }
+    }
 
-        return result;
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; i++) {
+            max = Math.max(max, array[i]);
+        }
+
+        float eSum = 0;
+
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (float) Math.exp(array[i] - max);
+            eSum += result[i];
+        }
+
+        for (int i = offset; i < offset + length; i++) {
+            result[i] /= eSum;
+        }
+    }
+
+    @Override
+    public void derive(float[] array, float[] result, int offset, int length) {
+        throw new UnsupportedOperationException("The softmax derivative is a Jacobian and cannot be derived element-wise.");
+    }
+
+    /**
+     * The derivative of softmax is a length × length Jacobian rather than one value per element,
+     * so it cannot be written back into the same positions of the result.
+     * Use {@link #derive(double[], double[])} with a result of length² instead.
+     */
+    @Override
+    public void derive(double[] array, double[] result, int offset, int length) {
+        throw new UnsupportedOperationException("The softmax derivative is a Jacobian and cannot be derived element-wise.");
     }
 
     @Override
     public double[] derive(double[] array) {
-        double[][] result = new double[array.length][array.length];
-        double[] softmaxArray = apply(array);
-
-        for (int i = 0; i < array.length; ++i) {
-            for (int j = 0; j < array.length; ++j) {
-                if (i == j) {
-                    result[i][j] = softmaxArray[i] * (1 - softmaxArray[j]);
-                } else {
-                    result[i][j] = softmaxArray[i] * -softmaxArray[j];
-                }
+        double[] result = new double[array.length * array.length];
+        derive(array, result);
+        return result;
+    }
+
+    /**
+     * Writes the flattened, row-major Jacobian of softmax into the result
+     *
+     * @param array  the array to derive
+     * @param result an array of length array.length², must not be the input array
+     */
+    @Override
+    public void derive(double[] array, double[] result) {
+        int n = array.length;
+
+        // The softmax of the input is written into the last row, which is only overwritten after every other row is complete
+        int last = n * (n - 1);
+        apply(array, result, 0, n);
+        System.arraycopy(result, 0, result, last, n);
+
+        for (int i = 0; i < n; ++i) {
+            double softmaxI = result[last + i];
+            for (int j = 0; j < n; ++j) {
+                result[i * n + j] = i == j ? softmaxI * (1 - result[last + j]) : softmaxI * -result[last + j];
             }
         }
+    }
 
-        return Arrays.stream(result).flatMapToDouble(Arrays::stream).toArray();
+    @Override
+    public void deriveInPlace(double[] array) {
+        throw new UnsupportedOperationException("The softmax derivative is a Jacobian and cannot be derived in place.");
     }
 }
@@ -2,21 +2,32 @@ package com.thomas.neuralnetwork.math.activation;
 
 public class TanhActivation implements ActivationFunction {
     @Override
-    public double[] apply(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void apply(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             result[i] = Math.tanh(array[i]);
         }
-        return result;
     }
 
     @Override
-    public double[] derive(double[] array) {
-        double[] result = new double[array.length];
-        for (int i = 0; i < array.length; i++) {
+    public void derive(double[] array, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
             double tanh = Math.tanh(array[i]);
-            result[i] = 1 - Math.pow(tanh, 2);
+            result[i] = 1 - tanh * tanh;
+        }
+    }
+
+    @Override
+    public void apply(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (float) Math.tanh(array[i]);
+        }
+    }
+
+    @Override
+    public void derive(float[] array, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            float tanh = (float) Math.tanh(array[i]);
+            result[i] = 1 - tanh * tanh;
         }
-        return result;
     }
 }
@@ -0,0 +1,188 @@
+package com.thomas.neuralnetwork.math.kernel;
+
+import org.slf4j.LoggerFactory;
+
+/**
+ * The vector operations the forward and backward passes are built from.
+ * When the jdk.incubator.vector module is available (run with --add-modules jdk.incubator.vector) the operations use explicit SIMD
+ * via {@link SimdKernels}, otherwise they fall back to the plain loops in {@link ScalarKernels}.
+ * Set the system property neuralnetwork.simd to false to force the scalar kernels.
+ */
+public final class Kernels {
+    private static final boolean SIMD = isSimdAvailable();
+
+    private Kernels() { }
+
+    private static boolean isSimdAvailable() {
+        if (!Boolean.parseBoolean(System.getProperty("neuralnetwork.simd", "true"))) {
+            return false;
+        }
+
+        boolean available = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+        LoggerFactory.getLogger(Kernels.class).info(available
+                ? "Using SIMD kernels."
+                : "The jdk.incubator.vector module is not enabled, using scalar kernels.");
+        return available;
+    }
+
+    /**
+     * Checks whether the SIMD kernels are in use
+     *
+     * @return true if the Vector API is used, false if the scalar fallback is
+     */
+    public static boolean isSimd() {
+        return SIMD;
+    }
+
+    /**
+     * Calculates ∑(a[i] * b[i]) over length elements
+     */
+    public static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        return SIMD ? SimdKernels.dot(a, aOffset, b, bOffset, length) : ScalarKernels.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * Calculates the dot product of a with four vectors at once, adding each to the matching result.
+     * Every element of a is loaded once and used four times.
+     */
+    public static void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length,
+                            double[] result, int r0, int r1, int r2, int r3) {
+        if (SIMD) {
+            SimdKernels.dot4(a, aOffset, b, b0, b1, b2, b3, length, result, r0, r1, r2, r3);
+        } else {
+            ScalarKernels.dot4(a, aOffset, b, b0, b1, b2, b3, length, result, r0, r1, r2, r3);
+        }
+    }
+
+    /**
+     * Calculates y += alpha * x over length elements
+     */
+    public static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        if (SIMD) {
+            SimdKernels.axpy(alpha, x, xOffset, y, yOffset, length);
+        } else {
+            ScalarKernels.axpy(alpha, x, xOffset, y, yOffset, length);
+        }
+    }
+
+    /**
+     * Calculates y += a0 * x[x0..] + a1 * x[x1..] + a2 * x[x2..] + a3 * x[x3..] over length elements.
+     * Every element of y is loaded and stored once instead of four times.
+     */
+    public static void axpy4(double a0, double a1, double a2, double a3, double[] x, int x0, int x1, int x2, int x3,
+                             double[] y, int yOffset, int length) {
+        if (SIMD) {
+            SimdKernels.axpy4(a0, a1, a2, a3, x, x0, x1, x2, x3, y, yOffset, length);
+        } else {
+            ScalarKernels.axpy4(a0, a1, a2, a3, x, x0, x1, x2, x3, y, yOffset, length);
+        }
+    }
+
+    /**
+     * Calculates x *= alpha over length elements
+     */
+    public static void scale(double alpha, double[] x, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.scale(alpha, x, offset, length);
+        } else {
+            ScalarKernels.scale(alpha, x, offset, length);
+        }
+    }
+
+    /**
+     * Calculates result = x > 0 ? x : x * slope over length elements
+     */
+    public static void leakyRelu(double slope, double[] x, double[] result, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.leakyRelu(slope, x, result, offset, length);
+        } else {
+            ScalarKernels.leakyRelu(slope, x, result, offset, length);
+        }
+    }
+
+    /**
+     * Calculates result = x > 0 ? 1 : slope over length elements
+     */
+    public static void leakyReluDerivative(double slope, double[] x, double[] result, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.leakyReluDerivative(slope, x, result, offset, length);
+        } else {
+            ScalarKernels.leakyReluDerivative(slope, x, result, offset, length);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #dot(double[], int, double[], int, int)}
+     */
+    public static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        return SIMD ? SimdKernels.dot(a, aOffset, b, bOffset, length) : ScalarKernels.dot(a, aOffset, b, bOffset, length);
+    }
+
+    /**
+     * The single precision counterpart of {@link #dot4(double[], int, double[], int, int, int, int, int, double[], int, int, int, int)}
+     */
+    public static void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length,
+                            float[] result, int r0, int r1, int r2, int r3) {
+        if (SIMD) {
+            SimdKernels.dot4(a, aOffset, b, b0, b1, b2, b3, length, result, r0, r1, r2, r3);
+        } else {
+            ScalarKernels.dot4(a, aOffset, b, b0, b1, b2, b3, length, result, r0, r1, r2, r3);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #axpy(double, double[], int, double[], int, int)}
+     */
+    public static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        if (SIMD) {
+            SimdKernels.axpy(alpha, x, xOffset, y, yOffset, length);
+        } else {
+            ScalarKernels.axpy(alpha, x, xOffset, y, yOffset, length);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #axpy4(double, double, double, double, double[], int, int, int, int, double[], int, int)}
+     */
+    public static void axpy4(float a0, float a1, float a2, float a3, float[] x, int x0, int x1, int x2, int x3,
+                             float[] y, int yOffset, int length) {
+        if (SIMD) {
+            SimdKernels.axpy4(a0, a1, a2, a3, x, x0, x1, x2, x3, y, yOffset, length);
+        } else {
+            ScalarKernels.axpy4(a0, a1, a2, a3, x, x0, x1, x2, x3, y, yOffset, length);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #scale(double, double[], int, int)}
+     */
+    public static void scale(float alpha, float[] x, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.scale(alpha, x, offset, length);
+        } else {
+            ScalarKernels.scale(alpha, x, offset, length);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #leakyRelu(double, double[], double[], int, int)}
+     */
+    public static void leakyRelu(float slope, float[] x, float[] result, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.leakyRelu(slope, x, result, offset, length);
+        } else {
+            ScalarKernels.leakyRelu(slope, x, result, offset, length);
+        }
+    }
+
+    /**
+     * The single precision counterpart of {@link #leakyReluDerivative(double, double[], double[], int, int)}
+     */
+    public static void leakyReluDerivative(float slope, float[] x, float[] result, int offset, int length) {
+        if (SIMD) {
+            SimdKernels.leakyReluDerivative(slope, x, result, offset, length);
+        } else {
+            ScalarKernels.leakyReluDerivative(slope, x, result, offset, length);
+        }
+    }
+}
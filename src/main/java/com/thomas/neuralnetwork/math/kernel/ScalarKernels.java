@@ -0,0 +1,124 @@
+package com.thomas.neuralnetwork.math.kernel;
+
+/**
+ * Plain loop implementations of {@link Kernels}, used when the Vector API is not available
+ */
+final class ScalarKernels {
+    private ScalarKernels() { }
+
+    static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        double sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length,
+                     double[] result, int r0, int r1, int r2, int r3) {
+        double sum0 = 0;
+        double sum1 = 0;
+        double sum2 = 0;
+        double sum3 = 0;
+        for (int i = 0; i < length; i++) {
+            double value = a[aOffset + i];
+            sum0 += value * b[b0 + i];
+            sum1 += value * b[b1 + i];
+            sum2 += value * b[b2 + i];
+            sum3 += value * b[b3 + i];
+        }
+        result[r0] += sum0;
+        result[r1] += sum1;
+        result[r2] += sum2;
+        result[r3] += sum3;
+    }
+
+    static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    static void axpy4(double a0, double a1, double a2, double a3, double[] x, int x0, int x1, int x2, int x3,
+                      double[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a0 * x[x0 + i] + a1 * x[x1 + i] + a2 * x[x2 + i] + a3 * x[x3 + i];
+        }
+    }
+
+    static void scale(double alpha, double[] x, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            x[i] *= alpha;
+        }
+    }
+
+    static void leakyRelu(double slope, double[] x, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (x[i] > 0) ? x[i] : x[i] * slope;
+        }
+    }
+
+    static void leakyReluDerivative(double slope, double[] x, double[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (x[i] > 0) ? 1 : slope;
+        }
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        float sum = 0;
+        for (int i = 0; i < length; i++) {
+            sum += a[aOffset + i] * b[bOffset + i];
+        }
+        return sum;
+    }
+
+    static void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length,
+                     float[] result, int r0, int r1, int r2, int r3) {
+        float sum0 = 0;
+        float sum1 = 0;
+        float sum2 = 0;
+        float sum3 = 0;
+        for (int i = 0; i < length; i++) {
+            float value = a[aOffset + i];
+            sum0 += value * b[b0 + i];
+            sum1 += value * b[b1 + i];
+            sum2 += value * b[b2 + i];
+            sum3 += value * b[b3 + i];
+        }
+        result[r0] += sum0;
+        result[r1] += sum1;
+        result[r2] += sum2;
+        result[r3] += sum3;
+    }
+
+    static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    static void axpy4(float a0, float a1, float a2, float a3, float[] x, int x0, int x1, int x2, int x3,
+                      float[] y, int yOffset, int length) {
+        for (int i = 0; i < length; i++) {
+            y[yOffset + i] += a0 * x[x0 + i] + a1 * x[x1 + i] + a2 * x[x2 + i] + a3 * x[x3 + i];
+        }
+    }
+
+    static void scale(float alpha, float[] x, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            x[i] *= alpha;
+        }
+    }
+
+    static void leakyRelu(float slope, float[] x, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (x[i] > 0) ? x[i] : x[i] * slope;
+        }
+    }
+
+    static void leakyReluDerivative(float slope, float[] x, float[] result, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            result[i] = (x[i] > 0) ? 1 : slope;
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.thomas.neuralnetwork.math.kernel;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Vector API implementations of {@link Kernels}.
+ * Each loop runs over the widest vector shape the CPU supports and finishes the remaining elements with a scalar tail.
+ * This class is only loaded once {@link Kernels} has checked the jdk.incubator.vector module is present.
+ */
+final class SimdKernels {
+    private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+    private SimdKernels() { }
+
+    static double dot(double[] a, int aOffset, double[] b, int bOffset, int length) {
+        DoubleVector sum = DoubleVector.zero(DOUBLES);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector va = DoubleVector.fromArray(DOUBLES, a, aOffset + i);
+            sum = va.fma(DoubleVector.fromArray(DOUBLES, b, bOffset + i), sum);
+        }
+
+        double result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    static void dot4(double[] a, int aOffset, double[] b, int b0, int b1, int b2, int b3, int length,
+                     double[] result, int r0, int r1, int r2, int r3) {
+        DoubleVector sum0 = DoubleVector.zero(DOUBLES);
+        DoubleVector sum1 = sum0;
+        DoubleVector sum2 = sum0;
+        DoubleVector sum3 = sum0;
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector va = DoubleVector.fromArray(DOUBLES, a, aOffset + i);
+            sum0 = va.fma(DoubleVector.fromArray(DOUBLES, b, b0 + i), sum0);
+            sum1 = va.fma(DoubleVector.fromArray(DOUBLES, b, b1 + i), sum1);
+            sum2 = va.fma(DoubleVector.fromArray(DOUBLES, b, b2 + i), sum2);
+            sum3 = va.fma(DoubleVector.fromArray(DOUBLES, b, b3 + i), sum3);
+        }
+
+        double total0 = sum0.reduceLanes(VectorOperators.ADD);
+        double total1 = sum1.reduceLanes(VectorOperators.ADD);
+        double total2 = sum2.reduceLanes(VectorOperators.ADD);
+        double total3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            double value = a[aOffset + i];
+            total0 += value * b[b0 + i];
+            total1 += value * b[b1 + i];
+            total2 += value * b[b2 + i];
+            total3 += value * b[b3 + i];
+        }
+        result[r0] += total0;
+        result[r1] += total1;
+        result[r2] += total2;
+        result[r3] += total3;
+    }
+
+    static void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, int length) {
+        DoubleVector va = DoubleVector.broadcast(DOUBLES, alpha);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+            DoubleVector.fromArray(DOUBLES, x, xOffset + i).fma(va, vy).intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    static void axpy4(double a0, double a1, double a2, double a3, double[] x, int x0, int x1, int x2, int x3,
+                      double[] y, int yOffset, int length) {
+        DoubleVector va0 = DoubleVector.broadcast(DOUBLES, a0);
+        DoubleVector va1 = DoubleVector.broadcast(DOUBLES, a1);
+        DoubleVector va2 = DoubleVector.broadcast(DOUBLES, a2);
+        DoubleVector va3 = DoubleVector.broadcast(DOUBLES, a3);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector vy = DoubleVector.fromArray(DOUBLES, y, yOffset + i);
+            vy = DoubleVector.fromArray(DOUBLES, x, x0 + i).fma(va0, vy);
+            vy = DoubleVector.fromArray(DOUBLES, x, x1 + i).fma(va1, vy);
+            vy = DoubleVector.fromArray(DOUBLES, x, x2 + i).fma(va2, vy);
+            vy = DoubleVector.fromArray(DOUBLES, x, x3 + i).fma(va3, vy);
+            vy.intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += a0 * x[x0 + i] + a1 * x[x1 + i] + a2 * x[x2 + i] + a3 * x[x3 + i];
+        }
+    }
+
+    static void scale(double alpha, double[] x, int offset, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector.fromArray(DOUBLES, x, offset + i).mul(alpha).intoArray(x, offset + i);
+        }
+
+        for (; i < length; i++) {
+            x[offset + i] *= alpha;
+        }
+    }
+
+    static void leakyRelu(double slope, double[] x, double[] result, int offset, int length) {
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, x, offset + i);
+            v.blend(v.mul(slope), v.compare(VectorOperators.LE, 0)).intoArray(result, offset + i);
+        }
+
+        for (; i < length; i++) {
+            double value = x[offset + i];
+            result[offset + i] = (value > 0) ? value : value * slope;
+        }
+    }
+
+    static void leakyReluDerivative(double slope, double[] x, double[] result, int offset, int length) {
+        DoubleVector ones = DoubleVector.broadcast(DOUBLES, 1);
+        int bound = DOUBLES.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += DOUBLES.length()) {
+            DoubleVector v = DoubleVector.fromArray(DOUBLES, x, offset + i);
+            ones.blend(slope, v.compare(VectorOperators.LE, 0)).intoArray(result, offset + i);
+        }
+
+        for (; i < length; i++) {
+            result[offset + i] = (x[offset + i] > 0) ? 1 : slope;
+        }
+    }
+
+    static float dot(float[] a, int aOffset, float[] b, int bOffset, int length) {
+        FloatVector sum = FloatVector.zero(FLOATS);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            sum = va.fma(FloatVector.fromArray(FLOATS, b, bOffset + i), sum);
+        }
+
+        float result = sum.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            result += a[aOffset + i] * b[bOffset + i];
+        }
+        return result;
+    }
+
+    static void dot4(float[] a, int aOffset, float[] b, int b0, int b1, int b2, int b3, int length,
+                     float[] result, int r0, int r1, int r2, int r3) {
+        FloatVector sum0 = FloatVector.zero(FLOATS);
+        FloatVector sum1 = sum0;
+        FloatVector sum2 = sum0;
+        FloatVector sum3 = sum0;
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector va = FloatVector.fromArray(FLOATS, a, aOffset + i);
+            sum0 = va.fma(FloatVector.fromArray(FLOATS, b, b0 + i), sum0);
+            sum1 = va.fma(FloatVector.fromArray(FLOATS, b, b1 + i), sum1);
+            sum2 = va.fma(FloatVector.fromArray(FLOATS, b, b2 + i), sum2);
+            sum3 = va.fma(FloatVector.fromArray(FLOATS, b, b3 + i), sum3);
+        }
+
+        float total0 = sum0.reduceLanes(VectorOperators.ADD);
+        float total1 = sum1.reduceLanes(VectorOperators.ADD);
+        float total2 = sum2.reduceLanes(VectorOperators.ADD);
+        float total3 = sum3.reduceLanes(VectorOperators.ADD);
+        for (; i < length; i++) {
+            float value = a[aOffset + i];
+            total0 += value * b[b0 + i];
+            total1 += value * b[b1 + i];
+            total2 += value * b[b2 + i];
+            total3 += value * b[b3 + i];
+        }
+        result[r0] += total0;
+        result[r1] += total1;
+        result[r2] += total2;
+        result[r3] += total3;
+    }
+
+    static void axpy(float alpha, float[] x, int xOffset, float[] y, int yOffset, int length) {
+        FloatVector va = FloatVector.broadcast(FLOATS, alpha);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, yOffset + i);
+            FloatVector.fromArray(FLOATS, x, xOffset + i).fma(va, vy).intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += alpha * x[xOffset + i];
+        }
+    }
+
+    static void axpy4(float a0, float a1, float a2, float a3, float[] x, int x0, int x1, int x2, int x3,
+                      float[] y, int yOffset, int length) {
+        FloatVector va0 = FloatVector.broadcast(FLOATS, a0);
+        FloatVector va1 = FloatVector.broadcast(FLOATS, a1);
+        FloatVector va2 = FloatVector.broadcast(FLOATS, a2);
+        FloatVector va3 = FloatVector.broadcast(FLOATS, a3);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector vy = FloatVector.fromArray(FLOATS, y, yOffset + i);
+            vy = FloatVector.fromArray(FLOATS, x, x0 + i).fma(va0, vy);
+            vy = FloatVector.fromArray(FLOATS, x, x1 + i).fma(va1, vy);
+            vy = FloatVector.fromArray(FLOATS, x, x2 + i).fma(va2, vy);
+            vy = FloatVector.fromArray(FLOATS, x, x3 + i).fma(va3, vy);
+            vy.intoArray(y, yOffset + i);
+        }
+
+        for (; i < length; i++) {
+            y[yOffset + i] += a0 * x[x0 + i] + a1 * x[x1 + i] + a2 * x[x2 + i] + a3 * x[x3 + i];
+        }
+    }
+
+    static void scale(float alpha, float[] x, int offset, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector.fromArray(FLOATS, x, offset + i).mul(alpha).intoArray(x, offset + i);
+        }
+
+        for (; i < length; i++) {
+            x[offset + i] *= alpha;
+        }
+    }
+
+    static void leakyRelu(float slope, float[] x, float[] result, int offset, int length) {
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, x, offset + i);
+            v.blend(v.mul(slope), v.compare(VectorOperators.LE, 0)).intoArray(result, offset + i);
+        }
+
+        for (; i < length; i++) {
+            float value = x[offset + i];
+            result[offset + i] = (value > 0) ? value : value * slope;
+        }
+    }
+
+    static void leakyReluDerivative(float slope, float[] x, float[] result, int offset, int length) {
+        FloatVector ones = FloatVector.broadcast(FLOATS, 1);
+        int bound = FLOATS.loopBound(length);
+        int i = 0;
+        for (; i < bound; i += FLOATS.length()) {
+            FloatVector v = FloatVector.fromArray(FLOATS, x, offset + i);
+            ones.blend(slope, v.compare(VectorOperators.LE, 0)).intoArray(result, offset + i);
+        }
+
+        for (; i < length; i++) {
+            result[offset + i] = (x[offset + i] > 0) ? 1 : slope;
+        }
+    }
+}
@@ -37,4 +37,17 @@ public class CyclicLearningRate implements LearningRate {
             maxLearningRate *= learningRateDecay;
         }
     }
+
+    @Override
+    public double[] getState() {
+        return new double[]{batchesSinceRestart, nextCycleRestart, maxLearningRate, cycleLength};
+    }
+
+    @Override
+    public void setState(double[] state) {
+        batchesSinceRestart = (int) state[0];
+        nextCycleRestart = (int) state[1];
+        maxLearningRate = state[2];
+        cycleLength = (int) state[3];
+    }
 }
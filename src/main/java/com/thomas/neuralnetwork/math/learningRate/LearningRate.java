@@ -3,4 +3,22 @@ package com.thomas.neuralnetwork.math.learningRate;
 public interface LearningRate {
     double get();
     void update(int epoch);
+
+    /**
+     * Gets the state that changes as training goes on, so that a resumed run can carry on with the same schedule
+     *
+     * @return the state, empty for schedules that don't change
+     */
+    default double[] getState() {
+        return new double[0];
+    }
+
+    /**
+     * Restores state returned by {@link #getState()} from a schedule created with the same arguments
+     *
+     * @param state the state
+     */
+    default void setState(double[] state) {
+        // Schedules that don't change have nothing to restore
+    }
 }
@@ -17,4 +17,14 @@ public class LinearLearningRate implements LearningRate {
     public void update(int epoch) {
         learningRate += increment;
     }
+
+    @Override
+    public double[] getState() {
+        return new double[]{learningRate};
+    }
+
+    @Override
+    public void setState(double[] state) {
+        learningRate = state[0];
+    }
 }
@@ -5,11 +5,11 @@ import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
 
 public class CrossEntropyLoss implements LossFunction {
     @Override
-    public double calculate(double[] actual, double[] predicted) {
+    public double calculate(double[] actual, double[] predicted, int offset, int length) {
         double epsilon = 1e-10;
         double loss = 0;
 
-        for (int i = 0; i < actual.length; ++i) {
+        for (int i = offset; i < offset + length; ++i) {
             loss += actual[i] * Math.log(predicted[i] + epsilon);
         }
 
@@ -17,19 +17,138 @@ public class CrossEntropyLoss implements LossFunction {
     }
 
     @Override
-    public double[] derive(ActivationFunction activationFunction, double[] actual, double[] preactivation) {
-        double[] derived = new double[actual.length];
+    public double calculate(float[] actual, float[] predicted, int offset, int length) {
+        double epsilon = 1e-10;
+        double loss = 0;
+
+        for (int i = offset; i < offset + length; ++i) {
+            loss += actual[i] * Math.log(predicted[i] + epsilon);
+        }
+
+        return -loss;
+    }
+
+    @Override
+    public void derive(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] result, int offset, int length) {
+        if (activationFunction instanceof SoftmaxActivation) {
+            softmaxCrossEntropy(actual, preactivation, result, result, offset, length);
+            return;
+        }
 
+        // δL/δz = -y / a * δa/δz, which holds for any element-wise activation function
+        double epsilon = 1e-10;
+        activationFunction.apply(preactivation, result, offset, length);
+
+        for (int i = offset; i < offset + length; ++i) {
+            double activation = result[i];
+            activationFunction.derive(preactivation, result, i, 1);
+            result[i] *= -actual[i] / (activation + epsilon);
+        }
+    }
+
+    @Override
+    public void derive(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] result, int offset, int length) {
         if (activationFunction instanceof SoftmaxActivation) {
-            double[] activated = new SoftmaxActivation().apply(preactivation);
+            softmaxCrossEntropy(actual, preactivation, result, result, offset, length);
+            return;
+        }
+
+        float epsilon = 1e-10f;
+        activationFunction.apply(preactivation, result, offset, length);
+
+        for (int i = offset; i < offset + length; ++i) {
+            float activation = result[i];
+            activationFunction.derive(preactivation, result, i, 1);
+            result[i] *= -actual[i] / (activation + epsilon);
+        }
+    }
+
+    @Override
+    public double forwardBackward(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] activations, double[] result, int offset, int length) {
+        if (activationFunction instanceof SoftmaxActivation) {
+            return softmaxCrossEntropy(actual, preactivation, activations, result, offset, length);
+        }
+
+        return LossFunction.super.forwardBackward(activationFunction, actual, preactivation, activations, result, offset, length);
+    }
+
+    @Override
+    public double forwardBackward(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] activations, float[] result, int offset, int length) {
+        if (activationFunction instanceof SoftmaxActivation) {
+            return softmaxCrossEntropy(actual, preactivation, activations, result, offset, length);
+        }
+
+        return LossFunction.super.forwardBackward(activationFunction, actual, preactivation, activations, result, offset, length);
+    }
+
+    /**
+     * Softmax followed by cross entropy, computed straight from the logits in O(n).
+     * The gradient of the pair with respect to the logits collapses to p - y, so the softmax Jacobian is never needed.
+     * The loss is taken from the log-softmax, -∑y*(z - max - log∑e^(z - max)), which stays finite even when a probability underflows to 0.
+     *
+     * @param actual        the desired outputs
+     * @param logits        the output layer before activation
+     * @param probabilities the array to write the softmax of the logits into
+     * @param gradients     the array to write δL/δz into, may be the same array as the probabilities
+     * @param offset        the index of the first element
+     * @param length        the number of elements
+     * @return the cross entropy loss
+     */
+    private static double softmaxCrossEntropy(double[] actual, double[] logits, double[] probabilities, double[] gradients, int offset, int length) {
+        double max = Double.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; ++i) {
+            max = Math.max(max, logits[i]);
+        }
+
+        double eSum = 0;
+        double actualSum = 0;
+        double weightedLogits = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            double shifted = logits[i] - max;
+            double e = Math.exp(shifted);
+            probabilities[i] = e;
+            eSum += e;
+            actualSum += actual[i];
+            weightedLogits += actual[i] * shifted;
+        }
+
+        for (int i = offset; i < offset + length; ++i) {
+            double probability = probabilities[i] / eSum;
+            probabilities[i] = probability;
+            gradients[i] = probability - actual[i];
+        }
+
+        return actualSum * Math.log(eSum) - weightedLogits;
+    }
+
+    /**
+     * The single precision counterpart of {@link #softmaxCrossEntropy(double[], double[], double[], double[], int, int)},
+     * the probabilities and gradients are stored as floats but the loss is accumulated in double precision
+     */
+    private static double softmaxCrossEntropy(float[] actual, float[] logits, float[] probabilities, float[] gradients, int offset, int length) {
+        float max = Float.NEGATIVE_INFINITY;
+        for (int i = offset; i < offset + length; ++i) {
+            max = Math.max(max, logits[i]);
+        }
+
+        double eSum = 0;
+        double actualSum = 0;
+        double weightedLogits = 0;
+        for (int i = offset; i < offset + length; ++i) {
+            float shifted = logits[i] - max;
+            float e = (float) Math.exp(shifted);
+            probabilities[i] = e;
+            eSum += e;
+            actualSum += actual[i];
+            weightedLogits += actual[i] * shifted;
+        }
 
-            for (int i = 0; i < derived.length; ++i) {
-                derived[i] = activated[i] - actual[i];
-            }
-        } else {
-            throw new UnsupportedOperationException("Not implemented yet.");
+        for (int i = offset; i < offset + length; ++i) {
+            float probability = (float) (probabilities[i] / eSum);
+            probabilities[i] = probability;
+            gradients[i] = probability - actual[i];
         }
 
-        return derived;
+        return actualSum * Math.log(eSum) - weightedLogits;
     }
 }
@@ -13,7 +13,78 @@ public interface LossFunction {
         return loss/actual.length;
     }
 
-    double calculate(double[] actual, double[] predicted);
+    default double calculate(double[] actual, double[] predicted) {
+        return calculate(actual, predicted, 0, actual.length);
+    }
+
+    /**
+     * Calculates the loss of the elements [offset, offset + length), so a row of a batch matrix can be scored by passing its offset
+     *
+     * @param actual    the desired outputs
+     * @param predicted the outputs of the network
+     * @param offset    the index of the first element
+     * @param length    the number of elements
+     * @return the loss
+     */
+    double calculate(double[] actual, double[] predicted, int offset, int length);
+
+    /**
+     * The single precision counterpart of {@link #calculate(double[], double[], int, int)}, the loss is accumulated in double precision
+     */
+    double calculate(float[] actual, float[] predicted, int offset, int length);
+
+    default double[] derive(ActivationFunction activationFunction, double[] actual, double[] preactivation) {
+        double[] derived = new double[actual.length];
+        derive(activationFunction, actual, preactivation, derived, 0, actual.length);
+        return derived;
+    }
 
-    double[] derive(ActivationFunction activationFunction, double[] actual, double[] preactivation);
+    /**
+     * Writes δL/δz of the output layer for the elements [offset, offset + length) into the same positions of the result,
+     * with z being the output layer before activation.
+     * The actual outputs, the pre-activation and the result all share the same layout,
+     * so a row of a batch matrix can be derived by passing its offset.
+     *
+     * @param activationFunction the activation function of the output layer
+     * @param actual             the desired outputs
+     * @param preactivation      the output layer before activation
+     * @param result             the array to write δL/δz into
+     * @param offset             the index of the first element
+     * @param length             the number of elements
+     */
+    void derive(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] result, int offset, int length);
+
+    /**
+     * The single precision counterpart of {@link #derive(ActivationFunction, double[], double[], double[], int, int)}
+     */
+    void derive(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] result, int offset, int length);
+
+    /**
+     * Runs the whole output stage for the elements [offset, offset + length):
+     * activates the output layer, writes δL/δz into the result and returns the loss.
+     * Implementations can override this to do all three in a single pass for activation functions they know about.
+     *
+     * @param activationFunction the activation function of the output layer
+     * @param actual             the desired outputs
+     * @param preactivation      the output layer before activation
+     * @param activations        the array to write the activated output layer into
+     * @param result             the array to write δL/δz into
+     * @param offset             the index of the first element
+     * @param length             the number of elements
+     * @return the loss
+     */
+    default double forwardBackward(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] activations, double[] result, int offset, int length) {
+        activationFunction.apply(preactivation, activations, offset, length);
+        derive(activationFunction, actual, preactivation, result, offset, length);
+        return calculate(actual, activations, offset, length);
+    }
+
+    /**
+     * The single precision counterpart of {@link #forwardBackward(ActivationFunction, double[], double[], double[], double[], int, int)}
+     */
+    default double forwardBackward(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] activations, float[] result, int offset, int length) {
+        activationFunction.apply(preactivation, activations, offset, length);
+        derive(activationFunction, actual, preactivation, result, offset, length);
+        return calculate(actual, activations, offset, length);
+    }
 }
@@ -1,21 +1,59 @@
 package com.thomas.neuralnetwork.math.loss;
 
 import com.thomas.neuralnetwork.math.activation.ActivationFunction;
+import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
 
 public class MeanAbsoluteLoss implements LossFunction {
     @Override
-    public double calculate(double[] actual, double[] predicted) {
+    public double calculate(double[] actual, double[] predicted, int offset, int length) {
         double loss = 0;
 
-        for (int i = 0; i < actual.length; ++i) {
+        for (int i = offset; i < offset + length; ++i) {
             loss += Math.abs(actual[i] - predicted[i]);
         }
 
-        return loss/actual.length;
+        return loss/length;
     }
 
     @Override
-    public double[] derive(ActivationFunction activationFunction, double[] actual, double[] preactivation) {
-        throw new UnsupportedOperationException("Not implemented yet.");
+    public double calculate(float[] actual, float[] predicted, int offset, int length) {
+        double loss = 0;
+
+        for (int i = offset; i < offset + length; ++i) {
+            loss += Math.abs(actual[i] - predicted[i]);
+        }
+
+        return loss/length;
+    }
+
+    @Override
+    public void derive(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] result, int offset, int length) {
+        if (activationFunction instanceof SoftmaxActivation) {
+            throw new UnsupportedOperationException("The mean absolute loss can only be derived through element-wise activation functions.");
+        }
+
+        // δL/δz = sign(a - y) * δa/δz, each element only depends on its own pre-activation
+        activationFunction.apply(preactivation, result, offset, length);
+
+        for (int i = offset; i < offset + length; ++i) {
+            double activation = result[i];
+            activationFunction.derive(preactivation, result, i, 1);
+            result[i] *= Math.signum(activation - actual[i]);
+        }
+    }
+
+    @Override
+    public void derive(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] result, int offset, int length) {
+        if (activationFunction instanceof SoftmaxActivation) {
+            throw new UnsupportedOperationException("The mean absolute loss can only be derived through element-wise activation functions.");
+        }
+
+        activationFunction.apply(preactivation, result, offset, length);
+
+        for (int i = offset; i < offset + length; ++i) {
+            float activation = result[i];
+            activationFunction.derive(preactivation, result, i, 1);
+            result[i] *= Math.signum(activation - actual[i]);
+        }
     }
 }
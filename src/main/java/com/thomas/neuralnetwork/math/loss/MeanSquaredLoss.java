@@ -2,42 +2,90 @@ package com.thomas.neuralnetwork.math.loss;
 
 import com.thomas.neuralnetwork.math.activation.ActivationFunction;
 import com.thomas.neuralnetwork.math.activation.SigmoidActivation;
+import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
 import com.thomas.neuralnetwork.math.activation.TanhActivation;
 
 public class MeanSquaredLoss implements LossFunction {
     @Override
-    public double calculate(double[] actual, double[] predicted) {
+    public double calculate(double[] actual, double[] predicted, int offset, int length) {
         double loss = 0;
 
-        for (int i = 0; i < actual.length; ++i) {
+        for (int i = offset; i < offset + length; ++i) {
             loss += Math.pow(actual[i] - predicted[i], 2);
         }
 
-        return loss/actual.length;
+        return loss/length;
     }
 
     @Override
-    public double[] derive(ActivationFunction activationFunction, double[] actual, double[] preactivation) {
-        double[] derived = new double[actual.length];
+    public double calculate(float[] actual, float[] predicted, int offset, int length) {
+        double loss = 0;
+
+        for (int i = offset; i < offset + length; ++i) {
+            double difference = actual[i] - predicted[i];
+            loss += difference * difference;
+        }
+
+        return loss/length;
+    }
 
+    @Override
+    public void derive(ActivationFunction activationFunction, double[] actual, double[] preactivation, double[] result, int offset, int length) {
+        // Both derivatives can be expressed through the activated value, so it is calculated once into the result and reused
         if (activationFunction instanceof SigmoidActivation) {
-            double[] sigmoidActivated = new SigmoidActivation().apply(preactivation);
-            double[] sigmoidDerived = new SigmoidActivation().derive(preactivation);
+            activationFunction.apply(preactivation, result, offset, length);
 
-            for (int i = 0; i < derived.length; ++i) {
-                derived[i] = 2 * (sigmoidActivated[i] - actual[i]) * sigmoidDerived[i];
+            for (int i = offset; i < offset + length; ++i) {
+                double sigmoid = result[i];
+                result[i] = 2 * (sigmoid - actual[i]) * sigmoid * (1 - sigmoid);
             }
         } else if (activationFunction instanceof TanhActivation) {
-            double[] tanhActivated = new TanhActivation().apply(preactivation);
-            double[] tanhDerived = new TanhActivation().derive(preactivation);
+            activationFunction.apply(preactivation, result, offset, length);
 
-            for (int i = 0; i < derived.length; ++i) {
-                derived[i] = 2 * (tanhActivated[i] - actual[i]) * tanhDerived[i];
+            for (int i = offset; i < offset + length; ++i) {
+                double tanh = result[i];
+                result[i] = 2 * (tanh - actual[i]) * (1 - tanh * tanh);
             }
+        } else if (activationFunction instanceof SoftmaxActivation) {
+            throw new UnsupportedOperationException("The mean squared loss can only be derived through element-wise activation functions.");
         } else {
-            throw new UnsupportedOperationException("Not implemented yet.");
+            // δL/δz = δL/δa * δa/δz, each element only depends on its own pre-activation
+            activationFunction.apply(preactivation, result, offset, length);
+
+            for (int i = offset; i < offset + length; ++i) {
+                double activation = result[i];
+                activationFunction.derive(preactivation, result, i, 1);
+                result[i] *= 2 * (activation - actual[i]);
+            }
         }
+    }
+
+    @Override
+    public void derive(ActivationFunction activationFunction, float[] actual, float[] preactivation, float[] result, int offset, int length) {
+        if (activationFunction instanceof SigmoidActivation) {
+            activationFunction.apply(preactivation, result, offset, length);
+
+            for (int i = offset; i < offset + length; ++i) {
+                float sigmoid = result[i];
+                result[i] = 2 * (sigmoid - actual[i]) * sigmoid * (1 - sigmoid);
+            }
+        } else if (activationFunction instanceof TanhActivation) {
+            activationFunction.apply(preactivation, result, offset, length);
 
-        return  derived;
+            for (int i = offset; i < offset + length; ++i) {
+                float tanh = result[i];
+                result[i] = 2 * (tanh - actual[i]) * (1 - tanh * tanh);
+            }
+        } else if (activationFunction instanceof SoftmaxActivation) {
+            throw new UnsupportedOperationException("The mean squared loss can only be derived through element-wise activation functions.");
+        } else {
+            activationFunction.apply(preactivation, result, offset, length);
+
+            for (int i = offset; i < offset + length; ++i) {
+                float activation = result[i];
+                activationFunction.derive(preactivation, result, i, 1);
+                result[i] *= 2 * (activation - actual[i]);
+            }
+        }
     }
 }
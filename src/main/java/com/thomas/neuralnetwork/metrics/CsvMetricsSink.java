@@ -0,0 +1,89 @@
+package com.thomas.neuralnetwork.metrics;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+
+/**
+ * Writes every batch and epoch event as a row of a CSV file, so that a run can be plotted or compared afterwards.
+ * The file is flushed after every epoch.
+ */
+public class CsvMetricsSink implements TrainingListener, Closeable {
+    static final String HEADER = "type,epoch,batch,samples,loss,accuracy,certainty,latency_ms,samples_per_second,gc_ms";
+
+    private final Writer writer;
+
+    /**
+     * Creates a new sink, overwriting the file if it exists
+     *
+     * @param file the file to write to
+     * @throws IOException if the file can't be opened
+     */
+    public CsvMetricsSink(File file) throws IOException {
+        this(new BufferedWriter(new FileWriter(file)));
+    }
+
+    /**
+     * Creates a new sink that writes to a writer, which it closes when it is closed
+     *
+     * @param writer the writer
+     * @throws IOException if the header can't be written
+     */
+    public CsvMetricsSink(Writer writer) throws IOException {
+        this.writer = writer;
+        writer.write(HEADER);
+        writer.write('\n');
+    }
+
+    @Override
+    public void batchCompleted(TrainingEvent event) {
+        write(event);
+    }
+
+    @Override
+    public void epochCompleted(TrainingEvent event) {
+        write(event);
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(TrainingEvent event) {
+        try {
+            writer.write(event.getType().name().toLowerCase());
+            writer.write(',');
+            writer.write(Integer.toString(event.getEpoch()));
+            writer.write(',');
+            // Epoch rows leave the batch, accuracy and certainty columns empty where they don't apply
+            if (event.getBatch() >= 0) writer.write(Integer.toString(event.getBatch()));
+            writer.write(',');
+            writer.write(Integer.toString(event.getSamples()));
+            writer.write(',');
+            writer.write(Double.toString(event.getLoss()));
+            writer.write(',');
+            if (!Double.isNaN(event.getAccuracy())) writer.write(Double.toString(event.getAccuracy()));
+            writer.write(',');
+            if (!Double.isNaN(event.getCertainty())) writer.write(Double.toString(event.getCertainty()));
+            writer.write(',');
+            writer.write(Double.toString(event.getLatencyNanos() / 1e6));
+            writer.write(',');
+            writer.write(Double.toString(event.getSamplesPerSecond()));
+            writer.write(',');
+            writer.write(Long.toString(event.getGcMillis()));
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        writer.close();
+    }
+}
@@ -0,0 +1,45 @@
+package com.thomas.neuralnetwork.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.text.DecimalFormat;
+
+/**
+ * Logs every so many batches, and how fast each epoch trained and how long it spent collecting garbage.
+ * Since it runs on the metrics thread, formatting the messages never slows training down.
+ */
+public class LoggingMetricsSink implements TrainingListener {
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+    private final DecimalFormat format = new DecimalFormat("#.###");
+    private final int batchInterval;
+
+    // The garbage collection time at the end of the previous epoch, only touched by the metrics thread
+    private long previousGcMillis = -1;
+
+    /**
+     * Creates a new sink
+     *
+     * @param batchInterval the number of batches between logged batches, or 0 to log only epochs
+     */
+    public LoggingMetricsSink(int batchInterval) {
+        this.batchInterval = batchInterval;
+    }
+
+    @Override
+    public void batchCompleted(TrainingEvent event) {
+        if (batchInterval == 0 || event.getBatch() % batchInterval != 0 || !logger.isInfoEnabled()) return;
+
+        logger.info("Batch " + event.getBatch() + " of epoch " + event.getEpoch() + ": loss " + format.format(event.getLoss())
+                + ", " + format.format(event.getLatencyNanos() / 1e6) + " ms (" + format.format(event.getSamplesPerSecond()) + " samples per second).");
+    }
+
+    @Override
+    public void epochCompleted(TrainingEvent event) {
+        long gcMillis = previousGcMillis < 0 ? event.getGcMillis() : event.getGcMillis() - previousGcMillis;
+        previousGcMillis = event.getGcMillis();
+
+        logger.info("Epoch " + event.getEpoch() + " trained at " + format.format(event.getSamplesPerSecond()) + " samples per second, "
+                + gcMillis + " ms of it collecting garbage.");
+    }
+}
@@ -0,0 +1,233 @@
+package com.thomas.neuralnetwork.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hands training events from the training threads to the listeners without ever making the training threads wait.
+ * <p>
+ * The events are preallocated slots of a bounded ring buffer. Any number of threads claim slots with {@link #claim()},
+ * fill them in and {@link #publish(TrainingEvent)} them, while a single daemon thread hands them to the listeners in order.
+ * Claiming and publishing are a compare-and-set and an ordered write, with no locks and no allocation.
+ * When the listeners fall so far behind that the buffer is full, new events are dropped and counted rather than waited for.
+ * <p>
+ * The metrics thread sleeps while there is nothing to hand out, and is woken by the next publish. It runs until {@link #close()}.
+ */
+public final class MetricsRingBuffer implements AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 1 << 12;
+
+    // How long flush() sleeps between checks on the metrics thread
+    private static final long FLUSH_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRingBuffer.class);
+
+    private static final List<GarbageCollectorMXBean> GARBAGE_COLLECTORS = ManagementFactory.getGarbageCollectorMXBeans();
+
+    private final TrainingEvent[] events;
+    private final int mask;
+
+    /*
+     Each slot's sequence tells whose turn it is: a slot holding sequence s is free for the producer that claims s,
+     and once that producer publishes it holds s + 1, which is the consumer's cue to read it.
+     After reading, the consumer sets it to s + capacity, freeing it for the next lap.
+     */
+    private final AtomicLongArray sequences;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    private final LongAdder dropped = new LongAdder();
+    private final List<TrainingListener> listeners = new CopyOnWriteArrayList<>();
+    private final Thread consumer;
+    // Set by the metrics thread before it parks, so that publishers only pay for an unpark when it is actually asleep
+    private volatile boolean consumerWaiting;
+    private volatile boolean closed;
+
+    /**
+     * Creates a new buffer with room for 4096 events
+     */
+    public MetricsRingBuffer() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Creates a new buffer and starts its metrics thread
+     *
+     * @param capacity the number of events the buffer holds, a power of two
+     */
+    public MetricsRingBuffer(int capacity) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("The capacity must be a power of two but was " + capacity + ".");
+        }
+
+        events = new TrainingEvent[capacity];
+        sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new TrainingEvent();
+            sequences.set(i, i);
+        }
+        mask = capacity - 1;
+
+        consumer = new Thread(this::consume, "training-metrics");
+        consumer.setDaemon(true);
+        consumer.start();
+    }
+
+    /**
+     * Adds a listener that is handed every event published after it is added
+     *
+     * @param listener the listener
+     */
+    public void addListener(TrainingListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Checks whether anyone is listening, so that producers can skip measuring events nobody will see
+     */
+    public boolean hasListeners() {
+        return !listeners.isEmpty();
+    }
+
+    /**
+     * Claims the next slot of the buffer, which must then be filled in and passed to {@link #publish(TrainingEvent)}
+     *
+     * @return the event to fill in, or null if the buffer is full, in which case the event is dropped
+     */
+    public TrainingEvent claim() {
+        long sequence = claimed.get();
+        while (true) {
+            int slot = (int) (sequence & mask);
+            long available = sequences.get(slot);
+
+            if (available == sequence) {
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    TrainingEvent event = events[slot];
+                    event.sequence = sequence;
+                    return event;
+                }
+                sequence = claimed.get();
+            } else if (available < sequence) {
+                // The consumer hasn't read this slot since the previous lap
+                dropped.increment();
+                return null;
+            } else {
+                // Another producer claimed this sequence first
+                sequence = claimed.get();
+            }
+        }
+    }
+
+    /**
+     * Hands a filled in event to the metrics thread
+     *
+     * @param event an event returned by {@link #claim()}
+     */
+    public void publish(TrainingEvent event) {
+        // A volatile write rather than an ordered one, so that it can't be reordered with the read of consumerWaiting below
+        sequences.set((int) (event.sequence & mask), event.sequence + 1);
+        if (consumerWaiting) {
+            consumerWaiting = false;
+            LockSupport.unpark(consumer);
+        }
+    }
+
+    private void consume() {
+        long sequence = 0;
+        while (true) {
+            int slot = (int) (sequence & mask);
+            if (sequences.get(slot) != sequence + 1) {
+                if (closed) return;
+
+                // The slot is checked again after announcing the wait, so a publish between the two checks can't be missed
+                consumerWaiting = true;
+                if (sequences.get(slot) != sequence + 1 && !closed) {
+                    LockSupport.park(this);
+                }
+                consumerWaiting = false;
+                continue;
+            }
+
+            TrainingEvent event = events[slot];
+            for (TrainingListener listener : listeners) {
+                try {
+                    if (event.type == TrainingEvent.Type.BATCH) {
+                        listener.batchCompleted(event);
+                    } else {
+                        listener.epochCompleted(event);
+                    }
+                } catch (Throwable e) {
+                    // A broken listener mustn't stop the others from being told, nor the events that follow
+                    logger.error("A training listener failed to handle an event.", e);
+                }
+            }
+
+            sequences.lazySet(slot, sequence + events.length);
+            consumed = ++sequence;
+        }
+    }
+
+    /**
+     * Waits until every event published before this call has been handed to the listeners
+     *
+     * @param timeout how long to wait at most
+     * @param unit    the unit of the timeout
+     * @return whether the listeners caught up in time
+     */
+    public boolean flush(long timeout, TimeUnit unit) {
+        long target = claimed.get();
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (consumed < target) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            LockSupport.parkNanos(FLUSH_POLL_NANOS);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the metrics thread once it has handed out the events already published, waiting up to 10 seconds for it.
+     * Events published afterwards are never handed out.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(consumer);
+        try {
+            consumer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of events dropped because the buffer was full
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Gets the total time the JVM has spent collecting garbage, for stamping events
+     *
+     * @return the collection time of every collector added together, in milliseconds
+     */
+    public static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean collector : GARBAGE_COLLECTORS) {
+            total += Math.max(collector.getCollectionTime(), 0);
+        }
+        return total;
+    }
+}
@@ -0,0 +1,129 @@
+package com.thomas.neuralnetwork.metrics;
+
+/**
+ * A measurement taken during training, either of a single batch or of a whole epoch.
+ * <p>
+ * Events live in the slots of a {@link MetricsRingBuffer} and are reused once every listener has seen them,
+ * so a listener must copy anything it wants to keep rather than holding on to the event.
+ */
+public final class TrainingEvent {
+    public enum Type {
+        BATCH,
+        EPOCH
+    }
+
+    // The position in the ring buffer this event was claimed at
+    long sequence;
+
+    Type type;
+    int epoch;
+    int batch;
+    int samples;
+    double loss;
+    double accuracy;
+    double certainty;
+    long latencyNanos;
+    long gcMillis;
+
+    TrainingEvent() { }
+
+    /**
+     * Fills in a batch event
+     *
+     * @param epoch        the index of the epoch
+     * @param batch        the index of the batch within the epoch
+     * @param samples      the number of samples in the batch
+     * @param loss         the loss averaged over the batch
+     * @param latencyNanos the time the batch took to train, in nanoseconds
+     * @param gcMillis     the total time the JVM has spent collecting garbage, in milliseconds
+     * @return this event
+     */
+    public TrainingEvent batch(int epoch, int batch, int samples, double loss, long latencyNanos, long gcMillis) {
+        set(Type.BATCH, epoch, batch, samples, loss, Double.NaN, Double.NaN, latencyNanos, gcMillis);
+        return this;
+    }
+
+    /**
+     * Fills in an epoch event
+     *
+     * @param epoch        the index of the epoch
+     * @param samples      the number of samples trained on
+     * @param cost         the cost of the network after the epoch
+     * @param accuracy     the percentage of samples classified correctly
+     * @param certainty    the average output for the correct class, as a percentage
+     * @param latencyNanos the time the epoch took to train, in nanoseconds
+     * @param gcMillis     the total time the JVM has spent collecting garbage, in milliseconds
+     * @return this event
+     */
+    public TrainingEvent epoch(int epoch, int samples, double cost, double accuracy, double certainty, long latencyNanos, long gcMillis) {
+        set(Type.EPOCH, epoch, -1, samples, cost, accuracy, certainty, latencyNanos, gcMillis);
+        return this;
+    }
+
+    private void set(Type type, int epoch, int batch, int samples, double loss, double accuracy, double certainty, long latencyNanos, long gcMillis) {
+        this.type = type;
+        this.epoch = epoch;
+        this.batch = batch;
+        this.samples = samples;
+        this.loss = loss;
+        this.accuracy = accuracy;
+        this.certainty = certainty;
+        this.latencyNanos = latencyNanos;
+        this.gcMillis = gcMillis;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getEpoch() {
+        return epoch;
+    }
+
+    /**
+     * Gets the index of the batch within its epoch, or -1 for an epoch event
+     */
+    public int getBatch() {
+        return batch;
+    }
+
+    public int getSamples() {
+        return samples;
+    }
+
+    /**
+     * Gets the loss averaged over the batch, or the cost after the epoch
+     */
+    public double getLoss() {
+        return loss;
+    }
+
+    /**
+     * Gets the percentage of samples classified correctly, or NaN for a batch event
+     */
+    public double getAccuracy() {
+        return accuracy;
+    }
+
+    /**
+     * Gets the average output for the correct class as a percentage, or NaN for a batch event
+     */
+    public double getCertainty() {
+        return certainty;
+    }
+
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    public double getSamplesPerSecond() {
+        return latencyNanos == 0 ? 0 : samples / (latencyNanos / 1e9);
+    }
+
+    /**
+     * Gets the total time the JVM had spent collecting garbage when the event was recorded, in milliseconds
+     */
+    public long getGcMillis() {
+        return gcMillis;
+    }
+}
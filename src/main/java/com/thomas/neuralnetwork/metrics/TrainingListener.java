@@ -0,0 +1,22 @@
+package com.thomas.neuralnetwork.metrics;
+
+/**
+ * Is told about the progress of a {@link com.thomas.neuralnetwork.ai.Trainer}, such as to plot it or write it to a file.
+ * Listeners are called on the metrics thread of a {@link MetricsRingBuffer}, never on the training threads,
+ * so a slow listener only delays other listeners and never training.
+ */
+public interface TrainingListener {
+    /**
+     * Called for every batch that has been trained
+     *
+     * @param event the batch's measurements, only valid until this method returns
+     */
+    default void batchCompleted(TrainingEvent event) { }
+
+    /**
+     * Called once an epoch has been trained and measured
+     *
+     * @param event the epoch's measurements, only valid until this method returns
+     */
+    default void epochCompleted(TrainingEvent event) { }
+}
@@ -0,0 +1,204 @@
+package com.thomas.neuralnetwork.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A headless HTTP server that serves predictions from a trained network, built on the JDK's {@code com.sun.net.httpserver}.
+ * Every request is handled on its own virtual thread, and concurrent requests are coalesced into batches by a {@link MicroBatcher}.
+ * <p>
+ * {@code POST /predict} takes the inputs of one sample as numbers separated by commas or whitespace, optionally wrapped in brackets,
+ * and responds with JSON holding the predicted class, the output of the network, the size of the batch the sample was predicted in,
+ * and the time the server spent on the request in microseconds.
+ * {@code GET /health} responds with 200 while the server is running.
+ */
+public class InferenceServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    public static final int DEFAULT_MAX_BATCH_SIZE = 32;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 2000;
+
+    /**
+     * How long a request waits for its prediction before giving up, so closing the server never waits on a lost request
+     */
+    private static final long PREDICTION_TIMEOUT_SECONDS = 10;
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private final MicroBatcher batcher;
+
+    private final Logger logger = LoggerFactory.getLogger(getClass());
+
+    /**
+     * Creates a new server and starts listening
+     *
+     * @param neuralNetwork the network to serve
+     * @param address       the address to listen on, a port of 0 picks a free port
+     * @param maxBatchSize  the largest number of requests predicted together
+     * @param maxDelayNanos how long a request may wait for others to join its batch, in nanoseconds
+     */
+    public InferenceServer(NeuralNetwork neuralNetwork, InetSocketAddress address, int maxBatchSize, long maxDelayNanos) throws IOException {
+        batcher = new MicroBatcher(neuralNetwork, maxBatchSize, maxDelayNanos);
+
+        server = HttpServer.create(address, 0);
+        server.setExecutor(executor);
+        server.createContext("/predict", this::predict);
+        server.createContext("/health", exchange -> respond(exchange, 200, "{\"status\":\"ok\"}"));
+        server.start();
+
+        logger.info("Serving predictions on " + server.getAddress() + " in batches of up to " + maxBatchSize
+                + " requests, waiting at most " + TimeUnit.NANOSECONDS.toMicros(maxDelayNanos) + " µs.");
+    }
+
+    /**
+     * Gets the address the server is listening on
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Gets the batcher that coalesces the requests, which keeps count of the batches and samples predicted
+     */
+    public MicroBatcher getBatcher() {
+        return batcher;
+    }
+
+    private void predict(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+
+        if (!exchange.getRequestMethod().equals("POST")) {
+            exchange.getResponseHeaders().add("Allow", "POST");
+            respond(exchange, 405, error("Use POST to send the inputs."));
+            return;
+        }
+
+        double[] inputs;
+        try (InputStream body = exchange.getRequestBody()) {
+            inputs = parseInputs(new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            respond(exchange, 400, error("Invalid number: " + e.getMessage()));
+            return;
+        }
+
+        if (inputs.length != batcher.getNumInputs()) {
+            respond(exchange, 400, error("Expected " + batcher.getNumInputs() + " inputs but got " + inputs.length + "."));
+            return;
+        }
+
+        MicroBatcher.Prediction prediction;
+        try {
+            prediction = batcher.submit(inputs).get(PREDICTION_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            respond(exchange, 503, error("The server is shutting down."));
+            return;
+        } catch (TimeoutException e) {
+            respond(exchange, 503, error("The prediction timed out."));
+            return;
+        } catch (ExecutionException e) {
+            logger.error("Prediction failed.", e.getCause());
+            respond(exchange, 500, error("Prediction failed."));
+            return;
+        }
+
+        StringBuilder json = new StringBuilder(32 + prediction.outputs().length * 24);
+        json.append("{\"class\":").append(prediction.predictedClass()).append(",\"outputs\":[");
+        for (int i = 0; i < prediction.outputs().length; i++) {
+            if (i > 0) json.append(',');
+            json.append(prediction.outputs()[i]);
+        }
+        json.append("],\"batchSize\":").append(prediction.batchSize())
+                .append(",\"latencyMicros\":").append(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start)).append('}');
+
+        respond(exchange, 200, json.toString());
+    }
+
+    /**
+     * Parses numbers separated by commas or whitespace, ignoring any brackets around them
+     *
+     * @param text the body of a request
+     * @return the numbers in the order they appear
+     * @throws NumberFormatException if something other than a number is found
+     */
+    static double[] parseInputs(String text) {
+        String trimmed = text.strip();
+        if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+            trimmed = trimmed.substring(1, trimmed.length() - 1).strip();
+        }
+        if (trimmed.isEmpty()) {
+            return new double[0];
+        }
+
+        String[] tokens = trimmed.split("[\\s,]+");
+        double[] inputs = new double[tokens.length];
+        for (int i = 0; i < tokens.length; i++) {
+            inputs[i] = Double.parseDouble(tokens[i]);
+        }
+        return inputs;
+    }
+
+    private static String error(String message) {
+        return "{\"error\":\"" + message.replace("\\", "\\\\").replace("\"", "\\\"") + "\"}";
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    /**
+     * Stops accepting requests, waiting up to a second for the ones in progress to finish
+     */
+    @Override
+    public void close() {
+        server.stop(1);
+        batcher.close();
+        executor.close();
+    }
+
+    /**
+     * Starts a server from the command line, usage: {@code <network file> [port] [max batch size] [max delay in µs]}
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: <network file> [port (default " + DEFAULT_PORT + ")] [max batch size (default "
+                    + DEFAULT_MAX_BATCH_SIZE + ")] [max delay in µs (default " + DEFAULT_MAX_DELAY_MICROS + ")]");
+            System.exit(1);
+        }
+
+        NeuralNetwork neuralNetwork = NeuralNetwork.fromFile(new File(args[0]));
+        if (neuralNetwork == null) {
+            System.err.println("Could not load a network from " + args[0] + ".");
+            System.exit(1);
+        }
+
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_PORT;
+        int maxBatchSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_MAX_BATCH_SIZE;
+        long maxDelayMicros = args.length > 3 ? Long.parseLong(args[3]) : DEFAULT_MAX_DELAY_MICROS;
+
+        // Only other processes on the same host are served
+        InferenceServer server = new InferenceServer(neuralNetwork, new InetSocketAddress(InetAddress.getLoopbackAddress(), port),
+                maxBatchSize, TimeUnit.MICROSECONDS.toNanos(maxDelayMicros));
+        Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+    }
+}
@@ -0,0 +1,239 @@
+package com.thomas.neuralnetwork.server;
+
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Coalesces single-sample predictions from many threads into batches, which are pushed through the network with
+ * {@link NeuralNetwork#predictBatch(double[], int, double[])}.
+ * <p>
+ * A batch is sent as soon as it is full, or once the first sample in it has waited for the latency budget,
+ * whichever comes first. Under light load a sample is predicted almost alone after at most the budget,
+ * and under heavy load the batches fill up and the cost of each pass is shared by many samples.
+ */
+public class MicroBatcher implements AutoCloseable {
+    /**
+     * The result of a single sample's prediction
+     *
+     * @param outputs   the output of the network for the sample
+     * @param batchSize the number of samples in the batch the sample was predicted in
+     */
+    public record Prediction(double[] outputs, int batchSize) {
+        /**
+         * Gets the index of the largest output
+         */
+        public int predictedClass() {
+            int best = 0;
+            for (int i = 1; i < outputs.length; i++) {
+                if (outputs[i] > outputs[best]) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    private record Request(double[] inputs, long arrival, CompletableFuture<Prediction> result) { }
+
+    private final NeuralNetwork neuralNetwork;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final int numInputs;
+    private final int numOutputs;
+
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    // Only touched by the dispatcher thread
+    private final Request[] pending;
+    private final double[] inputs;
+    private final double[] outputs;
+
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong samples = new AtomicLong();
+
+    /**
+     * Creates a new batcher and starts its dispatcher thread
+     *
+     * @param neuralNetwork the network to predict with
+     * @param maxBatchSize  the largest number of samples in a batch
+     * @param maxDelayNanos how long the first sample of a batch may wait for others to join it, in nanoseconds
+     */
+    public MicroBatcher(NeuralNetwork neuralNetwork, int maxBatchSize, long maxDelayNanos) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("The batch size must be at least 1 but was " + maxBatchSize + ".");
+        }
+        if (maxDelayNanos < 0) {
+            throw new IllegalArgumentException("The delay must not be negative but was " + maxDelayNanos + ".");
+        }
+
+        this.neuralNetwork = neuralNetwork;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = maxDelayNanos;
+
+        numInputs = neuralNetwork.getLayers()[0].getNumInputs();
+        numOutputs = neuralNetwork.getLayers()[neuralNetwork.getLayers().length - 1].getNumNeurons();
+        pending = new Request[maxBatchSize];
+        inputs = new double[maxBatchSize * numInputs];
+        outputs = new double[maxBatchSize * numOutputs];
+
+        dispatcher = new Thread(this::dispatch, "micro-batcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * Gets the number of inputs each sample must have
+     */
+    public int getNumInputs() {
+        return numInputs;
+    }
+
+    /**
+     * Queues a sample to be predicted in the next batch
+     *
+     * @param inputs the inputs of the sample, which must not be changed until the prediction completes
+     * @return the prediction, completed by the dispatcher thread once the sample's batch has been through the network
+     */
+    public CompletableFuture<Prediction> submit(double[] inputs) {
+        if (inputs.length != numInputs) {
+            throw new IllegalArgumentException("Expected " + numInputs + " inputs but got " + inputs.length + ".");
+        }
+
+        CompletableFuture<Prediction> result = new CompletableFuture<>();
+        if (!running) {
+            result.completeExceptionally(new IllegalStateException("The batcher has been closed."));
+            return result;
+        }
+
+        Request request = new Request(inputs, System.nanoTime(), result);
+        queue.add(request);
+        // If close() ran since the check above its drain may already be over, so a request left in the queue must fail here
+        if (!running && queue.remove(request)) {
+            result.completeExceptionally(new IllegalStateException("The batcher has been closed."));
+        }
+        return result;
+    }
+
+    private void dispatch() {
+        try {
+            while (running) {
+                int size;
+                try {
+                    size = collectBatch();
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                predict(size);
+            }
+        } catch (Error e) {
+            // The JVM may be in no state to keep predicting, so the batcher closes itself and later submissions fail straight away
+            running = false;
+            failQueued();
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for a sample, then gathers more until the batch is full or the first sample's latency budget runs out
+     *
+     * @return the number of samples gathered into {@link #pending}
+     * @throws InterruptedException if the batcher is closed while waiting for the first sample
+     */
+    private int collectBatch() throws InterruptedException {
+        Request first = queue.take();
+        pending[0] = first;
+        int size = 1;
+
+        long deadline = first.arrival + maxDelayNanos;
+        while (size < maxBatchSize) {
+            Request request = queue.poll();
+            if (request == null) {
+                long wait = deadline - System.nanoTime();
+                if (wait <= 0) break;
+
+                try {
+                    request = queue.poll(wait, TimeUnit.NANOSECONDS);
+                } catch (InterruptedException e) {
+                    // Closing while a batch is being gathered, the samples already taken are still predicted
+                    break;
+                }
+                if (request == null) break;
+            }
+            pending[size++] = request;
+        }
+
+        return size;
+    }
+
+    private void predict(int size) {
+        for (int i = 0; i < size; i++) {
+            System.arraycopy(pending[i].inputs, 0, inputs, i * numInputs, numInputs);
+        }
+
+        try {
+            neuralNetwork.predictBatch(inputs, size, outputs);
+
+            for (int i = 0; i < size; i++) {
+                pending[i].result.complete(new Prediction(Arrays.copyOfRange(outputs, i * numOutputs, (i + 1) * numOutputs), size));
+            }
+        } catch (Throwable e) {
+            for (int i = 0; i < size; i++) {
+                pending[i].result.completeExceptionally(e);
+            }
+            if (e instanceof Error error) throw error;
+        } finally {
+            Arrays.fill(pending, 0, size, null);
+        }
+
+        batches.incrementAndGet();
+        samples.addAndGet(size);
+    }
+
+    /**
+     * Gets the number of batches pushed through the network
+     */
+    public long getBatches() {
+        return batches.get();
+    }
+
+    /**
+     * Gets the number of samples predicted
+     */
+    public long getSamples() {
+        return samples.get();
+    }
+
+    /**
+     * Stops the dispatcher thread, any sample that hasn't been predicted yet fails with an {@link IllegalStateException}
+     */
+    @Override
+    public void close() {
+        running = false;
+        dispatcher.interrupt();
+        try {
+            dispatcher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        failQueued();
+    }
+
+    /**
+     * Fails every request still in the queue, which would otherwise wait forever once the dispatcher has stopped
+     */
+    private void failQueued() {
+        for (Request request = queue.poll(); request != null; request = queue.poll()) {
+            request.result.completeExceptionally(new IllegalStateException("The batcher has been closed."));
+        }
+    }
+}
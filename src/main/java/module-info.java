@@ -5,6 +5,10 @@ module com.thomas.neuralnetwork {
     requires org.controlsfx.controls;
     requires org.slf4j;
     requires java.desktop;
+    requires java.management;
+    requires jdk.jfr;
+    requires jdk.httpserver;
+    requires static jdk.incubator.vector;
 
     opens com.thomas.neuralnetwork to javafx.fxml;
     exports com.thomas.neuralnetwork;
@@ -12,4 +16,8 @@ module com.thomas.neuralnetwork {
     opens com.thomas.neuralnetwork.controllers to javafx.fxml;
     exports com.thomas.neuralnetwork.drawing;
     opens com.thomas.neuralnetwork.drawing to javafx.fxml;
+    exports com.thomas.neuralnetwork.server;
+    exports com.thomas.neuralnetwork.metrics;
+    exports com.thomas.neuralnetwork.jfr;
+    exports com.thomas.neuralnetwork.checkpoint;
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+package com.thomas.neuralnetwork;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Properties;
+
+import static org.junit.Assert.assertEquals;
+
+public class CommandLineTest {
+    @Test
+    public void testCommandLineOverridesConfig() throws IOException {
+        File config = File.createTempFile("training", ".properties");
+        config.deleteOnExit();
+        try (Writer writer = new FileWriter(config)) {
+            writer.write("epochs=5\nhidden=64,32\n");
+        }
+
+        Properties options = CommandLine.parseOptions(new String[]{"--config=" + config.getPath(), "--epochs=7", "--output=a=b.nnet"});
+
+        assertEquals("7", options.getProperty("epochs"));
+        assertEquals("64,32", options.getProperty("hidden"));
+        assertEquals("a=b.nnet", options.getProperty("output"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsPositionalArguments() throws IOException {
+        CommandLine.parseOptions(new String[]{"epochs"});
+    }
+}
@@ -0,0 +1,56 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.data.Dataset;
+import com.thomas.neuralnetwork.data.DatasetFixtures;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static com.thomas.neuralnetwork.ai.NeuralNetwork.LOSS_FUNCTION;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class EvaluatorTest {
+    @Test
+    public void TestMatchesSerialEvaluation() {
+        NeuralNetwork network = new NeuralNetwork(new int[]{12, 8, 5});
+        // Not a multiple of the shard size, so the last shard is partial
+        Dataset dataset = DatasetFixtures.random(1000, 12, 5, 1);
+
+        double loss = 0;
+        int correct = 0;
+        int topTwoCorrect = 0;
+        int[][] confusionMatrix = new int[5][5];
+        double[] inputs = new double[12];
+        double[] actual = new double[5];
+        for (int i = 0; i < dataset.size(); i++) {
+            dataset.copyInputs(i, inputs, 0);
+            dataset.copyOutputs(i, actual, 0);
+            double[] predicted = network.forwardPropagate(inputs);
+            loss += LOSS_FUNCTION.calculate(actual, predicted);
+
+            Integer[] ranking = {0, 1, 2, 3, 4};
+            Arrays.sort(ranking, (a, b) -> Double.compare(predicted[b], predicted[a]));
+            int label = dataset.getLabel(i);
+            if (ranking[0] == label) correct++;
+            if (ranking[0] == label || ranking[1] == label) topTwoCorrect++;
+            confusionMatrix[label][ranking[0]]++;
+        }
+
+        Evaluation evaluation = new Evaluator(2).evaluate(network, dataset);
+
+        assertEquals(1000, evaluation.getSize());
+        assertEquals(loss / dataset.size(), evaluation.getLoss(), 1e-9);
+        assertEquals(correct / 1000.0, evaluation.getAccuracy(), 0);
+        assertEquals(topTwoCorrect / 1000.0, evaluation.getTopKAccuracy(), 0);
+        assertArrayEquals(confusionMatrix, evaluation.getConfusionMatrix());
+        assertEquals(1000 - correct, Arrays.stream(evaluation.getMisclassified()).sum());
+    }
+
+    @Test
+    public void TestTopKOfEveryClass() {
+        Evaluation evaluation = new Evaluator(5).evaluate(new NeuralNetwork(new int[]{12, 5}), DatasetFixtures.random(100, 12, 5, 1));
+
+        assertEquals(1.0, evaluation.getTopKAccuracy(), 0);
+    }
+}
@@ -0,0 +1,158 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.data.ByteDataset;
+import com.thomas.neuralnetwork.data.DatasetFixtures;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class FloatNeuralNetworkTest {
+    @Test
+    public void testForwardParity() {
+        NeuralNetwork original = new NeuralNetwork(new int[]{784, 128, 64, 10});
+        FloatNeuralNetwork converted = FloatNeuralNetwork.fromNetwork(original);
+        Random random = new Random(0);
+
+        for (int sample = 0; sample < 100; sample++) {
+            double[] inputs = new double[784];
+            float[] floatInputs = new float[784];
+            for (int i = 0; i < inputs.length; i++) {
+                inputs[i] = random.nextDouble();
+                floatInputs[i] = (float) inputs[i];
+            }
+
+            double[] expected = original.forwardPropagate(inputs);
+            float[] actual = converted.forwardPropagate(floatInputs);
+
+            for (int i = 0; i < expected.length; i++) {
+                assertEquals(expected[i], actual[i], 1e-3);
+            }
+        }
+    }
+
+    @Test
+    public void testGradientParity() {
+        NeuralNetwork original = new NeuralNetwork(new int[]{20, 16, 8, 4});
+        FloatNeuralNetwork converted = FloatNeuralNetwork.fromNetwork(original);
+        Random random = new Random(1);
+        int batchSize = 10;
+
+        double[] inputs = new double[batchSize * 20];
+        double[] outputs = new double[batchSize * 4];
+        float[] floatInputs = new float[inputs.length];
+        float[] floatOutputs = new float[outputs.length];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble();
+            floatInputs[i] = (float) inputs[i];
+        }
+        for (int r = 0; r < batchSize; r++) {
+            outputs[r * 4 + random.nextInt(4)] = 1;
+        }
+        for (int i = 0; i < outputs.length; i++) {
+            floatOutputs[i] = (float) outputs[i];
+        }
+
+        Gradients expected = new Gradients(original);
+        FloatGradients actual = new FloatGradients(converted);
+        double expectedLoss = original.backPropagate(inputs, outputs, batchSize, new BatchTape(original, batchSize), expected);
+        double actualLoss = converted.backPropagate(floatInputs, floatOutputs, batchSize, new FloatBatchTape(converted, batchSize), actual);
+
+        assertEquals(expectedLoss, actualLoss, Math.abs(expectedLoss) * 1e-4);
+        for (int l = 0; l < expected.getNumLayers(); l++) {
+            for (int i = 0; i < expected.getWeights(l).length; i++) {
+                assertEquals(expected.getWeights(l)[i], actual.getWeights(l)[i], 1e-3 + Math.abs(expected.getWeights(l)[i]) * 1e-4);
+            }
+        }
+    }
+
+    /**
+     * Creates a network whose weights and biases are drawn from a seeded generator, so that training it is repeatable
+     */
+    private static NeuralNetwork seededNetwork(long seed, int... layerSizes) {
+        Random random = new Random(seed);
+        Layer[] layers = new Layer[layerSizes.length - 1];
+        for (int l = 0; l < layers.length; l++) {
+            double[] weights = random.doubles((long) layerSizes[l + 1] * layerSizes[l], -1, 1).toArray();
+            double[] biases = random.doubles(layerSizes[l + 1], -1, 1).toArray();
+            layers[l] = new Layer(layerSizes[l + 1], layerSizes[l], weights, biases);
+        }
+        return new NeuralNetwork(layers);
+    }
+
+    @Test
+    public void testAccuracyParity() {
+        NeuralNetwork original = seededNetwork(1, 16, 12, 4);
+        try (Trainer trainer = new Trainer(original, 2)) {
+            trainer.setSeed(2);
+            original = trainer.start(DatasetFixtures.separable(2000, 3), 2, 0, 0);
+        }
+        FloatNeuralNetwork converted = FloatNeuralNetwork.fromNetwork(original);
+
+        ByteDataset testSet = DatasetFixtures.separable(1000, 4);
+        double[] inputs = new double[16];
+        float[] floatInputs = new float[16];
+        int expectedCorrect = 0;
+        int actualCorrect = 0;
+        for (int i = 0; i < testSet.size(); i++) {
+            testSet.copyInputs(i, inputs, 0);
+            testSet.copyInputs(i, floatInputs, 0);
+            expectedCorrect += argmax(original.forwardPropagate(inputs)) == testSet.getLabel(i) ? 1 : 0;
+            actualCorrect += argmax(converted.forwardPropagate(floatInputs)) == testSet.getLabel(i) ? 1 : 0;
+        }
+
+        // The network has learned something, so the comparison isn't between two sets of guesses
+        assertTrue(expectedCorrect > testSet.size() * 0.9);
+        // Rounding to single precision may flip a handful of borderline predictions, but no more than 0.1% of the set
+        assertEquals(expectedCorrect, actualCorrect, testSet.size() * 0.001);
+    }
+
+    @Test
+    public void testSinglePrecisionTrainingParity() {
+        NeuralNetwork initial = seededNetwork(5, 16, 12, 4);
+        ByteDataset dataset = DatasetFixtures.separable(2000, 5);
+        Evaluator evaluator = new Evaluator();
+
+        Evaluation[] evaluations = new Evaluation[2];
+        for (Trainer.Precision precision : Trainer.Precision.values()) {
+            try (Trainer trainer = new Trainer(initial.copy(), 2)) {
+                trainer.setSeed(6);
+                trainer.setPrecision(precision);
+                evaluations[precision.ordinal()] = evaluator.evaluate(trainer.start(dataset, 2, 0, 0), dataset);
+            }
+        }
+
+        Evaluation doublePrecision = evaluations[Trainer.Precision.DOUBLE.ordinal()];
+        Evaluation singlePrecision = evaluations[Trainer.Precision.SINGLE.ordinal()];
+        assertTrue(singlePrecision.getAccuracy() > 0.9);
+        assertEquals(doublePrecision.getAccuracy(), singlePrecision.getAccuracy(), 0.01);
+        assertEquals(doublePrecision.getLoss(), singlePrecision.getLoss(), doublePrecision.getLoss() * 0.05);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testSinglePrecisionNeedsSynchronousUpdates() {
+        try (Trainer trainer = new Trainer(new NeuralNetwork(new int[]{16, 4}), 1)) {
+            trainer.setPrecision(Trainer.Precision.SINGLE);
+            trainer.setUpdateMode(Trainer.UpdateMode.HOGWILD);
+            trainer.start(DatasetFixtures.separable(10, 7), 1, 0, 0);
+        }
+    }
+
+    private static int argmax(double[] array) {
+        int best = 0;
+        for (int i = 1; i < array.length; i++) {
+            if (array[i] > array[best]) best = i;
+        }
+        return best;
+    }
+
+    private static int argmax(float[] array) {
+        int best = 0;
+        for (int i = 1; i < array.length; i++) {
+            if (array[i] > array[best]) best = i;
+        }
+        return best;
+    }
+}
@@ -3,8 +3,14 @@ package com.thomas.neuralnetwork.ai;
 import org.junit.Test;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class NeuralNetworkTest {
     @Test
@@ -25,4 +31,125 @@ public class NeuralNetworkTest {
         assert fromFile != null;
         assertArrayEquals(original.toArray(), fromFile.toArray());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void TestBinaryFileSaveLoad() throws IOException {
+        NeuralNetwork original = new NeuralNetwork(new int[]{1000, 100, 37, 10});
+
+        File file = new File("temp-binary.nnet");
+        file.deleteOnExit();
+
+        NetworkFile.write(original, file);
+        assertTrue(NetworkFile.isBinary(file));
+
+        NeuralNetwork fromFile = NeuralNetwork.fromFile(file);
+
+        assert fromFile != null;
+        assertArrayEquals(original.toArray(), fromFile.toArray());
+    }
+
+    @Test
+    public void TestSinglePrecisionFileSaveLoad() throws IOException {
+        NeuralNetwork original = new NeuralNetwork(new int[]{20, 7, 3});
+
+        File file = new File("temp-single.nnet");
+        file.deleteOnExit();
+
+        NetworkFile.write(original, file, NetworkFile.SINGLE_PRECISION);
+
+        FloatNeuralNetwork expected = FloatNeuralNetwork.fromNetwork(original);
+        FloatNeuralNetwork fromFile = FloatNeuralNetwork.fromFile(file);
+
+        assert fromFile != null;
+        for (int l = 0; l < expected.getLayers().length; l++) {
+            assertArrayEquals(expected.getLayers()[l].getWeights(), fromFile.getLayers()[l].getWeights(), 0);
+            assertArrayEquals(expected.getLayers()[l].getBiases(), fromFile.getLayers()[l].getBiases(), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void TestTruncatedBinaryFile() throws IOException {
+        File file = new File("temp-truncated.nnet");
+        file.deleteOnExit();
+
+        NetworkFile.write(new NeuralNetwork(new int[]{20, 7, 3}), file);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 1);
+        }
+
+        NetworkFile.read(file);
+    }
+
+    @Test
+    public void TestOversizedLayerBinaryFile() throws IOException {
+        File file = new File("temp-oversized.nnet");
+        file.deleteOnExit();
+
+        NetworkFile.write(new NeuralNetwork(new int[]{20, 7, 3}), file);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            // The number of inputs and the size of the first layer, whose product doesn't fit in an int
+            randomAccessFile.seek(20);
+            randomAccessFile.writeInt(Integer.reverseBytes(70_000));
+            randomAccessFile.writeInt(Integer.reverseBytes(70_000));
+        }
+
+        try {
+            NetworkFile.read(file);
+            throw new AssertionError("An oversized layer should have been rejected.");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("too large"));
+        }
+    }
+
+    @Test
+    public void TestTextReaderNumberFormats() throws IOException {
+        String text = "[[[1.0E-5, -0.0, 3, 1.7976931348623157E308, 0.30000000000000004, 4.9E-324]], [[NaN, -Infinity]]]";
+
+        double[][][] expected = {
+                {{1.0E-5, -0.0, 3, 1.7976931348623157E308, 0.30000000000000004, 4.9E-324}},
+                {{Double.NaN, Double.NEGATIVE_INFINITY}}
+        };
+
+        assertArrayEquals(expected, TextNetworkReader.read(new StringReader(text)).toArray());
+        assertArrayEquals(expected, TextNetworkReader.read(ByteBuffer.wrap(text.getBytes(StandardCharsets.US_ASCII))).toArray());
+    }
+
+    @Test
+    public void TestTextReaderMatchesArrayFromString() throws IOException {
+        String text = new NeuralNetwork(new int[]{50, 20, 10}).toString();
+
+        assertArrayEquals(NeuralNetwork.arrayFromString(text), TextNetworkReader.read(new StringReader(text)).toArray());
+    }
+
+    @Test(expected = IOException.class)
+    public void TestTextReaderRaggedLayer() throws IOException {
+        TextNetworkReader.read(new StringReader("[[[1.0, 2.0, 3.0], [1.0, 2.0]]]"));
+    }
+
+    @Test
+    public void TestPredictBatchMatchesForwardPropagate() {
+        NeuralNetwork network = new NeuralNetwork(new int[]{30, 20, 10});
+        Random random = new Random(1);
+
+        // Large enough to be split into several chunks, with a partial chunk at the end
+        int batchSize = 203;
+        double[] inputs = new double[batchSize * 30];
+        for (int i = 0; i < inputs.length; i++) {
+            inputs[i] = random.nextDouble();
+        }
+
+        double[] outputs = network.predictBatch(inputs, batchSize);
+        int[] classes = network.predictClasses(inputs, batchSize);
+
+        for (int r = 0; r < batchSize; r++) {
+            double[] expected = network.forwardPropagate(Arrays.copyOfRange(inputs, r * 30, (r + 1) * 30));
+            assertArrayEquals(expected, Arrays.copyOfRange(outputs, r * 10, (r + 1) * 10), 1e-12);
+
+            int best = 0;
+            for (int i = 1; i < expected.length; i++) {
+                if (expected[i] > expected[best]) best = i;
+            }
+            assertEquals(best, classes[r]);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.thomas.neuralnetwork.ai;
+
+import com.thomas.neuralnetwork.data.DatasetFixtures;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.stream.DoubleStream;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class TrainerTest {
+    /**
+     * Gets every weight and bias of a network, layer by layer
+     */
+    private static double[] parametersOf(NeuralNetwork neuralNetwork) {
+        return Arrays.stream(neuralNetwork.getLayers())
+                .flatMapToDouble(layer -> DoubleStream.concat(Arrays.stream(layer.getWeights()), Arrays.stream(layer.getBiases())))
+                .toArray();
+    }
+
+    private static double[] meanOf(double[] a, double[] b) {
+        double[] mean = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            mean[i] = (a[i] + b[i]) / 2;
+        }
+        return mean;
+    }
+
+    /**
+     * Trains a copy of a network with one thread, and returns the trained weights
+     */
+    private static double[] train(NeuralNetwork initial, Trainer.UpdateMode updateMode) {
+        NeuralNetwork neuralNetwork = initial.copy();
+        try (Trainer trainer = new Trainer(neuralNetwork, 1)) {
+            trainer.setSeed(1);
+            trainer.setUpdateMode(updateMode);
+            trainer.setLocalSteps(1);
+            // Two epochs, including one that ends on a partial batch
+            trainer.start(DatasetFixtures.separable(500, 2), 1, 0, 0);
+        }
+        return parametersOf(neuralNetwork);
+    }
+
+    @Test
+    public void testAveragingIdenticalReplicas() {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{16, 12, 4});
+        double[] expected = parametersOf(neuralNetwork);
+
+        try (Trainer trainer = new Trainer(neuralNetwork, 4)) {
+            for (int i = 0; i < 4; i++) {
+                trainer.getReplica(i);
+            }
+            trainer.averageReplicas();
+
+            assertArrayEquals(expected, parametersOf(neuralNetwork), 0);
+            for (int i = 0; i < 4; i++) {
+                assertArrayEquals(expected, parametersOf(trainer.getReplica(i)), 0);
+            }
+        }
+    }
+
+    @Test
+    public void testAveragingTwoReplicas() {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{16, 12, 4});
+
+        try (Trainer trainer = new Trainer(neuralNetwork, 2)) {
+            for (int l = 0; l < neuralNetwork.getLayers().length; l++) {
+                Layer first = trainer.getReplica(0).getLayers()[l];
+                Layer second = trainer.getReplica(1).getLayers()[l];
+                for (double[][] parameters : new double[][][]{{first.getWeights(), second.getWeights()}, {first.getBiases(), second.getBiases()}}) {
+                    for (int i = 0; i < parameters[0].length; i++) {
+                        parameters[0][i] = i;
+                        parameters[1][i] = -3 * i + 1;
+                    }
+                }
+            }
+
+            double[] expected = meanOf(parametersOf(trainer.getReplica(0)), parametersOf(trainer.getReplica(1)));
+            trainer.averageReplicas();
+
+            assertArrayEquals(expected, parametersOf(neuralNetwork), 0);
+            assertArrayEquals(expected, parametersOf(trainer.getReplica(0)), 0);
+            assertArrayEquals(expected, parametersOf(trainer.getReplica(1)), 0);
+        }
+    }
+
+    @Test
+    public void testLocalSgdWithOneReplicaMatchesSynchronous() {
+        NeuralNetwork initial = new NeuralNetwork(new int[]{16, 12, 4});
+
+        // The synchronous reduction may fuse the multiply and add, so the results can differ by rounding
+        assertArrayEquals(train(initial, Trainer.UpdateMode.SYNCHRONOUS), train(initial, Trainer.UpdateMode.LOCAL_SGD), 1e-9);
+    }
+
+    @Test
+    public void testHogwildWithOneThreadMatchesSynchronous() {
+        NeuralNetwork initial = new NeuralNetwork(new int[]{16, 12, 4});
+
+        assertArrayEquals(train(initial, Trainer.UpdateMode.SYNCHRONOUS), train(initial, Trainer.UpdateMode.HOGWILD), 1e-9);
+    }
+}
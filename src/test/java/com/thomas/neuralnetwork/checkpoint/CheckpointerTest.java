@@ -0,0 +1,133 @@
+package com.thomas.neuralnetwork.checkpoint;
+
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CheckpointerTest {
+    private static File createDirectory() throws IOException {
+        File directory = Files.createTempDirectory("checkpoints").toFile();
+        directory.deleteOnExit();
+        return directory;
+    }
+
+    private static void deleteAll(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+    }
+
+    @Test
+    public void testResumeFromLatest() throws Exception {
+        File directory = createDirectory();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 3, 2});
+        double[] learningRateState = {12, 20, 0.09, 3};
+
+        try (Checkpointer checkpointer = new Checkpointer(directory)) {
+            assertNull(Checkpointer.latest(directory));
+
+            checkpointer.save(neuralNetwork, 1, 0.5, false, learningRateState);
+            checkpointer.save(neuralNetwork, 2, 0.4, true, learningRateState).get();
+        }
+
+        Checkpoint latest = Checkpointer.latest(directory);
+        assertEquals(2, latest.getEpoch());
+        assertEquals(0.4, latest.getCost(), 0);
+        assertTrue(latest.isValidationCost());
+        assertArrayEquals(learningRateState, latest.getLearningRateState(), 0);
+        assertArrayEquals(neuralNetwork.toArray(), latest.loadNetwork().toArray());
+
+        deleteAll(directory);
+    }
+
+    @Test
+    public void testBuffersAreReusedWithoutSharingWeights() throws Exception {
+        File directory = createDirectory();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 3, 2});
+
+        try (Checkpointer checkpointer = new Checkpointer(directory)) {
+            checkpointer.setFormat(Checkpointer.Format.TEXT);
+
+            for (int epoch = 1; epoch <= 5; epoch++) {
+                checkpointer.save(neuralNetwork, epoch, 1, false, new double[0]);
+                checkpointer.flush();
+                // Changing the network after saving mustn't change the checkpoint being written
+                neuralNetwork.getLayers()[0].getWeights()[0] = epoch;
+            }
+
+            assertEquals(0, checkpointer.getSkipped());
+        }
+
+        Checkpoint latest = Checkpointer.latest(directory);
+        assertEquals(4, latest.loadNetwork().getLayers()[0].getWeights()[0], 0);
+
+        deleteAll(directory);
+    }
+
+    @Test
+    public void testRetentionKeepsRecentAndBest() throws Exception {
+        File directory = createDirectory();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 3, 2});
+        double[] costs = {0.9, 0.2, 0.7, 0.6, 0.5, 0.4};
+
+        try (Checkpointer checkpointer = new Checkpointer(directory)) {
+            checkpointer.setRetention(2, 1);
+            for (int epoch = 1; epoch <= costs.length; epoch++) {
+                checkpointer.save(neuralNetwork, epoch, costs[epoch - 1], false, new double[0]);
+                checkpointer.flush();
+            }
+        }
+
+        List<Checkpoint> checkpoints = Checkpointer.list(directory);
+        assertEquals(3, checkpoints.size());
+        assertEquals(2, checkpoints.get(0).getEpoch());
+        assertEquals(5, checkpoints.get(1).getEpoch());
+        assertEquals(6, checkpoints.get(2).getEpoch());
+
+        // Only the kept checkpoints are left, with no temporary files
+        File[] files = directory.listFiles();
+        assertEquals(6, files.length);
+        for (File file : files) {
+            assertFalse(file.getName().endsWith(".tmp"));
+        }
+
+        deleteAll(directory);
+    }
+
+    @Test
+    public void testRetentionRanksValidationCostsOnly() throws Exception {
+        File directory = createDirectory();
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 3, 2});
+        // The training cost of epoch 1 is lower than any validation cost, but the two can't be compared
+        double[] costs = {0.1, 0.6, 0.3, 0.5, 0.7};
+        boolean[] validation = {false, true, true, true, true};
+
+        try (Checkpointer checkpointer = new Checkpointer(directory)) {
+            checkpointer.setRetention(1, 1);
+            for (int epoch = 1; epoch <= costs.length; epoch++) {
+                checkpointer.save(neuralNetwork, epoch, costs[epoch - 1], validation[epoch - 1], new double[0]);
+                checkpointer.flush();
+            }
+        }
+
+        List<Checkpoint> checkpoints = Checkpointer.list(directory);
+        assertEquals(2, checkpoints.size());
+        assertEquals(3, checkpoints.get(0).getEpoch());
+        assertEquals(5, checkpoints.get(1).getEpoch());
+
+        deleteAll(directory);
+    }
+}
@@ -0,0 +1,76 @@
+package com.thomas.neuralnetwork.data;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class BatchLoaderTest {
+    @Test
+    public void testBatchesFollowOrder() throws InterruptedException {
+        ByteDataset dataset = DatasetFixtures.indexed(7);
+        int[] order = {6, 2, 4, 0, 1, 5, 3};
+
+        try (BatchLoader loader = new BatchLoader(dataset, 3, 1)) {
+            // Two epochs so that the buffers are reused
+            for (int epoch = 0; epoch < 2; epoch++) {
+                loader.start(order);
+
+                int position = 0;
+                for (int expectedSize : new int[]{3, 3, 1}) {
+                    BatchLoader.Batch batch = loader.next();
+                    assertEquals(expectedSize, batch.getSize());
+
+                    for (int i = 0; i < batch.getSize(); i++) {
+                        double[] inputs = new double[2];
+                        double[] outputs = new double[3];
+                        dataset.copyInputs(order[position], inputs, 0);
+                        dataset.copyOutputs(order[position], outputs, 0);
+                        position++;
+
+                        assertArrayEquals(inputs, Arrays.copyOfRange(batch.getInputs(), i * 2, i * 2 + 2), 0);
+                        assertArrayEquals(outputs, Arrays.copyOfRange(batch.getOutputs(), i * 3, i * 3 + 3), 0);
+                    }
+
+                    loader.release(batch);
+                }
+            }
+
+            assertEquals(6, loader.getBatchesLoaded());
+        }
+    }
+
+    @Test
+    public void testAugmentation() throws InterruptedException {
+        try (BatchLoader loader = new BatchLoader(DatasetFixtures.indexed(2), 2, 2)) {
+            loader.setAugmentation((inputs, offset, length) -> inputs[offset] = -1);
+            loader.start(new int[]{0, 1});
+
+            BatchLoader.Batch batch = loader.next();
+            assertArrayEquals(new double[]{-1, 1, -1, 254 / 255.0}, batch.getInputs(), 1e-12);
+        }
+    }
+
+    @Test
+    public void testSinglePrecision() throws InterruptedException {
+        try (BatchLoader loader = new BatchLoader(DatasetFixtures.indexed(2), 2, 1, true)) {
+            loader.setAugmentation((inputs, offset, length) -> inputs[offset] = -1);
+            loader.start(new int[]{1, 0});
+
+            BatchLoader.Batch batch = loader.next();
+            assertEquals(0, batch.getInputs().length);
+            assertArrayEquals(new float[]{-1, 254 / 255f, -1, 1}, batch.getFloatInputs(), 1e-6f);
+            assertArrayEquals(new float[]{0, 1, 0, 1, 0, 0}, batch.getFloatOutputs(), 0);
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testFailureIsReported() throws InterruptedException {
+        try (BatchLoader loader = new BatchLoader(DatasetFixtures.indexed(2), 2, 1)) {
+            loader.start(new int[]{0, 5});
+            loader.next();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.thomas.neuralnetwork.data;
+
+import java.util.Random;
+
+/**
+ * Small generated datasets shared by the tests
+ */
+public final class DatasetFixtures {
+    private DatasetFixtures() { }
+
+    /**
+     * Creates samples of 16 inputs in 4 classes, whose class is marked by a bright block of four inputs with noise everywhere.
+     * A small network learns to tell them apart in a couple of epochs.
+     *
+     * @param size the number of samples
+     * @param seed the seed of the noise and the labels
+     */
+    public static ByteDataset separable(int size, long seed) {
+        Random random = new Random(seed);
+        byte[] inputs = new byte[size * 16];
+        byte[] labels = new byte[size];
+        for (int i = 0; i < size; i++) {
+            int label = random.nextInt(4);
+            labels[i] = (byte) label;
+            for (int j = 0; j < 16; j++) {
+                inputs[i * 16 + j] = (byte) (random.nextInt(120) + (j / 4 == label ? 100 : 0));
+            }
+        }
+        return new ByteDataset(inputs, labels, 16, 4);
+    }
+
+    /**
+     * Creates samples whose inputs and labels are random, so there is nothing to learn
+     *
+     * @param size       the number of samples
+     * @param inputSize  the number of inputs of each sample
+     * @param numClasses the number of classes
+     * @param seed       the seed of the inputs and the labels
+     */
+    public static ByteDataset random(int size, int inputSize, int numClasses, long seed) {
+        Random random = new Random(seed);
+        byte[] inputs = new byte[size * inputSize];
+        byte[] labels = new byte[size];
+        random.nextBytes(inputs);
+        for (int i = 0; i < size; i++) {
+            labels[i] = (byte) random.nextInt(numClasses);
+        }
+        return new ByteDataset(inputs, labels, inputSize, numClasses);
+    }
+
+    /**
+     * Creates samples that can be told apart by their inputs: sample i has the inputs i and 255 - i, and the label i % 3
+     *
+     * @param size the number of samples, at most 256
+     */
+    public static ByteDataset indexed(int size) {
+        byte[] inputs = new byte[size * 2];
+        byte[] labels = new byte[size];
+        for (int i = 0; i < size; i++) {
+            inputs[i * 2] = (byte) i;
+            inputs[i * 2 + 1] = (byte) (255 - i);
+            labels[i] = (byte) (i % 3);
+        }
+        return new ByteDataset(inputs, labels, 2, 3);
+    }
+}
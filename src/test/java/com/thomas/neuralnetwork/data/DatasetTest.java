@@ -0,0 +1,54 @@
+package com.thomas.neuralnetwork.data;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class DatasetTest {
+    private static ByteDataset createDataset() {
+        byte[] inputs = {0, (byte) 255, (byte) 51, 102, 1, (byte) 128};
+        byte[] labels = {2, 0};
+        return new ByteDataset(inputs, labels, 3, 3);
+    }
+
+    @Test
+    public void testByteDatasetNormalizes() {
+        ByteDataset dataset = createDataset();
+
+        double[] inputs = new double[4];
+        dataset.copyInputs(0, inputs, 1);
+        assertArrayEquals(new double[]{0, 0, 1, 0.2}, inputs, 1e-12);
+
+        float[] floatInputs = new float[3];
+        dataset.copyInputs(1, floatInputs, 0);
+        assertArrayEquals(new float[]{0.4f, 1/255f, 128/255f}, floatInputs, 1e-6f);
+    }
+
+    @Test
+    public void testByteDatasetOutputs() {
+        ByteDataset dataset = createDataset();
+
+        assertEquals(2, dataset.size());
+        assertEquals(2, dataset.getLabel(0));
+
+        double[] outputs = {5, 5, 5};
+        dataset.copyOutputs(1, outputs, 0);
+        assertArrayEquals(new double[]{1, 0, 0}, outputs, 0);
+    }
+
+    @Test
+    public void testConcat() {
+        Dataset dataset = Dataset.concat(createDataset(), new ByteDataset(new byte[]{7, 8, 9}, new byte[]{1}, 3, 3));
+
+        assertEquals(3, dataset.size());
+        assertEquals(0, dataset.getLabel(1));
+        assertEquals(1, dataset.getLabel(2));
+        assertArrayEquals(new double[]{7/255.0, 8/255.0, 9/255.0}, dataset.get(2).inputs(), 1e-12);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testLabelOutOfRange() {
+        new ByteDataset(new byte[]{0, 0}, new byte[]{3, 0}, 1, 3);
+    }
+}
@@ -0,0 +1,79 @@
+package com.thomas.neuralnetwork.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class IdxFileTest {
+    @Test
+    public void testReadsEveryType() throws IOException {
+        double[] values = {-3, 1, 100, 7};
+        for (IdxFile.Type type : IdxFile.Type.values()) {
+            ByteBuffer buffer = ByteBuffer.allocate(4 + 2 * 4 + values.length * type.getSize());
+            buffer.put((byte) 0).put((byte) 0).put((byte) type.getCode()).put((byte) 2);
+            buffer.putInt(2).putInt(2);
+            for (double value : values) {
+                switch (type) {
+                    case UNSIGNED_BYTE, SIGNED_BYTE -> buffer.put((byte) value);
+                    case SHORT -> buffer.putShort((short) value);
+                    case INT -> buffer.putInt((int) value);
+                    case FLOAT -> buffer.putFloat((float) value);
+                    case DOUBLE -> buffer.putDouble(value);
+                }
+            }
+            buffer.flip();
+
+            IdxFile idxFile = IdxFile.wrap(buffer);
+            assertEquals(2, idxFile.getNumItems());
+            assertEquals(2, idxFile.getItemSize());
+            assertEquals(2 * type.getSize(), idxFile.offsetOf(1));
+
+            double[] item = new double[2];
+            idxFile.copyItem(1, item, 0);
+            assertArrayEquals(new double[]{100, 7}, item, 0);
+            assertEquals(type == IdxFile.Type.UNSIGNED_BYTE ? 253 : -3, idxFile.get(0, 0), 0);
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsBadMagicNumber() throws IOException {
+        IdxFile.wrap(ByteBuffer.wrap(new byte[]{0, 1, 0x08, 1, 0, 0, 0, 0}));
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsMismatchedDimensions() throws IOException {
+        IdxFile.wrap(ByteBuffer.wrap(new byte[]{0, 0, 0x08, 1, 0, 0, 0, 3, 1, 2}));
+    }
+
+    @Test
+    public void testUserDataRoundTrip() throws IOException {
+        File directory = Files.createTempDirectory("user-data").toFile();
+        directory.deleteOnExit();
+        String baseFileName = new File(directory, "user").getPath();
+
+        UserData userData = new UserData(baseFileName);
+        userData.setupImageFile();
+        userData.setupLabelFile();
+
+        byte[] image = new byte[784];
+        image[5] = (byte) 255;
+        userData.addToImages(image);
+        userData.addToLabels(new byte[]{7});
+
+        File imageFile = new File(baseFileName + "-images.idx3-ubyte");
+        File labelFile = new File(baseFileName + "-labels.idx1-ubyte");
+        imageFile.deleteOnExit();
+        labelFile.deleteOnExit();
+
+        Dataset dataset = MnistDataReader.readDataset(imageFile, labelFile);
+        assertEquals(1, dataset.size());
+        assertEquals(7, dataset.getLabel(0));
+        assertEquals(1, dataset.get(0).inputs()[5], 0);
+    }
+}
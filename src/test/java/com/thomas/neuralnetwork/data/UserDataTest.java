@@ -0,0 +1,85 @@
+package com.thomas.neuralnetwork.data;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+
+public class UserDataTest {
+    private static final byte[] LABELS = {3, 0, 9};
+
+    private static File createBase() throws IOException {
+        File directory = Files.createTempDirectory("user-data").toFile();
+        directory.deleteOnExit();
+        return new File(directory, "user");
+    }
+
+    /**
+     * Writes a label file the way older versions did
+     *
+     * @param padded    whether an extra zero int follows the number of labels
+     * @param labelSize the number of bytes each label takes
+     */
+    private static File writeLegacyLabels(File base, boolean padded, int labelSize) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8 + (padded ? 4 : 0) + LABELS.length * labelSize);
+        buffer.putInt(0x00000801).putInt(LABELS.length);
+        if (padded) buffer.putInt(0);
+        for (byte label : LABELS) {
+            buffer.position(buffer.position() + labelSize - 1);
+            buffer.put(label);
+        }
+
+        File file = new File(base.getPath() + "-labels.idx1-ubyte");
+        Files.write(file.toPath(), buffer.array());
+        file.deleteOnExit();
+        return file;
+    }
+
+    private static void assertReadable(File file) throws IOException {
+        IdxFile idxFile = IdxFile.open(file);
+        assertEquals(LABELS.length, idxFile.getNumItems());
+        for (int i = 0; i < LABELS.length; i++) {
+            assertEquals(LABELS[i], idxFile.get(i, 0), 0);
+        }
+    }
+
+    @Test
+    public void testRepairsPaddedHeader() throws IOException {
+        File base = createBase();
+        File file = writeLegacyLabels(base, true, 1);
+
+        new UserData(base.getPath()).setupLabelFile();
+        assertReadable(file);
+    }
+
+    @Test
+    public void testRepairsIntLabels() throws IOException {
+        for (boolean padded : new boolean[]{true, false}) {
+            File base = createBase();
+            File file = writeLegacyLabels(base, padded, 4);
+
+            new UserData(base.getPath()).repairLabelFile();
+            assertReadable(file);
+        }
+    }
+
+    @Test
+    public void testLeavesValidFilesAlone() throws IOException {
+        File base = createBase();
+        File file = writeLegacyLabels(base, false, 1);
+        byte[] before = Files.readAllBytes(file.toPath());
+
+        UserData userData = new UserData(base.getPath());
+        userData.repairLabelFile();
+        userData.addToLabels(new byte[]{5});
+
+        byte[] after = Files.readAllBytes(file.toPath());
+        assertEquals(before.length + 1, after.length);
+        assertEquals(5, after[after.length - 1]);
+        assertEquals(LABELS.length + 1, IdxFile.open(file).getNumItems());
+    }
+}
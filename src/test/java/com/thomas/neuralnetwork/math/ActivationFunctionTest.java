@@ -1,6 +1,7 @@
 package com.thomas.neuralnetwork.math;
 
 import com.thomas.neuralnetwork.math.activation.ActivationFunction;
+import com.thomas.neuralnetwork.math.activation.LeakyReLUActivation;
 import com.thomas.neuralnetwork.math.activation.LinearActivation;
 import com.thomas.neuralnetwork.math.activation.ReLUActivation;
 import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
@@ -66,4 +67,25 @@ class ActivationFunctionTest {
         double[] derivative = activationFunction.derive(input);
         assertArrayEquals(expectedDerivative, derivative, 0.0001);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testLeakyReluApplyInPlace() {
+        ActivationFunction activationFunction = new LeakyReLUActivation();
+        double[] input = {1.0, -2.0, 3.0};
+        double[] expectedOutput = {1.0, -0.02, 3.0};
+        activationFunction.applyInPlace(input);
+        assertArrayEquals(expectedOutput, input, 0.0001);
+    }
+
+    @Test
+    public void testSoftmaxApplySegment() {
+        ActivationFunction activationFunction = new SoftmaxActivation();
+        // Two rows of a batch matrix, each row should be normalized on its own
+        double[] input = {1.0, 2.0, 3.0, 3.0, 2.0, 1.0};
+        double[] expectedOutput = {0.09003057317038046, 0.24472847105479764, 0.6652409557748219, 0.6652409557748219, 0.24472847105479764, 0.09003057317038046};
+        double[] output = new double[input.length];
+        activationFunction.apply(input, output, 0, 3);
+        activationFunction.apply(input, output, 3, 3);
+        assertArrayEquals(expectedOutput, output, 0.0001);
+    }
+}
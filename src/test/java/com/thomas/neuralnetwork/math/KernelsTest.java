@@ -0,0 +1,95 @@
+package com.thomas.neuralnetwork.math;
+
+import com.thomas.neuralnetwork.math.kernel.Kernels;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class KernelsTest {
+    // Longer than any vector shape and not a multiple of one, so both the vector loop and the scalar tail run
+    private static final int LENGTH = 37;
+
+    private static double[] sequence(int length, double start, double step) {
+        double[] result = new double[length];
+        for (int i = 0; i < length; i++) {
+            result[i] = start + i * step;
+        }
+        return result;
+    }
+
+    @Test
+    public void testDot() {
+        double[] a = sequence(LENGTH + 2, -1, 0.1);
+        double[] b = sequence(LENGTH + 1, 2, -0.05);
+        double expected = 0;
+        for (int i = 0; i < LENGTH; i++) {
+            expected += a[2 + i] * b[1 + i];
+        }
+        assertEquals(expected, Kernels.dot(a, 2, b, 1, LENGTH), 0.0001);
+    }
+
+    @Test
+    public void testDot4() {
+        double[] a = sequence(LENGTH, 0.5, 0.01);
+        double[] b = sequence(LENGTH * 4, -2, 0.03);
+        double[] result = {1, 2, 3, 4};
+        double[] expected = result.clone();
+        for (int r = 0; r < 4; r++) {
+            for (int i = 0; i < LENGTH; i++) {
+                expected[r] += a[i] * b[r * LENGTH + i];
+            }
+        }
+        Kernels.dot4(a, 0, b, 0, LENGTH, 2 * LENGTH, 3 * LENGTH, LENGTH, result, 0, 1, 2, 3);
+        assertArrayEquals(expected, result, 0.0001);
+    }
+
+    @Test
+    public void testAxpy() {
+        double[] x = sequence(LENGTH, 1, 0.5);
+        double[] y = sequence(LENGTH + 3, -1, 0.25);
+        double[] expected = y.clone();
+        for (int i = 0; i < LENGTH; i++) {
+            expected[3 + i] += -0.5 * x[i];
+        }
+        Kernels.axpy(-0.5, x, 0, y, 3, LENGTH);
+        assertArrayEquals(expected, y, 0.0001);
+    }
+
+    @Test
+    public void testAxpy4() {
+        double[] x = sequence(LENGTH * 4, -3, 0.07);
+        double[] y = sequence(LENGTH, 0, 1);
+        double[] expected = y.clone();
+        for (int i = 0; i < LENGTH; i++) {
+            expected[i] += 1 * x[i] + 2 * x[LENGTH + i] + 3 * x[2 * LENGTH + i] + 4 * x[3 * LENGTH + i];
+        }
+        Kernels.axpy4(1, 2, 3, 4, x, 0, LENGTH, 2 * LENGTH, 3 * LENGTH, y, 0, LENGTH);
+        assertArrayEquals(expected, y, 0.0001);
+    }
+
+    @Test
+    public void testScale() {
+        float[] x = new float[LENGTH];
+        float[] expected = new float[LENGTH];
+        for (int i = 0; i < LENGTH; i++) {
+            x[i] = i - 10;
+            expected[i] = i < 2 ? x[i] : x[i] * 0.5f;
+        }
+        Kernels.scale(0.5f, x, 2, LENGTH - 2);
+        assertArrayEquals(expected, x, 0.0001f);
+    }
+
+    @Test
+    public void testLeakyRelu() {
+        double[] x = sequence(LENGTH, -1, 0.06);
+        double[] result = new double[LENGTH];
+        double[] derivative = new double[LENGTH];
+        Kernels.leakyRelu(0.01, x, result, 0, LENGTH);
+        Kernels.leakyReluDerivative(0.01, x, derivative, 0, LENGTH);
+        for (int i = 0; i < LENGTH; i++) {
+            assertEquals(x[i] > 0 ? x[i] : x[i] * 0.01, result[i], 0.0001);
+            assertEquals(x[i] > 0 ? 1 : 0.01, derivative[i], 0.0001);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.thomas.neuralnetwork.math;
 
+import com.thomas.neuralnetwork.math.activation.ActivationFunction;
+import com.thomas.neuralnetwork.math.activation.LeakyReLUActivation;
+import com.thomas.neuralnetwork.math.activation.SigmoidActivation;
+import com.thomas.neuralnetwork.math.activation.SoftmaxActivation;
+import com.thomas.neuralnetwork.math.activation.TanhActivation;
 import com.thomas.neuralnetwork.math.loss.CrossEntropyLoss;
 import com.thomas.neuralnetwork.math.loss.LossFunction;
 import com.thomas.neuralnetwork.math.loss.MeanAbsoluteLoss;
 import com.thomas.neuralnetwork.math.loss.MeanSquaredLoss;
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 
 public class LossFunctionTest {
@@ -38,4 +44,70 @@ public class LossFunctionTest {
         double result = lossFunction.calculate(actual, predicted);
         assertEquals(expected, result, 0.0001);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testSoftmaxCrossEntropyLargeLogits() {
+        LossFunction lossFunction = new CrossEntropyLoss();
+        // e^1000 overflows a double, the fused output stage must still produce finite results
+        double[] actual = {0.0, 1.0, 0.0};
+        double[] logits = {1000.0, 999.0, 0.0};
+        double[] probabilities = new double[3];
+        double[] gradients = new double[3];
+        double loss = lossFunction.forwardBackward(new SoftmaxActivation(), actual, logits, probabilities, gradients, 0, 3);
+        assertEquals(1.3133, loss, 0.0001); // log(1 + e)
+        assertArrayEquals(new double[]{0.7311, 0.2689, 0.0}, probabilities, 0.0001);
+        assertArrayEquals(new double[]{0.7311, -0.7311, 0.0}, gradients, 0.0001);
+    }
+
+    @Test
+    public void testElementWiseGradientsMatchFiniteDifferences() {
+        double[] actual = {0.0, 1.0, 0.0};
+        double[] preactivation = {0.3, -0.7, 1.2};
+        double epsilon = 1e-6;
+
+        for (LossFunction lossFunction : new LossFunction[]{new MeanSquaredLoss(), new MeanAbsoluteLoss(), new CrossEntropyLoss()}) {
+            for (ActivationFunction activationFunction : new ActivationFunction[]{new SigmoidActivation(), new TanhActivation(), new LeakyReLUActivation()}) {
+                double[] gradients = new double[3];
+                lossFunction.derive(activationFunction, actual, preactivation, gradients, 0, 3);
+
+                for (int i = 0; i < 3; i++) {
+                    double[] plus = preactivation.clone();
+                    double[] minus = preactivation.clone();
+                    plus[i] += epsilon;
+                    minus[i] -= epsilon;
+                    // The mean losses divide by the length, their derivatives are per element
+                    double scale = lossFunction instanceof CrossEntropyLoss ? 1 : 3;
+                    double expected = scale * (lossFunction.calculate(actual, activationFunction.apply(plus))
+                            - lossFunction.calculate(actual, activationFunction.apply(minus))) / (2 * epsilon);
+                    assertEquals(expected, gradients[i], 1e-4);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSinglePrecisionMatchesDoublePrecision() {
+        double[] actual = {0.0, 1.0, 0.0, 0.0};
+        double[] preactivation = {0.5, -1.5, 2.0, 0.1};
+        float[] floatActual = {0f, 1f, 0f, 0f};
+        float[] floatPreactivation = {0.5f, -1.5f, 2.0f, 0.1f};
+
+        for (LossFunction lossFunction : new LossFunction[]{new MeanSquaredLoss(), new MeanAbsoluteLoss(), new CrossEntropyLoss()}) {
+            for (ActivationFunction activationFunction : new ActivationFunction[]{new SigmoidActivation(), new LeakyReLUActivation()}) {
+                double[] activations = new double[4];
+                double[] gradients = new double[4];
+                float[] floatActivations = new float[4];
+                float[] floatGradients = new float[4];
+
+                double loss = lossFunction.forwardBackward(activationFunction, actual, preactivation, activations, gradients, 0, 4);
+                double floatLoss = lossFunction.forwardBackward(activationFunction, floatActual, floatPreactivation, floatActivations, floatGradients, 0, 4);
+
+                assertEquals(loss, floatLoss, 1e-5);
+                for (int i = 0; i < 4; i++) {
+                    assertEquals(activations[i], floatActivations[i], 1e-5);
+                    assertEquals(gradients[i], floatGradients[i], 1e-4);
+                }
+            }
+        }
+    }
+}
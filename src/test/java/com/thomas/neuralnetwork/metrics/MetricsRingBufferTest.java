@@ -0,0 +1,146 @@
+package com.thomas.neuralnetwork.metrics;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRingBufferTest {
+    @Test
+    public void testEventsArriveInOrderAcrossLaps() {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(8);
+        List<Integer> batches = new ArrayList<>();
+        buffer.addListener(new TrainingListener() {
+            @Override
+            public void batchCompleted(TrainingEvent event) {
+                batches.add(event.getBatch());
+            }
+        });
+
+        for (int i = 0; i < 100; i++) {
+            TrainingEvent event;
+            // Wait for room rather than dropping, so every event can be checked
+            while ((event = buffer.claim()) == null) {
+                Thread.onSpinWait();
+            }
+            buffer.publish(event.batch(0, i, 32, 1, 1_000_000, 0));
+        }
+
+        assertTrue(buffer.flush(5, TimeUnit.SECONDS));
+        assertEquals(100, batches.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals(i, (int) batches.get(i));
+        }
+    }
+
+    @Test
+    public void testConcurrentProducers() throws InterruptedException {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(64);
+        long[] samples = new long[1];
+        buffer.addListener(new TrainingListener() {
+            @Override
+            public void batchCompleted(TrainingEvent event) {
+                samples[0] += event.getSamples();
+            }
+        });
+
+        Thread[] producers = new Thread[4];
+        for (int p = 0; p < producers.length; p++) {
+            producers[p] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    TrainingEvent event;
+                    while ((event = buffer.claim()) == null) {
+                        Thread.onSpinWait();
+                    }
+                    buffer.publish(event.batch(0, i, 1, 0, 1, 0));
+                }
+            });
+            producers[p].start();
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertTrue(buffer.flush(5, TimeUnit.SECONDS));
+        assertEquals(40_000, samples[0]);
+    }
+
+    @Test
+    public void testFullBufferDropsInsteadOfBlocking() throws InterruptedException {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(4);
+        CountDownLatch release = new CountDownLatch(1);
+        buffer.addListener(new TrainingListener() {
+            @Override
+            public void batchCompleted(TrainingEvent event) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+
+        // The listener is stuck on the first event, so only the slots of the first lap can be claimed
+        for (int i = 0; i < 4; i++) {
+            TrainingEvent event = buffer.claim();
+            assertNotNull(event);
+            buffer.publish(event.batch(0, i, 1, 0, 1, 0));
+        }
+        assertNull(buffer.claim());
+        assertEquals(1, buffer.getDropped());
+
+        release.countDown();
+        assertTrue(buffer.flush(5, TimeUnit.SECONDS));
+        assertNotNull(buffer.claim());
+    }
+
+    @Test
+    public void testCloseStopsTheMetricsThread() throws InterruptedException {
+        MetricsRingBuffer buffer = new MetricsRingBuffer(8);
+        List<Integer> batches = new ArrayList<>();
+        buffer.addListener(new TrainingListener() {
+            @Override
+            public void batchCompleted(TrainingEvent event) {
+                batches.add(event.getBatch());
+            }
+        });
+
+        // Give the metrics thread time to go to sleep, so the publish has to wake it
+        Thread.sleep(50);
+        TrainingEvent event = buffer.claim();
+        buffer.publish(event.batch(0, 1, 1, 0, 1, 0));
+        event = buffer.claim();
+        buffer.publish(event.batch(0, 2, 1, 0, 1, 0));
+        buffer.close();
+        assertEquals(List.of(1, 2), batches);
+
+        event = buffer.claim();
+        buffer.publish(event.batch(0, 3, 1, 0, 1, 0));
+        assertFalse(buffer.flush(100, TimeUnit.MILLISECONDS));
+        assertEquals(List.of(1, 2), batches);
+    }
+
+    @Test
+    public void testCsvRows() throws Exception {
+        StringWriter writer = new StringWriter();
+        CsvMetricsSink sink = new CsvMetricsSink(writer);
+        TrainingEvent event = new TrainingEvent();
+
+        sink.batchCompleted(event.batch(2, 5, 32, 0.5, 2_000_000, 7));
+        sink.epochCompleted(event.epoch(2, 64, 0.25, 90, 80, 4_000_000, 9));
+
+        String[] lines = writer.toString().split("\n");
+        assertEquals(CsvMetricsSink.HEADER, lines[0]);
+        assertEquals("batch,2,5,32,0.5,,,2.0,16000.0,7", lines[1]);
+        assertEquals("epoch,2,,64,0.25,90.0,80.0,4.0,16000.0,9", lines[2]);
+    }
+}
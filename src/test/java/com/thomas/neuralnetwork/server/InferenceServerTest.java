@@ -0,0 +1,193 @@
+package com.thomas.neuralnetwork.server;
+
+import com.thomas.neuralnetwork.ai.NeuralNetwork;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class InferenceServerTest {
+    private static final Pattern CLASS = Pattern.compile("\"class\":(\\d+)");
+    private static final Pattern BATCH_SIZE = Pattern.compile("\"batchSize\":(\\d+)");
+    private static final Pattern LATENCY = Pattern.compile("\"latencyMicros\":(\\d+)");
+
+    @Test
+    public void testParseInputs() {
+        assertArrayEquals(new double[]{1, 0.5, -2, 3e-4}, InferenceServer.parseInputs(" [1, 0.5,-2\n3e-4] "), 0);
+        assertArrayEquals(new double[0], InferenceServer.parseInputs("[]"), 0);
+    }
+
+    @Test
+    public void testLoadOverLoopback() throws Exception {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{64, 32, 10});
+        Random random = new Random(1);
+
+        int numClients = 16;
+        int requestsPerClient = 25;
+        double[][] samples = new double[numClients * requestsPerClient][64];
+        for (double[] sample : samples) {
+            for (int i = 0; i < sample.length; i++) {
+                sample[i] = random.nextDouble();
+            }
+        }
+
+        double[] matrix = Arrays.stream(samples).flatMapToDouble(Arrays::stream).toArray();
+        int[] expected = neuralNetwork.predictClasses(matrix, samples.length);
+
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (InferenceServer server = new InferenceServer(neuralNetwork, address, 32, TimeUnit.MILLISECONDS.toNanos(20));
+             ExecutorService clients = Executors.newFixedThreadPool(numClients)) {
+            URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/predict");
+
+            // Every client sends its requests one after another, so the server sees up to numClients requests at once
+            List<Future<?>> results = new ArrayList<>();
+            for (int c = 0; c < numClients; c++) {
+                int client = c;
+                results.add(clients.submit(() -> {
+                    for (int r = 0; r < requestsPerClient; r++) {
+                        int sample = client * requestsPerClient + r;
+                        String response = post(url, Arrays.toString(samples[sample]));
+
+                        assertEquals(expected[sample], Integer.parseInt(find(CLASS, response)));
+                        assertTrue(Long.parseLong(find(LATENCY, response)) >= 0);
+                        int batchSize = Integer.parseInt(find(BATCH_SIZE, response));
+                        assertTrue(batchSize >= 1 && batchSize <= 32);
+                    }
+                    return null;
+                }));
+            }
+
+            for (Future<?> result : results) {
+                result.get();
+            }
+
+            MicroBatcher batcher = server.getBatcher();
+            assertEquals(samples.length, batcher.getSamples());
+            // Concurrent requests must have been coalesced
+            assertTrue(batcher.getBatches() < batcher.getSamples());
+        }
+    }
+
+    @Test
+    public void testWrongNumberOfInputs() throws IOException {
+        InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+        try (InferenceServer server = new InferenceServer(new NeuralNetwork(new int[]{4, 2}), address, 8, 0)) {
+            URL url = new URL("http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/predict");
+
+            HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            try (OutputStream body = connection.getOutputStream()) {
+                body.write("1, 2, 3".getBytes(StandardCharsets.US_ASCII));
+            }
+
+            assertEquals(400, connection.getResponseCode());
+        }
+    }
+
+    @Test
+    public void testSubmissionsRacingCloseAllComplete() throws Exception {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 2});
+        double[] sample = {0.1, 0.2, 0.3, 0.4};
+
+        for (int round = 0; round < 50; round++) {
+            MicroBatcher batcher = new MicroBatcher(neuralNetwork, 8, TimeUnit.MILLISECONDS.toNanos(1));
+            List<CompletableFuture<MicroBatcher.Prediction>> predictions = new CopyOnWriteArrayList<>();
+            try (ExecutorService clients = Executors.newFixedThreadPool(4)) {
+                for (int c = 0; c < 4; c++) {
+                    clients.execute(() -> {
+                        for (int r = 0; r < 200; r++) {
+                            predictions.add(batcher.submit(sample));
+                        }
+                    });
+                }
+                batcher.close();
+            }
+
+            // Every prediction is either made or failed, none is left waiting
+            for (CompletableFuture<MicroBatcher.Prediction> prediction : predictions) {
+                try {
+                    prediction.get(1, TimeUnit.SECONDS);
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof IllegalStateException);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testErrorInPredictionClosesTheBatcher() throws Exception {
+        NeuralNetwork neuralNetwork = new NeuralNetwork(new int[]{4, 2}) {
+            @Override
+            public void predictBatch(double[] inputs, int batchSize, double[] outputs) {
+                throw new StackOverflowError();
+            }
+        };
+
+        try (MicroBatcher batcher = new MicroBatcher(neuralNetwork, 8, 0)) {
+            // The dispatcher may be killed by an uncaught error, which would otherwise be printed by the default handler
+            Thread.setDefaultUncaughtExceptionHandler((thread, e) -> { });
+            try {
+                CompletableFuture<MicroBatcher.Prediction> failed = batcher.submit(new double[4]);
+                try {
+                    failed.get(1, TimeUnit.SECONDS);
+                    throw new AssertionError("The prediction should have failed.");
+                } catch (ExecutionException e) {
+                    assertTrue(e.getCause() instanceof StackOverflowError);
+                }
+
+                // Later submissions fail straight away instead of waiting on a dead dispatcher
+                long start = System.nanoTime();
+                while (!batcher.submit(new double[4]).isCompletedExceptionally()) {
+                    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(1));
+                    Thread.onSpinWait();
+                }
+            } finally {
+                Thread.setDefaultUncaughtExceptionHandler(null);
+            }
+        }
+    }
+
+    private static String post(URL url, String body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(body.getBytes(StandardCharsets.US_ASCII));
+        }
+
+        assertEquals(200, connection.getResponseCode());
+        try (InputStream input = connection.getInputStream()) {
+            return new String(input.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String find(Pattern pattern, String response) {
+        Matcher matcher = pattern.matcher(response);
+        assertTrue(response, matcher.find());
+        return matcher.group(1);
+    }
+}